@@ -0,0 +1,177 @@
+package com.royal.loadTest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.containers.RabbitMQContainer;
+import org.testcontainers.utility.DockerImageName;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Окружение прогона: RabbitMQ и PostgreSQL в контейнерах Testcontainers (те же образы, что в docker-compose.yml)
+ * и SenderService с ReceiverService, запущенные отдельными процессами из собранных jar. Сервисы работают
+ * в своих JVM, как в продакшене, поэтому их настройки не смешиваются, а сборка мусора и потоки генератора
+ * нагрузки не влияют на замеры. Вывод сервисов пишется в sender.log и receiver.log каталога отчетов.
+ */
+public final class LoadTestEnvironment implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoadTestEnvironment.class);
+
+    private static final String DATABASE = "RabbitMQTest";
+    private static final String CONSISTENT_HASH_PLUGIN = "rabbitmq_consistent_hash_exchange";
+    private static final Duration HEALTH_POLL_INTERVAL = Duration.ofMillis(500);
+
+    private final LoadTestOptions options;
+    private final List<Process> services = new ArrayList<>();
+
+    private RabbitMQContainer rabbit;
+    private PostgreSQLContainer<?> postgres;
+
+    /**
+     * Создает окружение. Контейнеры и сервисы запускаются методом {@link #start()}.
+     *
+     * @param options параметры прогона.
+     */
+    public LoadTestEnvironment(LoadTestOptions options) {
+        this.options = options;
+    }
+
+    /**
+     * Запускает контейнеры, затем сервисы, и ждет готовности сервисов по /actuator/health.
+     *
+     * @throws Exception если окружение не удалось запустить.
+     */
+    public void start() throws Exception {
+        Files.createDirectories(options.outputDirectory());
+        rabbit = new RabbitMQContainer(DockerImageName.parse(options.rabbitImage()).asCompatibleSubstituteFor("rabbitmq"));
+        postgres = new PostgreSQLContainer<>(DockerImageName.parse(options.postgresImage()).asCompatibleSubstituteFor("postgres"))
+                .withDatabaseName(DATABASE);
+        rabbit.start();
+        postgres.start();
+        rabbit.execInContainer("rabbitmq-plugins", "enable", CONSISTENT_HASH_PLUGIN);
+        LOGGER.info("RabbitMQ: {}:{}, PostgreSQL: {}", rabbit.getHost(), rabbit.getAmqpPort(), postgres.getJdbcUrl());
+
+        Map<String, String> rabbitEnvironment = Map.of(
+                "RABBIT_USERNAME", rabbit.getAdminUsername(),
+                "RABBIT_PASSWORD", rabbit.getAdminPassword());
+        List<String> rabbitArgs = List.of(
+                "--spring.rabbitmq.host=" + rabbit.getHost(),
+                "--spring.rabbitmq.port=" + rabbit.getAmqpPort());
+
+        // Receiver запускается первым: его Liquibase создает таблицы, а RabbitMQConfig объявляет очереди.
+        Map<String, String> receiverEnvironment = new HashMap<>(rabbitEnvironment);
+        receiverEnvironment.put("DB_URL", postgres.getJdbcUrl());
+        receiverEnvironment.put("DB_USERNAME", postgres.getUsername());
+        receiverEnvironment.put("DB_PASSWORD", postgres.getPassword());
+        launch("receiver", options.receiverJar(), options.receiverPort(), receiverEnvironment, rabbitArgs,
+                options.receiverArgs());
+        awaitHealthy("receiver", options.receiverPort());
+        launch("sender", options.senderJar(), options.senderPort(), rabbitEnvironment, rabbitArgs,
+                options.senderArgs());
+        awaitHealthy("sender", options.senderPort());
+    }
+
+    /**
+     * Возвращает адрес публикации SenderService.
+     *
+     * @return URI {@code /api/v1/publish}.
+     */
+    public URI publishUri() {
+        return URI.create("http://localhost:" + options.senderPort() + "/api/v1/publish");
+    }
+
+    /**
+     * Открывает соединение с базой данных ReceiverService.
+     *
+     * @return новое соединение.
+     * @throws SQLException если соединение не удалось открыть.
+     */
+    public Connection openConnection() throws SQLException {
+        return DriverManager.getConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+    }
+
+    /**
+     * Останавливает сервисы, затем контейнеры.
+     */
+    @Override
+    public void close() {
+        for (Process service : services.reversed()) {
+            service.destroy();
+            try {
+                if (!service.waitFor(10, TimeUnit.SECONDS)) {
+                    service.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                service.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (postgres != null) {
+            postgres.stop();
+        }
+        if (rabbit != null) {
+            rabbit.stop();
+        }
+    }
+
+    private void launch(String name, Path jar, int port, Map<String, String> environment, List<String> rabbitArgs,
+                        List<String> extraArgs) throws IOException {
+        if (!Files.isRegularFile(jar)) {
+            throw new IllegalStateException("Не найден jar сервиса " + name + ": " + jar.toAbsolutePath());
+        }
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-jar");
+        command.add(jar.toAbsolutePath().toString());
+        command.add("--server.port=" + port);
+        command.addAll(rabbitArgs);
+        command.addAll(extraArgs);
+        ProcessBuilder builder = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(options.outputDirectory().resolve(name + ".log").toFile());
+        builder.environment().putAll(environment);
+        services.add(builder.start());
+        LOGGER.info("Запущен {}: {}", name, String.join(" ", command.subList(1, command.size())));
+    }
+
+    private void awaitHealthy(String name, int port) throws InterruptedException {
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/actuator/health"))
+                .timeout(Duration.ofSeconds(5))
+                .build();
+        long deadline = System.nanoTime() + options.startupTimeout().toNanos();
+        while (System.nanoTime() < deadline) {
+            Process process = services.get(services.size() - 1);
+            if (!process.isAlive()) {
+                throw new IllegalStateException("Сервис " + name + " завершился с кодом " + process.exitValue()
+                        + ", см. " + options.outputDirectory().resolve(name + ".log"));
+            }
+            try {
+                if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    LOGGER.info("Сервис {} готов на порту {}", name, port);
+                    return;
+                }
+            } catch (IOException e) {
+                // Сервис еще не слушает порт.
+            }
+            Thread.sleep(HEALTH_POLL_INTERVAL);
+        }
+        throw new IllegalStateException("Сервис " + name + " не стал готов за " + options.startupTimeout());
+    }
+}
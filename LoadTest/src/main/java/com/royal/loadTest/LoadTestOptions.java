@@ -0,0 +1,106 @@
+package com.royal.loadTest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Параметры нагрузочного прогона. Задаются аргументами вида {@code --name=value}; аргументы
+ * {@code --sender-arg} и {@code --receiver-arg} можно повторять, они передаются сервисам как есть
+ * (например, {@code --receiver-arg=--rabbitmq.consumer.write-behind.enabled=false}).
+ *
+ * @param rates           целевые скорости ступеней, сообщений в секунду, по возрастанию.
+ * @param stepDuration    длительность замера одной ступени.
+ * @param warmup          прогрев на первой ступени перед замерами; его результаты отбрасываются.
+ * @param drainTimeout    наибольшее ожидание появления строк после окончания отправки.
+ * @param pollInterval    пауза между опросами таблицы messages.
+ * @param maxConnections  наибольшее число одновременных HTTP-запросов генератора.
+ * @param sloP99          допустимый 99-й процентиль задержки от отправки до появления строки.
+ * @param maxErrorRatio   допустимая доля ошибочных и потерянных сообщений.
+ * @param stopOnFailure   прекращать прогон после первой ступени, не выдержавшей требований.
+ * @param senderJar       исполняемый jar SenderService.
+ * @param receiverJar     исполняемый jar ReceiverService.
+ * @param senderArgs      дополнительные аргументы SenderService.
+ * @param receiverArgs    дополнительные аргументы ReceiverService.
+ * @param senderPort      HTTP-порт SenderService.
+ * @param receiverPort    HTTP-порт ReceiverService.
+ * @param startupTimeout  наибольшее ожидание готовности сервисов.
+ * @param rabbitImage     образ RabbitMQ.
+ * @param postgresImage   образ PostgreSQL.
+ * @param outputDirectory каталог для отчетов, гистограмм и логов сервисов.
+ */
+public record LoadTestOptions(List<Integer> rates, Duration stepDuration, Duration warmup, Duration drainTimeout,
+                              Duration pollInterval, int maxConnections, Duration sloP99, double maxErrorRatio, boolean stopOnFailure,
+                              Path senderJar, Path receiverJar, List<String> senderArgs, List<String> receiverArgs,
+                              int senderPort, int receiverPort, Duration startupTimeout, String rabbitImage,
+                              String postgresImage, Path outputDirectory) {
+
+    private static final Set<String> REPEATABLE = Set.of("sender-arg", "receiver-arg");
+
+    /**
+     * Разбирает аргументы командной строки. Неуказанные параметры получают значения по умолчанию.
+     *
+     * @param args аргументы вида {@code --name=value}.
+     * @return параметры прогона.
+     * @throws IllegalArgumentException если аргумент не распознан.
+     */
+    public static LoadTestOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        List<String> senderArgs = new ArrayList<>();
+        List<String> receiverArgs = new ArrayList<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Ожидался аргумент вида --name=value: " + arg);
+            }
+            String name = arg.substring(2, separator);
+            String value = arg.substring(separator + 1);
+            if (REPEATABLE.contains(name)) {
+                ("sender-arg".equals(name) ? senderArgs : receiverArgs).add(value);
+            } else {
+                values.put(name, value);
+            }
+        }
+        LoadTestOptions options = new LoadTestOptions(
+                Arrays.stream(take(values, "rates", "250,500,1000,2000,4000").split(","))
+                        .map(String::trim).map(Integer::parseInt).sorted().toList(),
+                Duration.ofSeconds(Long.parseLong(take(values, "duration-s", "30"))),
+                Duration.ofSeconds(Long.parseLong(take(values, "warmup-s", "10"))),
+                Duration.ofSeconds(Long.parseLong(take(values, "drain-timeout-s", "30"))),
+                Duration.ofMillis(Long.parseLong(take(values, "poll-interval-ms", "20"))),
+                Integer.parseInt(take(values, "max-connections", "256")),
+                Duration.ofMillis(Long.parseLong(take(values, "slo-p99-ms", "1000"))),
+                Double.parseDouble(take(values, "max-error-ratio", "0.001")),
+                Boolean.parseBoolean(take(values, "stop-on-failure", "true")),
+                Path.of(take(values, "sender-jar", "../SenderService/target/SenderService-0.0.1-SNAPSHOT-exec.jar")),
+                Path.of(take(values, "receiver-jar", "../ReceiverService/target/ReceiverService-0.0.1-SNAPSHOT.jar")),
+                List.copyOf(senderArgs),
+                List.copyOf(receiverArgs),
+                Integer.parseInt(take(values, "sender-port", "18080")),
+                Integer.parseInt(take(values, "receiver-port", "18081")),
+                Duration.ofSeconds(Long.parseLong(take(values, "startup-timeout-s", "120"))),
+                take(values, "rabbit-image", "rabbitmq:3-management"),
+                take(values, "postgres-image", "postgres:17"),
+                Path.of(take(values, "out", "target/loadtest-results")));
+        if (!values.isEmpty()) {
+            throw new IllegalArgumentException("Неизвестные аргументы: " + values.keySet());
+        }
+        if (options.rates().isEmpty() || options.rates().get(0) <= 0) {
+            throw new IllegalArgumentException("Скорости ступеней должны быть положительными: " + options.rates());
+        }
+        if (options.maxConnections() <= 0) {
+            throw new IllegalArgumentException("Число соединений должно быть положительным: " + options.maxConnections());
+        }
+        return options;
+    }
+
+    private static String take(Map<String, String> values, String name, String defaultValue) {
+        String value = values.remove(name);
+        return value == null ? defaultValue : value;
+    }
+}
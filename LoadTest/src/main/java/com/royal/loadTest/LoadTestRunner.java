@@ -0,0 +1,138 @@
+package com.royal.loadTest;
+
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Сквозной нагрузочный тест SenderService и ReceiverService. Поднимает окружение ({@link LoadTestEnvironment}),
+ * прогревает сервисы и проходит ступени скоростей по возрастанию. На каждой ступени {@link OpenLoopDriver} отправляет
+ * сообщения в /api/v1/publish по расписанию с открытым циклом, а {@link RowVisibilityTracker} замеряет задержку
+ * до появления строки в таблице messages. Максимальной устойчивой скоростью считается наибольшая ступень,
+ * выдержавшая порог 99-го процентиля и допустимую долю ошибок.
+ *
+ * <p>Результаты пишутся в каталог отчетов: summary.csv со строкой на ступень и полные распределения задержек
+ * каждой ступени в формате HdrHistogram (step-&lt;rate&gt;-e2e.hgrm, step-&lt;rate&gt;-http.hgrm), которые можно
+ * сравнивать между конфигурациями.
+ */
+public final class LoadTestRunner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoadTestRunner.class);
+
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(5);
+    private static final double MICROS_PER_MILLI = 1000.0;
+
+    private final LoadTestOptions options;
+    private final LoadTestEnvironment environment;
+    private final HttpClient client;
+
+    private long nextId = 1;
+
+    private LoadTestRunner(LoadTestOptions options, LoadTestEnvironment environment) {
+        this.options = options;
+        this.environment = environment;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(CONNECT_TIMEOUT)
+                .build();
+    }
+
+    /**
+     * Точка входа.
+     *
+     * @param args параметры прогона, см. {@link LoadTestOptions}.
+     * @throws Exception если прогон не удалось выполнить.
+     */
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        try (LoadTestEnvironment environment = new LoadTestEnvironment(options)) {
+            environment.start();
+            new LoadTestRunner(options, environment).run();
+        }
+    }
+
+    private void run() throws Exception {
+        if (!options.warmup().isZero()) {
+            LOGGER.info("Прогрев: {} сообщений/с в течение {}", options.rates().get(0), options.warmup());
+            runStep(options.rates().get(0), options.warmup());
+        }
+
+        List<StepResult> results = new ArrayList<>();
+        Integer sustainable = null;
+        System.out.println(StepResult.rowHeader());
+        for (int rate : options.rates()) {
+            StepResult result = runStep(rate, options.stepDuration());
+            boolean passed = result.passed(options.sloP99(), options.maxErrorRatio());
+            results.add(result);
+            System.out.println(result.toRow(passed));
+            writeHistogram(result.visibleLatency(), "step-" + rate + "-e2e.hgrm");
+            writeHistogram(result.httpLatency(), "step-" + rate + "-http.hgrm");
+            if (passed) {
+                sustainable = rate;
+            } else if (options.stopOnFailure()) {
+                break;
+            }
+        }
+        writeSummary(results);
+
+        if (sustainable == null) {
+            System.out.println("Ни одна ступень не выдержала p99 <= " + options.sloP99().toMillis() + " мс");
+        } else {
+            System.out.println("Максимальная устойчивая скорость: " + sustainable + " сообщений/с (p99 <= "
+                    + options.sloP99().toMillis() + " мс)");
+        }
+        System.out.println("Отчеты: " + options.outputDirectory().toAbsolutePath());
+    }
+
+    private StepResult runStep(int rate, Duration duration) throws Exception {
+        URI publishUri = environment.publishUri();
+        OpenLoopDriver driver = new OpenLoopDriver(client, publishUri, rate, duration, nextId,
+                options.maxConnections());
+        nextId += driver.count();
+        try (Connection connection = environment.openConnection()) {
+            RowVisibilityTracker tracker = new RowVisibilityTracker(connection, driver, options.pollInterval());
+            Thread trackerThread = new Thread(tracker, "row-visibility-tracker");
+            trackerThread.start();
+            try {
+                driver.run();
+                if (!driver.awaitResponses(options.drainTimeout())) {
+                    LOGGER.warn("Не все ответы получены за {} на скорости {}", options.drainTimeout(), rate);
+                }
+                tracker.awaitSettled(options.drainTimeout());
+            } finally {
+                tracker.stop();
+                trackerThread.join();
+            }
+            int lost = Math.max(0, driver.sent() - driver.errors() - driver.clientErrors() - tracker.visible());
+            return new StepResult(rate, driver.sent(), driver.errors(), driver.clientErrors(), lost, driver.achievedRate(),
+                    tracker.visibleRate(), tracker.visibleLatency(), driver.responseLatency());
+        }
+    }
+
+    private void writeHistogram(Histogram histogram, String fileName) throws IOException {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(options.outputDirectory().resolve(fileName)))) {
+            histogram.outputPercentileDistribution(out, MICROS_PER_MILLI);
+        }
+    }
+
+    private void writeSummary(List<StepResult> results) throws IOException {
+        Path summary = options.outputDirectory().resolve("summary.csv");
+        List<String> lines = new ArrayList<>();
+        lines.add(StepResult.CSV_HEADER);
+        for (StepResult result : results) {
+            lines.add(result.toCsv(result.passed(options.sloP99(), options.maxErrorRatio())));
+        }
+        Files.write(summary, lines);
+    }
+}
@@ -0,0 +1,252 @@
+package com.royal.loadTest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Генератор нагрузки с открытым циклом: запрос i отправляется в заданный момент start + i / rate независимо от того,
+ * ответил ли сервис на предыдущие, поэтому замедление сервиса не снижает нагрузку. Если генератор отстал
+ * от расписания, отставшие запросы уходят сразу. Задержки отсчитываются от запланированного, а не от фактического
+ * момента отправки — это исключает координированное упущение (coordinated omission): время, которое запрос провел
+ * бы в ожидании за медленным предыдущим, попадает в замер.
+ *
+ * <p>Каждый запрос выполняется в своем виртуальном потоке: поток расписания только запускает его и не ждет
+ * установки соединения, поэтому точность расписания не зависит от задержек HTTP-клиента. Одновременно выполняется
+ * не больше maxConnections запросов: остальные ждут разрешения, и это ожидание входит в задержку, а генератор
+ * не исчерпывает соединения и локальные порты. Ответ сервиса с кодом ошибки и сбой запроса на стороне клиента
+ * (соединение, таймаут) учитываются раздельно.
+ */
+public final class OpenLoopDriver {
+
+    /**
+     * Наибольшая учитываемая задержка, микросекунд.
+     */
+    static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.HOURS.toMicros(1);
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final HttpClient client;
+    private final URI publishUri;
+    private final int rate;
+    private final int count;
+    private final long baseId;
+
+    private final AtomicLongArray intendedNanos;
+    private final AtomicIntegerArray failed;
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicInteger errors = new AtomicInteger();
+    private final AtomicInteger clientErrors = new AtomicInteger();
+    private final Semaphore connections;
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+    private final Histogram responseLatency = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+
+    private volatile int sent;
+    private long startNanos;
+    private long endNanos;
+
+    /**
+     * Создает генератор одной ступени.
+     *
+     * @param client         HTTP-клиент.
+     * @param publishUri     адрес /api/v1/publish.
+     * @param rate           целевая скорость, запросов в секунду.
+     * @param duration       длительность ступени.
+     * @param baseId         id первого сообщения ступени; сообщения получают id подряд.
+     * @param maxConnections наибольшее число одновременно выполняемых запросов.
+     */
+    public OpenLoopDriver(HttpClient client, URI publishUri, int rate, Duration duration, long baseId,
+                          int maxConnections) {
+        this.client = client;
+        this.publishUri = publishUri;
+        this.rate = rate;
+        this.count = (int) Math.max(1, rate * duration.toMillis() / 1000);
+        this.baseId = baseId;
+        this.intendedNanos = new AtomicLongArray(count);
+        this.failed = new AtomicIntegerArray(count);
+        this.connections = new Semaphore(maxConnections);
+    }
+
+    /**
+     * Отправляет все сообщения ступени по расписанию. Возвращается после запуска последнего запроса,
+     * не дожидаясь ответов.
+     */
+    public void run() {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        startNanos = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            long intended = startNanos + i * intervalNanos;
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            intendedNanos.set(i, intended);
+            int index = i;
+            senders.execute(() -> send(index, intended));
+            sent = i + 1;
+        }
+        endNanos = System.nanoTime();
+        senders.shutdown();
+    }
+
+    /**
+     * Ждет ответов на все отправленные запросы.
+     *
+     * @param timeout наибольшее ожидание.
+     * @return true, если ответы получены.
+     * @throws InterruptedException если ожидание прервано.
+     */
+    public boolean awaitResponses(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (completed.get() < sent) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    private void send(int index, long intended) {
+        String body = String.format(Locale.ROOT, "{\"id\":%d,\"name\":\"load-%d\",\"price\":%.2f}",
+                baseId + index, index, (index % 10_000) / 100.0 + 1);
+        HttpRequest request = HttpRequest.newBuilder(publishUri)
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        boolean acquired = false;
+        try {
+            connections.acquire();
+            acquired = true;
+            if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() >= 300) {
+                fail(index, errors);
+            } else {
+                long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intended);
+                responseLatency.recordValue(Math.min(micros, HIGHEST_TRACKABLE_MICROS));
+            }
+        } catch (IOException e) {
+            fail(index, clientErrors);
+        } catch (InterruptedException e) {
+            fail(index, clientErrors);
+            Thread.currentThread().interrupt();
+        } finally {
+            if (acquired) {
+                connections.release();
+            }
+            completed.incrementAndGet();
+        }
+    }
+
+    private void fail(int index, AtomicInteger counter) {
+        failed.set(index, 1);
+        counter.incrementAndGet();
+    }
+
+    /**
+     * Возвращает число сообщений ступени.
+     *
+     * @return число сообщений.
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * Возвращает число уже отправленных запросов.
+     *
+     * @return число запросов.
+     */
+    public int sent() {
+        return sent;
+    }
+
+    /**
+     * Возвращает id первого сообщения ступени.
+     *
+     * @return id.
+     */
+    public long baseId() {
+        return baseId;
+    }
+
+    /**
+     * Возвращает запланированный момент отправки сообщения.
+     *
+     * @param index номер сообщения в ступени.
+     * @return момент по {@link System#nanoTime()} или 0, если сообщение еще не отправлено.
+     */
+    public long intendedNanos(int index) {
+        return intendedNanos.get(index);
+    }
+
+    /**
+     * Проверяет, завершился ли запрос сообщения ошибкой.
+     *
+     * @param index номер сообщения в ступени.
+     * @return true, если сервис ответил ошибкой или запрос не выполнен на стороне клиента.
+     */
+    public boolean isFailed(int index) {
+        return failed.get(index) != 0;
+    }
+
+    /**
+     * Возвращает число запросов, на которые сервис ответил кодом ошибки.
+     *
+     * @return число ошибок сервиса.
+     */
+    public int errors() {
+        return errors.get();
+    }
+
+    /**
+     * Возвращает число запросов, не выполненных на стороне клиента: ошибка соединения, таймаут, прерывание.
+     *
+     * @return число ошибок клиента.
+     */
+    public int clientErrors() {
+        return clientErrors.get();
+    }
+
+    /**
+     * Возвращает задержки ответа /api/v1/publish от запланированного момента отправки, микросекунд.
+     *
+     * @return гистограмма задержек.
+     */
+    public Histogram responseLatency() {
+        return responseLatency;
+    }
+
+    /**
+     * Возвращает момент начала ступени.
+     *
+     * @return момент по {@link System#nanoTime()}.
+     */
+    public long startNanos() {
+        return startNanos;
+    }
+
+    /**
+     * Возвращает фактическую скорость отправки.
+     *
+     * @return запросов в секунду.
+     */
+    public double achievedRate() {
+        return sent * 1e9 / Math.max(1, endNanos - startNanos);
+    }
+}
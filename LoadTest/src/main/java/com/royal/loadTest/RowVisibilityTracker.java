@@ -0,0 +1,143 @@
+package com.royal.loadTest;
+
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Поток, который опрашивает таблицу messages и фиксирует момент, когда строка сообщения стала видна.
+ * Каждый опрос выбирает id ступени начиная с наименьшего еще не найденного, поэтому объем выборки ограничен
+ * сообщениями в пути. Строка считается видимой в момент начала опроса, который ее нашел: погрешность не больше
+ * интервала опроса и времени запроса. Задержка отсчитывается от запланированного момента отправки
+ * ({@link OpenLoopDriver}). Сообщения, запрос которых завершился ошибкой, не ожидаются.
+ */
+public final class RowVisibilityTracker implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RowVisibilityTracker.class);
+
+    private static final String SELECT_IDS = "SELECT id FROM messages WHERE id >= ? AND id < ?";
+
+    private final Connection connection;
+    private final OpenLoopDriver driver;
+    private final long pollIntervalNanos;
+    private final BitSet seen;
+    private final Histogram visibleLatency = new Histogram(OpenLoopDriver.HIGHEST_TRACKABLE_MICROS, 3);
+
+    private volatile boolean running = true;
+    private volatile int settled;
+    private volatile int visible;
+    private volatile long lastVisibleNanos;
+
+    /**
+     * Создает наблюдателя за строками одной ступени.
+     *
+     * @param connection   соединение с базой данных ReceiverService.
+     * @param driver       генератор нагрузки ступени.
+     * @param pollInterval пауза между опросами.
+     */
+    public RowVisibilityTracker(Connection connection, OpenLoopDriver driver, Duration pollInterval) {
+        this.connection = connection;
+        this.driver = driver;
+        this.pollIntervalNanos = pollInterval.toNanos();
+        this.seen = new BitSet(driver.count());
+    }
+
+    @Override
+    public void run() {
+        try (PreparedStatement statement = connection.prepareStatement(SELECT_IDS)) {
+            while (running) {
+                poll(statement);
+                LockSupport.parkNanos(pollIntervalNanos);
+            }
+            poll(statement);
+        } catch (SQLException e) {
+            LOGGER.error("Ошибка опроса таблицы messages: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Останавливает опрос после еще одного, последнего прохода.
+     */
+    public void stop() {
+        running = false;
+    }
+
+    /**
+     * Ждет, пока все отправленные сообщения станут видны или окажутся ошибочными.
+     *
+     * @param timeout наибольшее ожидание.
+     * @throws InterruptedException если ожидание прервано.
+     */
+    public void awaitSettled(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (settled < driver.sent() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private void poll(PreparedStatement statement) throws SQLException {
+        int sent = driver.sent();
+        int from = settled;
+        if (from >= sent) {
+            return;
+        }
+        long snapshotNanos = System.nanoTime();
+        statement.setLong(1, driver.baseId() + from);
+        statement.setLong(2, driver.baseId() + sent);
+        int found = visible;
+        try (ResultSet rows = statement.executeQuery()) {
+            while (rows.next()) {
+                int index = (int) (rows.getLong(1) - driver.baseId());
+                if (!seen.get(index)) {
+                    seen.set(index);
+                    found++;
+                    long micros = TimeUnit.NANOSECONDS.toMicros(snapshotNanos - driver.intendedNanos(index));
+                    visibleLatency.recordValue(Math.clamp(micros, 0, OpenLoopDriver.HIGHEST_TRACKABLE_MICROS));
+                    lastVisibleNanos = snapshotNanos;
+                }
+            }
+        }
+        visible = found;
+        while (from < sent && (seen.get(from) || driver.isFailed(from))) {
+            from++;
+        }
+        settled = from;
+    }
+
+    /**
+     * Возвращает задержки от запланированной отправки до появления строки, микросекунд.
+     * Читать после остановки потока.
+     *
+     * @return гистограмма задержек.
+     */
+    public Histogram visibleLatency() {
+        return visibleLatency;
+    }
+
+    /**
+     * Возвращает число найденных строк.
+     *
+     * @return число строк.
+     */
+    public int visible() {
+        return visible;
+    }
+
+    /**
+     * Возвращает скорость появления строк от начала ступени до последней найденной строки.
+     *
+     * @return строк в секунду.
+     */
+    public double visibleRate() {
+        return visible * 1e9 / Math.max(1, lastVisibleNanos - driver.startNanos());
+    }
+}
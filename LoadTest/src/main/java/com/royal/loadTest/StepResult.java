@@ -0,0 +1,86 @@
+package com.royal.loadTest;
+
+import org.HdrHistogram.Histogram;
+
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Итог одной ступени нагрузки.
+ *
+ * @param rate           целевая скорость, сообщений в секунду.
+ * @param sent           число отправленных запросов.
+ * @param errors         число запросов, на которые сервис ответил кодом ошибки.
+ * @param clientErrors   число запросов, не выполненных на стороне клиента (соединение, таймаут).
+ * @param lost           число принятых сервисом сообщений, строки которых не появились до истечения ожидания.
+ * @param sendRate       фактическая скорость отправки.
+ * @param visibleRate    скорость появления строк.
+ * @param visibleLatency задержки от запланированной отправки до появления строки, микросекунд.
+ * @param httpLatency    задержки ответа /api/v1/publish от запланированной отправки, микросекунд.
+ */
+public record StepResult(int rate, int sent, int errors, int clientErrors, int lost, double sendRate, double visibleRate,
+                         Histogram visibleLatency, Histogram httpLatency) {
+
+    /**
+     * Заголовок CSV-отчета, соответствующий {@link #toCsv(boolean)}.
+     */
+    static final String CSV_HEADER = "rate,sent,errors,client_errors,lost,send_rate,visible_rate,"
+            + "p50_ms,p90_ms,p99_ms,p999_ms,max_ms,http_p99_ms,passed";
+
+    /**
+     * Проверяет, выдержала ли ступень требования: 99-й процентиль задержки не выше порога
+     * и доля ошибочных (включая ошибки клиента) и потерянных сообщений не выше допустимой.
+     *
+     * @param sloP99        допустимый 99-й процентиль.
+     * @param maxErrorRatio допустимая доля ошибок.
+     * @return true, если ступень выдержана.
+     */
+    public boolean passed(Duration sloP99, double maxErrorRatio) {
+        return visibleLatency.getTotalCount() > 0
+                && visibleLatency.getValueAtPercentile(99) <= sloP99.toNanos() / 1000
+                && (errors + clientErrors + lost) <= maxErrorRatio * sent;
+    }
+
+    /**
+     * Форматирует строку отчета для консоли.
+     *
+     * @param passed выдержана ли ступень.
+     * @return строка отчета.
+     */
+    public String toRow(boolean passed) {
+        return String.format(Locale.ROOT, "%8d %9.1f %9.1f %7d %7d %6d %9.1f %9.1f %9.1f %9.1f %9.1f %10.1f  %s",
+                rate, sendRate, visibleRate, errors, clientErrors, lost,
+                millis(visibleLatency, 50), millis(visibleLatency, 90), millis(visibleLatency, 99),
+                millis(visibleLatency, 99.9), visibleLatency.getMaxValue() / 1000.0,
+                millis(httpLatency, 99), passed ? "OK" : "FAIL");
+    }
+
+    /**
+     * Форматирует строку CSV-отчета.
+     *
+     * @param passed выдержана ли ступень.
+     * @return строка CSV.
+     */
+    public String toCsv(boolean passed) {
+        return String.format(Locale.ROOT, "%d,%d,%d,%d,%d,%.1f,%.1f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%b",
+                rate, sent, errors, clientErrors, lost, sendRate, visibleRate,
+                millis(visibleLatency, 50), millis(visibleLatency, 90), millis(visibleLatency, 99),
+                millis(visibleLatency, 99.9), visibleLatency.getMaxValue() / 1000.0,
+                millis(httpLatency, 99), passed);
+    }
+
+    /**
+     * Заголовок таблицы консольного отчета, соответствующий {@link #toRow(boolean)}.
+     *
+     * @return заголовок.
+     */
+    static String rowHeader() {
+        return String.format(Locale.ROOT, "%8s %9s %9s %7s %7s %6s %9s %9s %9s %9s %9s %10s  %s",
+                "rate", "send/s", "rows/s", "errors", "client", "lost", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms",
+                "http p99", "result");
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+}
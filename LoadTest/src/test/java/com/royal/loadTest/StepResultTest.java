@@ -0,0 +1,75 @@
+package com.royal.loadTest;
+
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StepResultTest {
+
+	private static final Duration SLO = Duration.ofSeconds(1);
+	private static final double MAX_ERROR_RATIO = 0.01;
+
+	@Test
+	void passesWhenP99WithinSloAndErrorsWithinRatio() {
+		assertTrue(result(1000, 5, 5, 0, millisUpTo(1000)).passed(SLO, MAX_ERROR_RATIO));
+	}
+
+	@Test
+	void failsWhenP99ExceedsSlo() {
+		assertFalse(result(1000, 0, 0, 0, millisUpTo(1000)).passed(Duration.ofMillis(900), MAX_ERROR_RATIO));
+	}
+
+	@Test
+	void countsServiceClientAndLostMessagesAgainstErrorRatio() {
+		assertTrue(result(1000, 4, 3, 3, millisUpTo(1000)).passed(SLO, MAX_ERROR_RATIO));
+		assertFalse(result(1000, 4, 4, 3, millisUpTo(1000)).passed(SLO, MAX_ERROR_RATIO));
+		assertFalse(result(1000, 0, 11, 0, millisUpTo(1000)).passed(SLO, MAX_ERROR_RATIO));
+	}
+
+	@Test
+	void failsWithoutVisibleRows() {
+		assertFalse(result(1000, 0, 0, 0, new Histogram(OpenLoopDriver.HIGHEST_TRACKABLE_MICROS, 3))
+				.passed(SLO, MAX_ERROR_RATIO));
+	}
+
+	@Test
+	void reportsPercentilesInMilliseconds() {
+		StepResult result = result(1000, 1, 2, 3, millisUpTo(1000));
+		String[] header = StepResult.CSV_HEADER.split(",");
+		String[] row = result.toCsv(true).split(",");
+		assertEquals(header.length, row.length);
+
+		List<String> columns = List.of(header);
+		assertEquals("1", row[columns.indexOf("errors")]);
+		assertEquals("2", row[columns.indexOf("client_errors")]);
+		assertEquals("3", row[columns.indexOf("lost")]);
+		assertEquals(500, Double.parseDouble(row[columns.indexOf("p50_ms")]), 1);
+		assertEquals(900, Double.parseDouble(row[columns.indexOf("p90_ms")]), 1);
+		assertEquals(990, Double.parseDouble(row[columns.indexOf("p99_ms")]), 1);
+		assertEquals(999, Double.parseDouble(row[columns.indexOf("p999_ms")]), 1);
+		assertEquals(1000, Double.parseDouble(row[columns.indexOf("max_ms")]), 1);
+		assertEquals(990, Double.parseDouble(row[columns.indexOf("http_p99_ms")]), 1);
+		assertEquals("true", row[columns.indexOf("passed")]);
+
+		assertTrue(result.toRow(true).endsWith("OK"));
+		assertTrue(result.toRow(false).endsWith("FAIL"));
+	}
+
+	private static StepResult result(int sent, int errors, int clientErrors, int lost, Histogram latency) {
+		return new StepResult(1000, sent, errors, clientErrors, lost, 1000, 1000, latency, latency);
+	}
+
+	private static Histogram millisUpTo(int maxMillis) {
+		Histogram histogram = new Histogram(OpenLoopDriver.HIGHEST_TRACKABLE_MICROS, 3);
+		for (int millis = 1; millis <= maxMillis; millis++) {
+			histogram.recordValue(millis * 1000L);
+		}
+		return histogram;
+	}
+}
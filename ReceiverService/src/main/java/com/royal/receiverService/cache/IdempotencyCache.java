@@ -0,0 +1,237 @@
+package com.royal.receiverService.cache;
+
+import com.royal.receiverService.repository.MessageRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Кеш идентификаторов недавно сохраненных сообщений для отсеивания повторных доставок без обращения к БД.
+ * Хранит примитивные long в хеш-таблице с открытой адресацией и линейным пробированием; порядок вставки
+ * хранится в кольцевом буфере, поэтому вытеснение идет по принципу FIFO: при заполнении (dedup.cache.capacity)
+ * и по истечении времени жизни записи (dedup.cache.ttl-ms). Отсутствие id в кеше ничего не гарантирует,
+ * окончательную проверку выполняет БД.
+ */
+@Component
+public class IdempotencyCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IdempotencyCache.class);
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    @Value("${dedup.cache.enabled}")
+    private boolean enabled;
+
+    @Value("${dedup.cache.capacity}")
+    private int capacity;
+
+    @Value("${dedup.cache.ttl-ms}")
+    private long ttlMs;
+
+    @Value("${dedup.cache.warmup}")
+    private boolean warmup;
+
+    private final MessageRepository messageRepository;
+    private final MeterRegistry meterRegistry;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder sizeEvictions = new LongAdder();
+    private final LongAdder ttlEvictions = new LongAdder();
+
+    private long[] table;
+    private int mask;
+    private long[] ringIds;
+    private long[] ringTimes;
+    private int head;
+    private int size;
+    private long ttlNanos;
+
+    /**
+     * Конструктор кеша.
+     *
+     * @param messageRepository репозиторий сообщений для прогрева кеша.
+     * @param meterRegistry     реестр метрик.
+     */
+    @Autowired
+    public IdempotencyCache(MessageRepository messageRepository, MeterRegistry meterRegistry) {
+        this.messageRepository = messageRepository;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Выделяет память под кеш, регистрирует метрики и прогревает кеш последними сохраненными id.
+     */
+    @PostConstruct
+    public void init() {
+        if (!enabled || capacity <= 0) {
+            enabled = false;
+            LOGGER.info("Кеш идентификаторов сообщений отключен");
+            return;
+        }
+        int tableSize = Integer.highestOneBit(Math.max(capacity * 2 - 1, 1)) << 1;
+        table = new long[tableSize];
+        Arrays.fill(table, EMPTY);
+        mask = tableSize - 1;
+        ringIds = new long[capacity];
+        ringTimes = new long[capacity];
+        ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+        registerMetrics();
+
+        if (warmup) {
+            try {
+                List<Long> ids = messageRepository.findRecentIds(capacity);
+                for (int i = ids.size() - 1; i >= 0; i--) {
+                    add(ids.get(i));
+                }
+                LOGGER.info("Кеш идентификаторов сообщений прогрет: {} id", ids.size());
+            } catch (Exception e) {
+                LOGGER.warn("Не удалось прогреть кеш идентификаторов сообщений: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Проверяет, сохранялось ли недавно сообщение с таким id.
+     *
+     * @param id идентификатор сообщения.
+     * @return true, если id есть в кеше.
+     */
+    public boolean contains(Long id) {
+        if (!enabled || id == null || id == EMPTY) {
+            return false;
+        }
+        boolean found;
+        lock.lock();
+        try {
+            expire(System.nanoTime());
+            found = table[find(id)] == id;
+        } finally {
+            lock.unlock();
+        }
+        (found ? hits : misses).increment();
+        return found;
+    }
+
+    /**
+     * Запоминает id сохраненного сообщения. При заполнении кеша вытесняется самая старая запись.
+     *
+     * @param id идентификатор сообщения.
+     */
+    public void add(Long id) {
+        if (!enabled || id == null || id == EMPTY) {
+            return;
+        }
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            expire(now);
+            int slot = find(id);
+            if (table[slot] == id) {
+                return;
+            }
+            if (size == capacity) {
+                evictOldest();
+                sizeEvictions.increment();
+                slot = find(id);
+            }
+            table[slot] = id;
+            int tail = (head + size) % capacity;
+            ringIds[tail] = id;
+            ringTimes[tail] = now;
+            size++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void expire(long now) {
+        while (size > 0 && now - ringTimes[head] > ttlNanos) {
+            evictOldest();
+            ttlEvictions.increment();
+        }
+    }
+
+    private void evictOldest() {
+        remove(ringIds[head]);
+        head = (head + 1) % capacity;
+        size--;
+    }
+
+    /**
+     * Возвращает слот, содержащий id, либо первый пустой слот на пути пробирования.
+     */
+    private int find(long id) {
+        int slot = slot(id);
+        while (table[slot] != EMPTY && table[slot] != id) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Удаляет id со сдвигом последующих записей цепочки назад, чтобы не оставлять "надгробий".
+     */
+    private void remove(long id) {
+        int hole = find(id);
+        if (table[hole] != id) {
+            return;
+        }
+        int next = hole;
+        while (true) {
+            next = (next + 1) & mask;
+            long key = table[next];
+            if (key == EMPTY) {
+                break;
+            }
+            int home = slot(key);
+            boolean reachable = hole <= next ? (home > hole && home <= next) : (home > hole || home <= next);
+            if (!reachable) {
+                table[hole] = key;
+                hole = next;
+            }
+        }
+        table[hole] = EMPTY;
+    }
+
+    private int slot(long id) {
+        long hash = id * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void registerMetrics() {
+        FunctionCounter.builder("dedup.cache.hits", hits, LongAdder::sum)
+                .description("Повторные доставки, отсеянные кешем")
+                .register(meterRegistry);
+        FunctionCounter.builder("dedup.cache.misses", misses, LongAdder::sum)
+                .description("Проверки кеша без совпадения")
+                .register(meterRegistry);
+        FunctionCounter.builder("dedup.cache.evictions", sizeEvictions, LongAdder::sum)
+                .description("Вытеснения записей из кеша")
+                .tag("reason", "size")
+                .register(meterRegistry);
+        FunctionCounter.builder("dedup.cache.evictions", ttlEvictions, LongAdder::sum)
+                .description("Вытеснения записей из кеша")
+                .tag("reason", "ttl")
+                .register(meterRegistry);
+        Gauge.builder("dedup.cache.size", this, cache -> cache.size)
+                .description("Число id в кеше")
+                .register(meterRegistry);
+        Gauge.builder("dedup.cache.capacity", this, cache -> cache.capacity)
+                .description("Емкость кеша")
+                .register(meterRegistry);
+    }
+}
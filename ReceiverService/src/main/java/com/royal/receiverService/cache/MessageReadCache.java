@@ -0,0 +1,129 @@
+package com.royal.receiverService.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.royal.receiverService.dto.Message;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.Function;
+
+/**
+ * Ограниченный кеш сообщений для чтения по id. Записи вытесняются по размеру (messages.cache.max-size)
+ * и по времени с момента записи (messages.cache.ttl-ms). Кеш заполняется при сохранении сообщений
+ * (write-through) и при промахах чтения. Метрики cache.gets (тег result: hit/miss), cache.evictions и
+ * cache.size публикуются с тегом cache=messages.
+ *
+ * <p>Кеш хранит неизменяемые снимки сообщений, а вызывающим отдает новые экземпляры {@link Message}, поэтому
+ * изменение полученного или сохраненного объекта не меняет закешированное значение. Ключом служит id: в кеше
+ * хранится последняя сохраненная версия сообщения, и чтение из БД тоже возвращает строку с самой поздней меткой.
+ */
+@Component
+public class MessageReadCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MessageReadCache.class);
+
+    private static final String CACHE_NAME = "messages";
+
+    @Value("${messages.cache.enabled}")
+    private boolean enabled;
+
+    @Value("${messages.cache.max-size}")
+    private long maxSize;
+
+    @Value("${messages.cache.ttl-ms}")
+    private long ttlMs;
+
+    private final MeterRegistry meterRegistry;
+
+    private Cache<Long, CachedMessage> cache;
+
+    /**
+     * Конструктор кеша.
+     *
+     * @param meterRegistry реестр метрик.
+     */
+    @Autowired
+    public MessageReadCache(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Создает кеш и регистрирует его метрики.
+     */
+    @PostConstruct
+    public void init() {
+        if (!enabled || maxSize <= 0) {
+            enabled = false;
+            LOGGER.info("Кеш чтения сообщений отключен");
+            return;
+        }
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        LOGGER.info("Кеш чтения сообщений включен: до {} записей, время жизни {} мс", maxSize, ttlMs);
+    }
+
+    /**
+     * Возвращает сообщение из кеша, а при промахе загружает его и кеширует найденное значение.
+     *
+     * @param id     идентификатор сообщения.
+     * @param loader загрузка сообщения из БД; возвращает null, если сообщения нет.
+     * @return сообщение или null.
+     */
+    public Message get(Long id, Function<Long, Message> loader) {
+        if (!enabled) {
+            return loader.apply(id);
+        }
+        CachedMessage cached = cache.get(id, key -> {
+            Message message = loader.apply(key);
+            return message == null ? null : CachedMessage.of(message);
+        });
+        return cached == null ? null : cached.toMessage();
+    }
+
+    /**
+     * Кеширует только что сохраненное сообщение.
+     *
+     * @param message сохраненное сообщение.
+     */
+    public void put(Message message) {
+        // Без временной метки БД подставит свою, и кешированная копия разойдется с записью в таблице.
+        if (enabled && message.getId() != null && message.getTimestamp() != null) {
+            cache.put(message.getId(), CachedMessage.of(message));
+        }
+    }
+
+    /**
+     * Неизменяемый снимок сообщения; временная метка хранится как {@link Instant}, потому что {@link Timestamp}
+     * изменяем.
+     */
+    private record CachedMessage(Long id, String name, double price, Instant timestamp) {
+
+        private static CachedMessage of(Message message) {
+            return new CachedMessage(message.getId(), message.getName(), message.getPrice(),
+                    message.getTimestamp() == null ? null : message.getTimestamp().toInstant());
+        }
+
+        private Message toMessage() {
+            Message message = new Message();
+            message.setId(id);
+            message.setName(name);
+            message.setPrice(price);
+            message.setTimestamp(timestamp == null ? null : Timestamp.from(timestamp));
+            return message;
+        }
+    }
+}
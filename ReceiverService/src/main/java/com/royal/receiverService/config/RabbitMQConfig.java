@@ -1,15 +1,28 @@
 package com.royal.receiverService.config;
 
-
+import com.royal.receiverService.converter.BinaryMessageConverter;
+import com.royal.receiverService.metrics.ConsumeMetrics;
+import com.royal.receiverService.service.ConsumerAutoscaler;
+import com.royal.receiverService.service.RabbitDLXConsumer;
+import com.royal.receiverService.service.RetryRouter;
 import org.springframework.amqp.core.*;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.ContentTypeDelegatingMessageConverter;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Конфигурационный класс для настройки RabbitMQ.
  * Определяет очереди, обменники, ключи маршрутизации и шаблон RabbitTemplate.
@@ -35,6 +48,60 @@ public class RabbitMQConfig {
     @Value("${rabbitmq.dlx.routing.key.name}")
     private String dlxRoutingKey;
 
+    @Value("${rabbitmq.partitioned.exchange.name}")
+    private String partitionedExchange;
+
+    @Value("${rabbitmq.partitioned.queue.prefix}")
+    private String partitionQueuePrefix;
+
+    @Value("${rabbitmq.partitioned.partitions}")
+    private int partitions;
+
+    @Value("${rabbitmq.partitioned.prefetch}")
+    private int partitionPrefetch;
+
+    @Value("${rabbitmq.consumer.batch.size}")
+    private int batchSize;
+
+    @Value("${rabbitmq.consumer.batch.receive-timeout-ms}")
+    private long batchReceiveTimeoutMs;
+
+    @Value("${rabbitmq.consumer.concurrency.min}")
+    private int minConsumers;
+
+    @Value("${rabbitmq.consumer.concurrency.max}")
+    private int maxConsumers;
+
+    @Value("${rabbitmq.consumer.prefetch}")
+    private int prefetch;
+
+    @Value("${rabbitmq.consumer.write-behind.enabled}")
+    private boolean writeBehindEnabled;
+
+    @Value("${rabbitmq.consumer.write-behind.batch-size}")
+    private int writeBehindBatchSize;
+
+    @Value("${rabbitmq.dlx.consumer.concurrency}")
+    private int dlxConsumers;
+
+    @Value("${rabbitmq.dlx.consumer.prefetch}")
+    private int dlxPrefetch;
+
+    @Value("${rabbitmq.dlx.consumer.batch-size}")
+    private int dlxBatchSize;
+
+    @Value("${rabbitmq.dlx.consumer.receive-timeout-ms}")
+    private long dlxReceiveTimeoutMs;
+
+    @Value("${rabbitmq.retry.exchange.name}")
+    private String retryExchange;
+
+    @Value("${rabbitmq.retry.queue.prefix}")
+    private String retryQueuePrefix;
+
+    @Value("${rabbitmq.retry.delays-ms}")
+    private long[] retryDelaysMs;
+
     /**
      * Создает основную очередь с привязкой к Dead Letter Exchange (DLX).
      * Если сообщение не попало в основную очередь, то оно отправляется в очередь мертвых сообщений
@@ -81,10 +148,12 @@ public class RabbitMQConfig {
 
     /**
      * Создает привязку между основной очередью и основным обменником.
+     * В секционированном режиме (rabbitmq.partitioned.enabled=true) не создается, см. {@link #partitionedTopology()}.
      *
      * @return объект Binding
      */
     @Bean
+    @ConditionalOnProperty(name = "rabbitmq.partitioned.enabled", havingValue = "false", matchIfMissing = true)
     public Binding binding() {
         return BindingBuilder.bind(queue())
                 .to(exchange())
@@ -104,17 +173,207 @@ public class RabbitMQConfig {
     }
 
     /**
-     * Конфигурирует конвертер сообщений в JSON-формат.
+     * Создает топологию повторных попыток (rabbitmq.retry.enabled=true): обменник повторных попыток и по очереди
+     * задержки на каждый уровень rabbitmq.retry.delays-ms. Очередь задержки не имеет потребителей: сообщение
+     * лежит в ней x-message-ttl миллисекунд и затем перенаправляется (dead-letter) в основной обменник
+     * с основным ключом маршрутизации.
+     *
+     * @return обменник, очереди задержки и привязки
+     */
+    @Bean
+    @ConditionalOnProperty(name = "rabbitmq.retry.enabled", havingValue = "true")
+    public Declarables retryTopology() {
+        DirectExchange retry = new DirectExchange(retryExchange);
+        List<Declarable> declarables = new ArrayList<>();
+        declarables.add(retry);
+        for (long delayMs : retryDelaysMs) {
+            String name = RetryRouter.queueName(retryQueuePrefix, delayMs);
+            Queue delayQueue = QueueBuilder.durable(name)
+                    .ttl((int) delayMs)
+                    .deadLetterExchange(exchange)
+                    .deadLetterRoutingKey(routingKey)
+                    .build();
+            declarables.add(delayQueue);
+            declarables.add(BindingBuilder.bind(delayQueue).to(retry).with(name));
+        }
+        return new Declarables(declarables);
+    }
+
+    /**
+     * Создает секционированную топологию (rabbitmq.partitioned.enabled=true): основной обменник привязывается
+     * к обменнику x-consistent-hash, который распределяет сообщения по хешу message_id между
+     * rabbitmq.partitioned.partitions очередями с единственным активным потребителем (x-single-active-consumer).
+     * Топология совпадает с объявляемой в SenderService. Требуется плагин rabbitmq_consistent_hash_exchange.
+     *
+     * @return обменник, очереди-секции и привязки
+     */
+    @Bean
+    @ConditionalOnProperty(name = "rabbitmq.partitioned.enabled", havingValue = "true")
+    public Declarables partitionedTopology() {
+        CustomExchange hashExchange = new CustomExchange(partitionedExchange, "x-consistent-hash", true, false,
+                Map.of("hash-property", "message_id"));
+        List<Declarable> declarables = new ArrayList<>();
+        declarables.add(hashExchange);
+        declarables.add(BindingBuilder.bind(hashExchange).to(exchange()).with(routingKey));
+        for (int partition = 0; partition < partitions; partition++) {
+            Queue partitionQueue = QueueBuilder.durable(partitionQueuePrefix + partition)
+                    .singleActiveConsumer()
+                    .withArgument("x-dead-letter-exchange", dlxExchange)
+                    .withArgument("x-dead-letter-routing-key", dlxRoutingKey)
+                    .build();
+            declarables.add(partitionQueue);
+            // Ключ маршрутизации для consistent-hash — вес секции.
+            declarables.add(BindingBuilder.bind(partitionQueue).to(hashExchange).with("1").noargs());
+        }
+        return new Declarables(declarables);
+    }
+
+    /**
+     * Конфигурирует конвертер сообщений, выбирающий формат по типу содержимого:
+     * компактный бинарный формат для {@link BinaryMessageConverter#CONTENT_TYPE}, иначе JSON.
      *
      * @return конвертер сообщений
      */
     @Bean
     public MessageConverter messageConverter() {
-        return new Jackson2JsonMessageConverter();
+        ContentTypeDelegatingMessageConverter converter =
+                new ContentTypeDelegatingMessageConverter(new Jackson2JsonMessageConverter());
+        converter.addDelegate(BinaryMessageConverter.CONTENT_TYPE, new BinaryMessageConverter());
+        return converter;
+    }
+
+    /**
+     * Создает фабрику контейнеров основной очереди. Контейнер запускается с rabbitmq.consumer.concurrency.min
+     * потребителями и prefetch rabbitmq.consumer.prefetch (при отложенной записи не меньше
+     * rabbitmq.consumer.write-behind.batch-size, см. {@link #listenerPrefetch}). Если включен автоподбор
+     * (rabbitmq.consumer.autoscale.enabled=true), число потребителей меняет {@link ConsumerAutoscaler},
+     * иначе контейнер сам добавляет потребителей под нагрузкой до rabbitmq.consumer.concurrency.max.
+     *
+     * @param configurer        настройщик с параметрами spring.rabbitmq.listener.simple.*
+     * @param connectionFactory соединение
+     * @param autoscaler        сервис автоподбора потребителей, если включен
+     * @param consumeMetrics    метрики приема для замера загрузки слушателя
+     * @return фабрика контейнеров основной очереди
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory consumerContainerFactory(SimpleRabbitListenerContainerFactoryConfigurer configurer,
+                                                                         ConnectionFactory connectionFactory,
+                                                                         ObjectProvider<ConsumerAutoscaler> autoscaler,
+                                                                         ConsumeMetrics consumeMetrics) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setConcurrentConsumers(minConsumers);
+        factory.setPrefetchCount(listenerPrefetch(prefetch));
+        ConsumerAutoscaler consumerAutoscaler = autoscaler.getIfAvailable();
+        if (consumerAutoscaler != null) {
+            factory.setMaxConcurrentConsumers(minConsumers);
+            factory.setAdviceChain(consumeMetrics.listenerAdvice(ConsumerAutoscaler.MESSAGE_LISTENER_ID),
+                    consumerAutoscaler.latencyAdvice());
+        } else {
+            factory.setMaxConcurrentConsumers(maxConsumers);
+            factory.setAdviceChain(consumeMetrics.listenerAdvice(ConsumerAutoscaler.MESSAGE_LISTENER_ID));
+        }
+        return factory;
+    }
+
+    /**
+     * Создает фабрику контейнеров очереди мертвых писем с rabbitmq.dlx.consumer.concurrency потребителями
+     * и prefetch rabbitmq.dlx.consumer.prefetch. Слушатель получает пакеты до rabbitmq.dlx.consumer.batch-size
+     * сырых сообщений (или сколько накопилось за rabbitmq.dlx.consumer.receive-timeout-ms) и подтверждает их вручную.
+     *
+     * @param configurer        настройщик с параметрами spring.rabbitmq.listener.simple.*
+     * @param connectionFactory соединение
+     * @param consumeMetrics    метрики приема для замера загрузки слушателя
+     * @return фабрика контейнеров очереди DLX
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory deadLetterContainerFactory(SimpleRabbitListenerContainerFactoryConfigurer configurer,
+                                                                           ConnectionFactory connectionFactory,
+                                                                           ConsumeMetrics consumeMetrics) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setConcurrentConsumers(dlxConsumers);
+        factory.setPrefetchCount(dlxPrefetch);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(dlxBatchSize);
+        factory.setReceiveTimeout(dlxReceiveTimeoutMs);
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        factory.setAdviceChain(consumeMetrics.listenerAdvice(RabbitDLXConsumer.DEAD_LETTER_LISTENER_ID));
+        return factory;
+    }
+
+    /**
+     * Создает фабрику контейнеров для пакетного приема сообщений (rabbitmq.consumer.batch.enabled=true).
+     * Контейнер собирает до rabbitmq.consumer.batch.size сообщений или ждет rabbitmq.consumer.batch.receive-timeout-ms
+     * и передает слушателю список сообщений. Подтверждение выполняет слушатель вручную.
+     * Число потребителей подбирает {@link ConsumerAutoscaler}, если он включен, иначе контейнер сам добавляет
+     * потребителей под нагрузкой до rabbitmq.consumer.concurrency.max.
+     *
+     * @param configurer        настройщик с параметрами spring.rabbitmq.listener.simple.*
+     * @param connectionFactory соединение
+     * @param autoscaler        сервис автоподбора потребителей, если включен
+     * @param consumeMetrics    метрики приема для замера загрузки слушателя
+     * @return фабрика контейнеров пакетного приема
+     */
+    @Bean
+    @ConditionalOnProperty(name = "rabbitmq.consumer.batch.enabled", havingValue = "true")
+    public SimpleRabbitListenerContainerFactory batchContainerFactory(SimpleRabbitListenerContainerFactoryConfigurer configurer,
+                                                                      ConnectionFactory connectionFactory,
+                                                                      ObjectProvider<ConsumerAutoscaler> autoscaler,
+                                                                      ConsumeMetrics consumeMetrics) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setReceiveTimeout(batchReceiveTimeoutMs);
+        factory.setPrefetchCount(batchSize * 2);
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        factory.setConcurrentConsumers(minConsumers);
+        ConsumerAutoscaler consumerAutoscaler = autoscaler.getIfAvailable();
+        if (consumerAutoscaler != null) {
+            factory.setMaxConcurrentConsumers(minConsumers);
+            factory.setAdviceChain(consumeMetrics.listenerAdvice(ConsumerAutoscaler.MESSAGE_BATCH_LISTENER_ID),
+                    consumerAutoscaler.latencyAdvice());
+        } else {
+            factory.setMaxConcurrentConsumers(maxConsumers);
+            factory.setAdviceChain(consumeMetrics.listenerAdvice(ConsumerAutoscaler.MESSAGE_BATCH_LISTENER_ID));
+        }
+        return factory;
+    }
+
+    /**
+     * Создает фабрику контейнеров очередей-секций (rabbitmq.partitioned.enabled=true): по одному потребителю
+     * на контейнер, prefetch rabbitmq.partitioned.prefetch (при отложенной записи не меньше
+     * rabbitmq.consumer.write-behind.batch-size), ручное подтверждение. Метрики слушателя
+     * публикуются с идентификатором контейнера (partition-N).
+     *
+     * @param configurer        настройщик с параметрами spring.rabbitmq.listener.simple.*
+     * @param connectionFactory соединение
+     * @param consumeMetrics    метрики приема для замера загрузки слушателя
+     * @return фабрика контейнеров секций
+     */
+    @Bean
+    @ConditionalOnProperty(name = "rabbitmq.partitioned.enabled", havingValue = "true")
+    public SimpleRabbitListenerContainerFactory partitionContainerFactory(SimpleRabbitListenerContainerFactoryConfigurer configurer,
+                                                                          ConnectionFactory connectionFactory,
+                                                                          ConsumeMetrics consumeMetrics) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setConcurrentConsumers(1);
+        factory.setMaxConcurrentConsumers(1);
+        factory.setPrefetchCount(listenerPrefetch(partitionPrefetch));
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        factory.setContainerCustomizer(container ->
+                container.setAdviceChain(consumeMetrics.listenerAdvice(container.getListenerId())));
+        return factory;
     }
 
     /**
      * Настраивает шаблон RabbitTemplate с заданным соединением и конвертером сообщений.
+     * Шаблон публикует с флагом mandatory, чтобы немаршрутизируемые сообщения при повторной публикации
+     * мертвых писем возвращались брокером и учитывались в {@code CorrelationData#getReturned()}.
      *
      * @param connectionFactory соединение
      * @return настроенный RabbitTemplate
@@ -123,6 +382,20 @@ public class RabbitMQConfig {
     public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory) {
         RabbitTemplate rabbitTemplate = new RabbitTemplate(connectionFactory);
         rabbitTemplate.setMessageConverter(messageConverter());
+        rabbitTemplate.setMandatory(true);
         return rabbitTemplate;
     }
+
+    /**
+     * Возвращает prefetch потребителя, передающего сообщения в отложенную запись. Такой потребитель
+     * подтверждает сообщения только после групповой фиксации, поэтому с prefetch меньше
+     * rabbitmq.consumer.write-behind.batch-size один потребитель не смог бы набрать полный пакет,
+     * и каждая фиксация ждала бы rabbitmq.consumer.write-behind.max-delay-ms.
+     *
+     * @param configured prefetch из настроек
+     * @return prefetch не меньше размера пакета отложенной записи, если она включена
+     */
+    private int listenerPrefetch(int configured) {
+        return writeBehindEnabled ? Math.max(configured, writeBehindBatchSize) : configured;
+    }
 }
@@ -1,53 +1,125 @@
 package com.royal.receiverService.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.royal.receiverService.dto.DeadLetterFilter;
 import com.royal.receiverService.dto.DeadLetterMessage;
+import com.royal.receiverService.dto.DeadLetterReplayRequest;
 import com.royal.receiverService.exception.DeadLetterPersistenceException;
+import com.royal.receiverService.service.DeadLetterReplayService;
 import com.royal.receiverService.service.DeadLetterService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Base64;
 import java.util.List;
 
 /**
  * Контроллер для обработки запросов, связанных с мертвыми письмами (Dead Letters).
- * Предоставляет API для получения списка мертвых сообщений.
+ * Предоставляет API для выборки мертвых сообщений по интервалу времени и причине ошибки
+ * постранично (keyset-курсор по (timestamp, id)) или потоком и для их повторной публикации.
  */
 @RestController
 @RequestMapping("/api/v1")
 public class DeadLetterController {
 
+    /**
+     * Заголовок ответа с курсором следующей страницы.
+     */
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private static final String NDJSON_VALUE = "application/x-ndjson";
+
+    @Value("${dead-letters.page.default-limit}")
+    private int defaultLimit;
+
+    @Value("${dead-letters.page.max-limit}")
+    private int maxLimit;
+
+    @Value("${messages.stream.fetch-size}")
+    private int fetchSize;
+
     private final DeadLetterService deadLetterService;
+    private final DeadLetterReplayService deadLetterReplayService;
+    private final ObjectMapper objectMapper;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DeadLetterController.class);
 
     /**
      * Конструктор с внедрением зависимости сервиса обработки мертвых сообщений.
      *
-     * @param deadLetterService сервис для работы с мертвыми сообщениями
+     * @param deadLetterService       сервис для работы с мертвыми сообщениями
+     * @param deadLetterReplayService сервис повторной публикации мертвых сообщений
+     * @param objectMapper            JSON-сериализатор для потоковой выгрузки
      */
     @Autowired
-    public DeadLetterController(DeadLetterService deadLetterService) {
+    public DeadLetterController(DeadLetterService deadLetterService, DeadLetterReplayService deadLetterReplayService,
+                                ObjectMapper objectMapper) {
         this.deadLetterService = deadLetterService;
+        this.deadLetterReplayService = deadLetterReplayService;
+        this.objectMapper = objectMapper;
     }
 
     /**
-     * Обрабатывает GET-запрос для получения всех мертвых сообщений.
+     * Обрабатывает GET-запрос для получения страницы мертвых сообщений.
+     * Если страница заполнена, заголовок {@value #NEXT_CURSOR_HEADER} содержит курсор следующей страницы.
      *
-     * @return список мертвых сообщений или сообщение об ошибке
+     * @param from     начало интервала времени, включительно
+     * @param to       конец интервала времени, не включительно
+     * @param reason   точная причина ошибки
+     * @param replayed true — только опубликованные повторно, false — только не опубликованные
+     * @param cursor   курсор из заголовка {@value #NEXT_CURSOR_HEADER} предыдущей страницы; без параметра — с начала
+     * @param limit    размер страницы, не больше dead-letters.page.max-limit
+     * @return страница мертвых сообщений или сообщение об ошибке
      */
-    @GetMapping("/dead-letters")
-    public ResponseEntity<?> getAllDeadLetters() {
+    @GetMapping(value = "/dead-letters", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getDeadLetters(
+            @RequestParam(name = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(name = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(name = "reason", required = false) String reason,
+            @RequestParam(name = "replayed", required = false) Boolean replayed,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "limit", required = false) Integer limit) {
+        int pageSize = limit == null ? defaultLimit : limit;
+        if (pageSize < 1 || pageSize > maxLimit) {
+            return ResponseEntity.badRequest().body("Параметр limit должен быть от 1 до " + maxLimit);
+        }
+        DeadLetterFilter filter;
+        try {
+            filter = toFilter(from, to, reason, replayed, cursor);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Некорректный параметр cursor: " + cursor);
+        }
         try {
-            LOGGER.info("Попытка получения всех мертвых сообщений через контроллер");
-            List<DeadLetterMessage> deadLetters = deadLetterService.getAllDeadLetters();
+            LOGGER.info("Попытка получения страницы мертвых сообщений через контроллер");
+            List<DeadLetterMessage> deadLetters = deadLetterService.getDeadLettersPage(filter, pageSize);
             LOGGER.info("Успешно получено {} мертвых сообщений через контроллер", deadLetters.size());
-            return ResponseEntity.ok(deadLetters);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (deadLetters.size() == pageSize) {
+                response.header(NEXT_CURSOR_HEADER, encodeCursor(deadLetters.get(deadLetters.size() - 1)));
+            }
+            return response.body(deadLetters);
         } catch (DeadLetterPersistenceException e) {
             LOGGER.error("Ошибка при получении мертвых сообщений через контроллер: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -58,4 +130,109 @@ public class DeadLetterController {
                     .body("Произошла непредвиденная ошибка: " + e.getMessage());
         }
     }
+
+    /**
+     * Обрабатывает GET-запрос с {@code Accept: application/x-ndjson}: выгружает все подходящие мертвые сообщения
+     * потоком, по одному JSON-объекту на строку, с теми же фильтрами, что и постраничный запрос.
+     *
+     * @param from     начало интервала времени, включительно
+     * @param to       конец интервала времени, не включительно
+     * @param reason   точная причина ошибки
+     * @param replayed true — только опубликованные повторно, false — только не опубликованные
+     * @param cursor   курсор, после которого начинается выгрузка; без параметра — с начала
+     * @return потоковое тело ответа
+     * @throws ResponseStatusException со статусом 400, если курсор некорректен
+     */
+    @GetMapping(value = "/dead-letters", produces = NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamDeadLetters(
+            @RequestParam(name = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(name = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(name = "reason", required = false) String reason,
+            @RequestParam(name = "replayed", required = false) Boolean replayed,
+            @RequestParam(name = "cursor", required = false) String cursor) {
+        DeadLetterFilter filter;
+        try {
+            filter = toFilter(from, to, reason, replayed, cursor);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Некорректный параметр cursor: " + cursor, e);
+        }
+        StreamingResponseBody body = outputStream -> {
+            ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.setRootValueSeparator(null);
+                long[] count = new long[1];
+                deadLetterService.streamDeadLetters(filter, fetchSize, deadLetter -> {
+                    try {
+                        writer.writeValue(generator, deadLetter);
+                        generator.writeRaw('\n');
+                        count[0]++;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                LOGGER.info("Потоком выгружено {} мертвых сообщений", count[0]);
+            } catch (UncheckedIOException e) {
+                LOGGER.warn("Потоковая выгрузка мертвых сообщений прервана: {}", e.getMessage());
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON_VALUE)).body(body);
+    }
+
+    /**
+     * Обрабатывает POST-запрос на повторную публикацию мертвых сообщений в основной обменник.
+     * Сообщения выбираются по списку id и/или интервалу времени и причине ошибки и публикуются
+     * с ограничением частоты и ожиданием подтверждений брокера.
+     *
+     * @param request условия выбора сообщений
+     * @return итог публикации, 409 если публикация уже выполняется, или сообщение об ошибке
+     */
+    @PostMapping("/dead-letters/replay")
+    public ResponseEntity<?> replayDeadLetters(@RequestBody DeadLetterReplayRequest request) {
+        if (request.getLimit() != null && request.getLimit() < 1) {
+            return ResponseEntity.badRequest().body("Параметр limit должен быть положительным");
+        }
+        try {
+            return ResponseEntity.ok(deadLetterReplayService.replay(request));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (DeadLetterPersistenceException e) {
+            LOGGER.error("Ошибка при повторной публикации мертвых сообщений: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Ошибка при работе с таблицей dead_letter_messages: " + e.getMessage());
+        } catch (Exception e) {
+            LOGGER.error("Произошла непредвиденная ошибка при повторной публикации: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Произошла непредвиденная ошибка: " + e.getMessage());
+        }
+    }
+
+    private static DeadLetterFilter toFilter(LocalDateTime from, LocalDateTime to, String reason, Boolean replayed,
+                                             String cursor) {
+        Timestamp afterTimestamp = null;
+        Long afterId = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = decoded.lastIndexOf(',');
+            if (separator < 0) {
+                throw new IllegalArgumentException(cursor);
+            }
+            try {
+                afterTimestamp = Timestamp.valueOf(LocalDateTime.parse(decoded.substring(0, separator)));
+                afterId = Long.parseLong(decoded.substring(separator + 1));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException(cursor, e);
+            }
+        }
+        return new DeadLetterFilter(from == null ? null : Timestamp.valueOf(from), to == null ? null : Timestamp.valueOf(to),
+                reason, null, replayed, afterTimestamp, afterId);
+    }
+
+    /**
+     * Кодирует позицию (timestamp, id) сообщения в непрозрачный курсор.
+     */
+    private static String encodeCursor(DeadLetterMessage deadLetter) {
+        String position = deadLetter.getTimestamp().toLocalDateTime() + "," + deadLetter.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
 }
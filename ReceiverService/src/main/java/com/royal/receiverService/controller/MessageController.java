@@ -1,5 +1,9 @@
 package com.royal.receiverService.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.royal.receiverService.dto.Message;
 import com.royal.receiverService.exception.MessagePersistenceException;
 import com.royal.receiverService.repository.DeadLetterRepository;
@@ -8,47 +12,104 @@ import com.royal.receiverService.service.MessageService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
  * Контроллер для обработки запросов, связанных с обычными сообщениями.
- * Предоставляет API для получения списка сообщений.
+ * Предоставляет API для постраничного получения сообщений и их потоковой выгрузки.
  */
 @RestController
 @RequestMapping("/api/v1")
 public class MessageController {
 
+    /**
+     * Заголовок ответа с after_id следующей страницы.
+     */
+    public static final String NEXT_AFTER_ID_HEADER = "X-Next-After-Id";
+
+    /**
+     * Заголовок ответа с after_timestamp следующей страницы.
+     */
+    public static final String NEXT_AFTER_TIMESTAMP_HEADER = "X-Next-After-Timestamp";
+
+    private static final String NDJSON_VALUE = "application/x-ndjson";
+
+    @Value("${messages.page.default-limit}")
+    private int defaultLimit;
+
+    @Value("${messages.page.max-limit}")
+    private int maxLimit;
+
+    @Value("${messages.stream.fetch-size}")
+    private int fetchSize;
+
+    @Value("${messages.stream.timeout-ms}")
+    private long streamTimeoutMs;
+
     private final MessageService messageService;
+    private final ObjectMapper objectMapper;
     private static final Logger LOGGER = LoggerFactory.getLogger(MessageController.class);
 
     /**
      * Конструктор с внедрением зависимости сервиса обработки сообщений.
      *
      * @param messageService сервис для работы с сообщениями
+     * @param objectMapper   JSON-сериализатор для потоковой выгрузки
      */
     @Autowired
-    public MessageController(MessageService messageService) {
+    public MessageController(MessageService messageService, ObjectMapper objectMapper) {
         this.messageService = messageService;
+        this.objectMapper = objectMapper;
     }
 
     /**
-     * Обрабатывает GET-запрос для получения всех сообщений.
+     * Обрабатывает GET-запрос для получения страницы сообщений (keyset-пагинация по первичному ключу (id, timestamp)).
+     * Если страница заполнена, заголовки {@value #NEXT_AFTER_ID_HEADER} и {@value #NEXT_AFTER_TIMESTAMP_HEADER}
+     * содержат after_id и after_timestamp следующей страницы.
      *
-     * @return список сообщений или сообщение об ошибке
+     * @param afterId        id последнего сообщения предыдущей страницы; без параметра — с начала
+     * @param afterTimestamp временная метка последнего сообщения предыдущей страницы; без параметра — после всех
+     *                       сообщений с after_id
+     * @param limit          размер страницы, не больше messages.page.max-limit
+     * @return страница сообщений или сообщение об ошибке
      */
-    @GetMapping("/messages")
-    public ResponseEntity<?> getAllMessages() {
+    @GetMapping(value = "/messages", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getMessages(@RequestParam(name = "after_id", required = false) Long afterId,
+                                         @RequestParam(name = "after_timestamp", required = false)
+                                         @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime afterTimestamp,
+                                         @RequestParam(name = "limit", required = false) Integer limit) {
+        int pageSize = limit == null ? defaultLimit : limit;
+        if (pageSize < 1 || pageSize > maxLimit) {
+            return ResponseEntity.badRequest().body("Параметр limit должен быть от 1 до " + maxLimit);
+        }
         try {
-            LOGGER.info("Попытка получения всех сообщений через контроллер");
-            List<Message> messages = messageService.getAllMessages();
+            LOGGER.info("Попытка получения страницы сообщений через контроллер");
+            List<Message> messages = messageService.getMessagesPage(afterId == null ? Long.MIN_VALUE : afterId,
+                    toTimestamp(afterId, afterTimestamp), pageSize);
             LOGGER.info("Успешно получено {} сообщений через контроллер", messages.size());
-            return ResponseEntity.ok(messages);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (messages.size() == pageSize) {
+                Message last = messages.get(messages.size() - 1);
+                response.header(NEXT_AFTER_ID_HEADER, String.valueOf(last.getId()));
+                response.header(NEXT_AFTER_TIMESTAMP_HEADER, last.getTimestamp().toLocalDateTime().toString());
+            }
+            return response.body(messages);
         } catch (MessagePersistenceException e) {
             LOGGER.error("Ошибка при получении сообщений через контроллер", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -59,4 +120,80 @@ public class MessageController {
                     .body("Произошла непредвиденная ошибка: " + e.getMessage());
         }
     }
+
+    /**
+     * Обрабатывает GET-запрос для получения сообщения по id.
+     *
+     * @param id идентификатор сообщения
+     * @return сообщение, 404 если сообщения нет, или сообщение об ошибке
+     */
+    @GetMapping("/messages/{id}")
+    public ResponseEntity<?> getMessage(@PathVariable Long id) {
+        try {
+            return messageService.getMessage(id)
+                    .<ResponseEntity<?>>map(ResponseEntity::ok)
+                    .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                            .body("Сообщение с id " + id + " не найдено"));
+        } catch (MessagePersistenceException e) {
+            LOGGER.error("Ошибка при получении сообщения с id {} через контроллер", id, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Ошибка при получении сообщения из базы данных: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Обрабатывает GET-запрос с {@code Accept: application/x-ndjson}: выгружает все сообщения после позиции
+     * (after_id, after_timestamp) потоком, по одному JSON-объекту на строку. Строки пишутся в ответ по мере чтения
+     * из БД через серверный курсор. Выгрузка ограничена messages.stream.timeout-ms. Если чтение из БД прервалось
+     * после начала ответа, последней строкой пишется объект {@code {"error": "..."}}, чтобы клиент мог отличить
+     * оборванную выгрузку от полной.
+     *
+     * @param afterId        id, после которого начинается выгрузка; без параметра — с начала
+     * @param afterTimestamp временная метка сообщения after_id; без параметра — после всех сообщений с after_id
+     * @return потоковое тело ответа
+     */
+    @GetMapping(value = "/messages", produces = NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamMessages(
+            @RequestParam(name = "after_id", required = false) Long afterId,
+            @RequestParam(name = "after_timestamp", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime afterTimestamp) {
+        long from = afterId == null ? Long.MIN_VALUE : afterId;
+        Timestamp fromTimestamp = toTimestamp(afterId, afterTimestamp);
+        StreamingResponseBody body = outputStream -> {
+            ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.setRootValueSeparator(null);
+                long[] count = new long[1];
+                try {
+                    messageService.streamMessages(from, fromTimestamp, fetchSize, streamTimeoutMs, message -> {
+                        try {
+                            writer.writeValue(generator, message);
+                            generator.writeRaw('\n');
+                            count[0]++;
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                    LOGGER.info("Потоком выгружено {} сообщений после id {}", count[0], from);
+                } catch (MessagePersistenceException e) {
+                    LOGGER.error("Потоковая выгрузка сообщений прервана ошибкой БД после {} сообщений", count[0], e);
+                    generator.writeStartObject();
+                    generator.writeStringField("error", "Ошибка при чтении сообщений из базы данных: " + e.getMessage());
+                    generator.writeEndObject();
+                    generator.writeRaw('\n');
+                }
+            } catch (UncheckedIOException e) {
+                LOGGER.warn("Потоковая выгрузка сообщений прервана: {}", e.getMessage());
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON_VALUE)).body(body);
+    }
+
+    /**
+     * Временная метка позиции keyset-пагинации; без after_id метка не учитывается.
+     */
+    private static Timestamp toTimestamp(Long afterId, LocalDateTime afterTimestamp) {
+        return afterId == null || afterTimestamp == null ? null : Timestamp.valueOf(afterTimestamp);
+    }
 }
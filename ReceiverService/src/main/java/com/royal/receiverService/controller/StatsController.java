@@ -0,0 +1,55 @@
+package com.royal.receiverService.controller;
+
+import com.royal.receiverService.stats.PriceStatistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Контроллер статистики цены сохраненных сообщений.
+ * Отдает агрегаты, которые поддерживаются в памяти при сохранении сообщений, без обращения к БД.
+ */
+@RestController
+@RequestMapping("/api/v1")
+public class StatsController {
+
+    private final PriceStatistics priceStatistics;
+
+    /**
+     * Конструктор контроллера статистики.
+     *
+     * @param priceStatistics статистика цены сообщений
+     */
+    @Autowired
+    public StatsController(PriceStatistics priceStatistics) {
+        this.priceStatistics = priceStatistics;
+    }
+
+    /**
+     * Обрабатывает GET-запрос для получения статистики цены по минутам или часам.
+     *
+     * @param window    окно: minute (по умолчанию) или hour
+     * @param quantiles уровни квантилей через запятую, от 0 до 1
+     * @return агрегаты по корзинам окна и итог за окно или сообщение об ошибке
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<?> getStats(@RequestParam(name = "window", defaultValue = PriceStatistics.MINUTE_WINDOW) String window,
+                                      @RequestParam(name = "quantiles", defaultValue = "0.5,0.9,0.99") double[] quantiles) {
+        if (!priceStatistics.isEnabled()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Статистика отключена (stats.enabled=false)");
+        }
+        if (!PriceStatistics.MINUTE_WINDOW.equals(window) && !PriceStatistics.HOUR_WINDOW.equals(window)) {
+            return ResponseEntity.badRequest().body("Параметр window должен быть minute или hour");
+        }
+        for (double quantile : quantiles) {
+            if (quantile < 0 || quantile > 1) {
+                return ResponseEntity.badRequest().body("Уровни квантилей должны быть от 0 до 1: " + quantile);
+            }
+        }
+        return ResponseEntity.ok(priceStatistics.report(window, quantiles));
+    }
+}
@@ -0,0 +1,69 @@
+package com.royal.receiverService.dto;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * DTO-класс, представляющий условия выборки мертвых сообщений: интервал времени [from, to), точная причина
+ * ошибки, список id, признак повторной публикации и позиция keyset-курсора (временная метка и id последнего
+ * сообщения предыдущей страницы). Незаданные (null) условия не применяются.
+ */
+
+public class DeadLetterFilter {
+    private Timestamp from;
+    private Timestamp to;
+    private String reason;
+    private List<Long> ids;
+    private Boolean replayed;
+    private Timestamp afterTimestamp;
+    private Long afterId;
+
+    public DeadLetterFilter(Timestamp from, Timestamp to, String reason, List<Long> ids, Boolean replayed,
+                            Timestamp afterTimestamp, Long afterId) {
+        this.from = from;
+        this.to = to;
+        this.reason = reason;
+        this.ids = ids;
+        this.replayed = replayed;
+        this.afterTimestamp = afterTimestamp;
+        this.afterId = afterId;
+    }
+
+    public Timestamp getFrom() {
+        return from;
+    }
+
+    public Timestamp getTo() {
+        return to;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public List<Long> getIds() {
+        return ids;
+    }
+
+    public Boolean getReplayed() {
+        return replayed;
+    }
+
+    public Timestamp getAfterTimestamp() {
+        return afterTimestamp;
+    }
+
+    public Long getAfterId() {
+        return afterId;
+    }
+
+    /**
+     * Возвращает те же условия с курсором после указанного сообщения.
+     *
+     * @param last последнее сообщение предыдущей страницы.
+     * @return фильтр следующей страницы.
+     */
+    public DeadLetterFilter after(DeadLetterMessage last) {
+        return new DeadLetterFilter(from, to, reason, ids, replayed, last.getTimestamp(), last.getId());
+    }
+}
@@ -1,11 +1,15 @@
 package com.royal.receiverService.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+
 import java.sql.Timestamp;
 
 /**
  * DTO-класс, представляющий сообщение, которое попало в мертвую очередь.
  * Этот класс используется для хранения информации о сообщении, которое не удалось обработать,
- * включая его содержимое, причину ошибки и временную метку.
+ * включая его содержимое, причину ошибки и временную метку, а также исходное тело, тип содержимого,
+ * заголовки (JSON, включая историю x-death) и число попаданий в DLX для повторной публикации.
  */
 
 public class DeadLetterMessage {
@@ -13,7 +17,13 @@ public class DeadLetterMessage {
     private String messageContent;
     private String errorReason;
     private Timestamp timestamp;
-
+    private byte[] payload;
+    private String contentType;
+    private String messageId;
+    private String headers;
+    private Long deathCount;
+    private int replayCount;
+    private Timestamp replayedAt;
 
     public DeadLetterMessage(String messageBody, String errorReason, Timestamp timestamp) {
         this.messageContent = messageBody;
@@ -52,4 +62,62 @@ public class DeadLetterMessage {
     public void setTimestamp(Timestamp timestamp) {
         this.timestamp = timestamp;
     }
+
+    @JsonIgnore
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    public void setPayload(byte[] payload) {
+        this.payload = payload;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String getMessageId() {
+        return messageId;
+    }
+
+    public void setMessageId(String messageId) {
+        this.messageId = messageId;
+    }
+
+    @JsonRawValue
+    public String getHeaders() {
+        return headers;
+    }
+
+    public void setHeaders(String headers) {
+        this.headers = headers;
+    }
+
+    public Long getDeathCount() {
+        return deathCount;
+    }
+
+    public void setDeathCount(Long deathCount) {
+        this.deathCount = deathCount;
+    }
+
+    public int getReplayCount() {
+        return replayCount;
+    }
+
+    public void setReplayCount(int replayCount) {
+        this.replayCount = replayCount;
+    }
+
+    public Timestamp getReplayedAt() {
+        return replayedAt;
+    }
+
+    public void setReplayedAt(Timestamp replayedAt) {
+        this.replayedAt = replayedAt;
+    }
 }
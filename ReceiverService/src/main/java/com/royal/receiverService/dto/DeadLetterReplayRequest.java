@@ -0,0 +1,67 @@
+package com.royal.receiverService.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * DTO-класс, представляющий запрос на повторную публикацию мертвых сообщений.
+ * Сообщения выбираются по списку id и/или по интервалу времени и причине ошибки. По умолчанию уже
+ * опубликованные повторно сообщения пропускаются; limit ограничивает число публикуемых сообщений.
+ */
+
+public class DeadLetterReplayRequest {
+    private List<Long> ids;
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private String reason;
+    private boolean includeReplayed;
+    private Integer limit;
+
+    public List<Long> getIds() {
+        return ids;
+    }
+
+    public void setIds(List<Long> ids) {
+        this.ids = ids;
+    }
+
+    public LocalDateTime getFrom() {
+        return from;
+    }
+
+    public void setFrom(LocalDateTime from) {
+        this.from = from;
+    }
+
+    public LocalDateTime getTo() {
+        return to;
+    }
+
+    public void setTo(LocalDateTime to) {
+        this.to = to;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public void setReason(String reason) {
+        this.reason = reason;
+    }
+
+    public boolean isIncludeReplayed() {
+        return includeReplayed;
+    }
+
+    public void setIncludeReplayed(boolean includeReplayed) {
+        this.includeReplayed = includeReplayed;
+    }
+
+    public Integer getLimit() {
+        return limit;
+    }
+
+    public void setLimit(Integer limit) {
+        this.limit = limit;
+    }
+}
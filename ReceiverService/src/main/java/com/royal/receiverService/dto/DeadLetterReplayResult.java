@@ -0,0 +1,64 @@
+package com.royal.receiverService.dto;
+
+/**
+ * DTO-класс, представляющий итог повторной публикации мертвых сообщений: число выбранных сообщений,
+ * подтвержденных, отклоненных и возвращенных брокером, не дождавшихся подтверждения, а также пропущенных
+ * из-за отсутствия исходного тела (записи, сохраненные до захвата сырых сообщений).
+ */
+
+public class DeadLetterReplayResult {
+    private long selected;
+    private long acked;
+    private long nacked;
+    private long returned;
+    private long timedOut;
+    private long skipped;
+
+    public long getSelected() {
+        return selected;
+    }
+
+    public long getAcked() {
+        return acked;
+    }
+
+    public long getNacked() {
+        return nacked;
+    }
+
+    public long getReturned() {
+        return returned;
+    }
+
+    public long getTimedOut() {
+        return timedOut;
+    }
+
+    public long getSkipped() {
+        return skipped;
+    }
+
+    public void addSelected() {
+        selected++;
+    }
+
+    public void addAcked() {
+        acked++;
+    }
+
+    public void addNacked() {
+        nacked++;
+    }
+
+    public void addReturned() {
+        returned++;
+    }
+
+    public void addTimedOut() {
+        timedOut++;
+    }
+
+    public void addSkipped() {
+        skipped++;
+    }
+}
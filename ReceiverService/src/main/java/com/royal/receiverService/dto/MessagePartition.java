@@ -0,0 +1,44 @@
+package com.royal.receiverService.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO-класс, представляющий секцию таблицы messages: имя таблицы-секции и диапазон временных меток
+ * [from, to). Граница равна null, если диапазон открыт (MINVALUE/MAXVALUE), а у секции по умолчанию
+ * обе границы равны null.
+ */
+
+public class MessagePartition {
+    private String name;
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private boolean defaultPartition;
+
+    public MessagePartition(String name, LocalDateTime from, LocalDateTime to, boolean defaultPartition) {
+        this.name = name;
+        this.from = from;
+        this.to = to;
+        this.defaultPartition = defaultPartition;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public LocalDateTime getFrom() {
+        return from;
+    }
+
+    public LocalDateTime getTo() {
+        return to;
+    }
+
+    public boolean isDefaultPartition() {
+        return defaultPartition;
+    }
+
+    @Override
+    public String toString() {
+        return name + (defaultPartition ? " DEFAULT" : " [" + from + ", " + to + ")");
+    }
+}
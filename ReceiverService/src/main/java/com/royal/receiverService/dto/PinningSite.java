@@ -0,0 +1,42 @@
+package com.royal.receiverService.dto;
+
+/**
+ * DTO-класс, представляющий место в коде, где виртуальный поток был закреплен за платформенным потоком (pinning).
+ * Содержит верхний кадр стека, ближайший кадр кода приложения, число случаев и их длительность.
+ */
+
+public class PinningSite {
+    private String topFrame;
+    private String applicationFrame;
+    private long count;
+    private long totalMillis;
+    private long maxMillis;
+
+    public PinningSite(String topFrame, String applicationFrame, long count, long totalMillis, long maxMillis) {
+        this.topFrame = topFrame;
+        this.applicationFrame = applicationFrame;
+        this.count = count;
+        this.totalMillis = totalMillis;
+        this.maxMillis = maxMillis;
+    }
+
+    public String getTopFrame() {
+        return topFrame;
+    }
+
+    public String getApplicationFrame() {
+        return applicationFrame;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getTotalMillis() {
+        return totalMillis;
+    }
+
+    public long getMaxMillis() {
+        return maxMillis;
+    }
+}
@@ -0,0 +1,57 @@
+package com.royal.receiverService.dto;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * DTO-класс, представляющий агрегаты цены сообщений за интервал времени:
+ * число сообщений, сумму, минимум, максимум, среднее и оценки квантилей.
+ */
+
+public class PriceStats {
+    private Instant start;
+    private long count;
+    private double sum;
+    private double min;
+    private double max;
+    private double average;
+    private Map<String, Double> quantiles;
+
+    public PriceStats(Instant start, long count, double sum, double min, double max, Map<String, Double> quantiles) {
+        this.start = start;
+        this.count = count;
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+        this.average = count == 0 ? 0 : sum / count;
+        this.quantiles = quantiles;
+    }
+
+    public Instant getStart() {
+        return start;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double getAverage() {
+        return average;
+    }
+
+    public Map<String, Double> getQuantiles() {
+        return quantiles;
+    }
+}
@@ -0,0 +1,32 @@
+package com.royal.receiverService.dto;
+
+import java.util.List;
+
+/**
+ * DTO-класс, представляющий статистику цены за окно: агрегаты по каждой непустой корзине времени
+ * (минуте или часу) и итог за все окно.
+ */
+
+public class PriceStatsReport {
+    private String window;
+    private List<PriceStats> buckets;
+    private PriceStats total;
+
+    public PriceStatsReport(String window, List<PriceStats> buckets, PriceStats total) {
+        this.window = window;
+        this.buckets = buckets;
+        this.total = total;
+    }
+
+    public String getWindow() {
+        return window;
+    }
+
+    public List<PriceStats> getBuckets() {
+        return buckets;
+    }
+
+    public PriceStats getTotal() {
+        return total;
+    }
+}
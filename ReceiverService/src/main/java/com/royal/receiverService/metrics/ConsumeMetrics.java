@@ -0,0 +1,139 @@
+package com.royal.receiverService.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Метрики пути приема сообщений.
+ * <ul>
+ *     <li>{@code messages.end_to_end.latency} — время от временной метки, проставленной отправителем, до фиксации
+ *     сообщения в БД (гистограмма);</li>
+ *     <li>{@code rabbitmq.consume.messages} — исход доставок по очереди (тег {@code outcome}: ack, nack — отклонено
+ *     без возврата, для основной очереди это уход в DLX, requeue — возвращено в очередь);</li>
+ *     <li>{@code rabbitmq.consume.retries} — сообщения, отправленные в очередь задержки (тег {@code attempt});</li>
+ *     <li>{@code rabbitmq.listener.duration} — время работы слушателя по контейнеру (тег {@code listener}); скорость
+ *     роста суммы, деленная на число потребителей, дает загрузку слушателей. При отложенной записи слушатель только
+ *     передает сообщение в буфер, а сохранение учитывается под тегом {@code listener=writeBehindFlusher}.</li>
+ * </ul>
+ */
+@Component
+public class ConsumeMetrics {
+
+    /**
+     * Доставка подтверждена.
+     */
+    public static final String ACK = "ack";
+
+    /**
+     * Доставка отклонена без возврата в очередь.
+     */
+    public static final String NACK = "nack";
+
+    /**
+     * Доставка возвращена в очередь.
+     */
+    public static final String REQUEUE = "requeue";
+
+    private static final Duration MIN_EXPECTED_LATENCY = Duration.ofMillis(1);
+    private static final Duration MAX_EXPECTED_LATENCY = Duration.ofHours(1);
+
+    private final MeterRegistry registry;
+    private final Timer endToEndLatency;
+    private final Map<String, Counter> outcomes = new ConcurrentHashMap<>();
+    private final Map<Integer, Counter> retries = new ConcurrentHashMap<>();
+
+    /**
+     * Конструктор метрик приема.
+     *
+     * @param registry реестр метрик.
+     */
+    @Autowired
+    public ConsumeMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.endToEndLatency = Timer.builder("messages.end_to_end.latency")
+                .description("Время от отправки сообщения до фиксации в БД")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(MIN_EXPECTED_LATENCY)
+                .maximumExpectedValue(MAX_EXPECTED_LATENCY)
+                .register(registry);
+    }
+
+    /**
+     * Учитывает сохраненное сообщение. Отрицательная задержка (расхождение часов) учитывается как нулевая.
+     *
+     * @param sentAt временная метка отправителя.
+     */
+    public void recordSaved(Timestamp sentAt) {
+        endToEndLatency.record(Math.max(0, System.currentTimeMillis() - sentAt.getTime()), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Учитывает исход доставок.
+     *
+     * @param queue   очередь, из которой получены сообщения.
+     * @param outcome исход: {@value #ACK}, {@value #NACK} или {@value #REQUEUE}.
+     * @param count   число сообщений.
+     */
+    public void recordOutcome(String queue, String outcome, int count) {
+        String queueTag = queue == null ? "" : queue;
+        outcomes.computeIfAbsent(queueTag + '\0' + outcome, key -> Counter.builder("rabbitmq.consume.messages")
+                .description("Исход доставок сообщений")
+                .tag("queue", queueTag)
+                .tag("outcome", outcome)
+                .register(registry)).increment(count);
+    }
+
+    /**
+     * Учитывает сообщение, отправленное в очередь задержки.
+     *
+     * @param attempt номер повторной попытки.
+     */
+    public void recordRetry(int attempt) {
+        retries.computeIfAbsent(attempt, key -> Counter.builder("rabbitmq.consume.retries")
+                .description("Сообщения, отправленные на повторную попытку")
+                .tag("attempt", String.valueOf(key))
+                .register(registry)).increment();
+    }
+
+    /**
+     * Создает перехватчик вызова слушателя, замеряющий время его работы.
+     *
+     * @param listener имя слушателя для тега {@code listener}.
+     * @return перехватчик для цепочки советов контейнера.
+     */
+    public MethodInterceptor listenerAdvice(String listener) {
+        Timer duration = listenerTimer(listener);
+        return invocation -> {
+            long start = System.nanoTime();
+            try {
+                return invocation.proceed();
+            } finally {
+                duration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        };
+    }
+
+    /**
+     * Возвращает таймер времени работы слушателя. Используется и обработчиками вне контейнеров, которые
+     * выполняют часть работы слушателя, например потоком групповой фиксации.
+     *
+     * @param listener имя слушателя для тега {@code listener}.
+     * @return таймер {@code rabbitmq.listener.duration}.
+     */
+    public Timer listenerTimer(String listener) {
+        return Timer.builder("rabbitmq.listener.duration")
+                .description("Время работы слушателя")
+                .tag("listener", listener)
+                .register(registry);
+    }
+}
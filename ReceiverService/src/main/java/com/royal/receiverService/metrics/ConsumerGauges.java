@@ -0,0 +1,138 @@
+package com.royal.receiverService.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Датчики очередей и слушателей.
+ * <ul>
+ *     <li>{@code rabbitmq.queue.messages} и {@code rabbitmq.queue.consumers} — глубина и число потребителей основной
+ *     очереди и очереди мертвых писем (тег {@code queue}). Значения снимаются пассивным объявлением раз
+ *     в metrics.queue-depth.interval-ms, чтобы сбор метрик не обращался к брокеру; NaN, если очередь недоступна;</li>
+ *     <li>{@code rabbitmq.listener.consumers} — активные потребители контейнера слушателя (тег {@code listener}).</li>
+ * </ul>
+ */
+@Component
+public class ConsumerGauges {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConsumerGauges.class);
+
+    @Value("${rabbitmq.queue.name}")
+    private String queue;
+
+    @Value("${rabbitmq.dlx.queue.name}")
+    private String dlxQueue;
+
+    @Value("${metrics.queue-depth.interval-ms}")
+    private long intervalMs;
+
+    private final AmqpAdmin amqpAdmin;
+    private final RabbitListenerEndpointRegistry listenerRegistry;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, QueueState> queues = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Конструктор датчиков.
+     *
+     * @param amqpAdmin        администратор RabbitMQ для получения глубины очередей.
+     * @param listenerRegistry реестр контейнеров слушателей.
+     * @param meterRegistry    реестр метрик.
+     */
+    @Autowired
+    public ConsumerGauges(AmqpAdmin amqpAdmin, RabbitListenerEndpointRegistry listenerRegistry,
+                          MeterRegistry meterRegistry) {
+        this.amqpAdmin = amqpAdmin;
+        this.listenerRegistry = listenerRegistry;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Регистрирует датчики очередей и запускает их периодический опрос.
+     */
+    @PostConstruct
+    public void start() {
+        for (String name : new String[]{queue, dlxQueue}) {
+            QueueState state = new QueueState();
+            queues.put(name, state);
+            Gauge.builder("rabbitmq.queue.messages", state, s -> s.messages)
+                    .description("Число сообщений в очереди")
+                    .tag("queue", name)
+                    .register(meterRegistry);
+            Gauge.builder("rabbitmq.queue.consumers", state, s -> s.consumers)
+                    .description("Число потребителей очереди")
+                    .tag("queue", name)
+                    .register(meterRegistry);
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("queue-depth-monitor").daemon(true).factory());
+        scheduler.scheduleWithFixedDelay(this::poll, 0, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Регистрирует датчики потребителей для контейнеров, созданных к моменту готовности приложения.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void registerListenerGauges() {
+        for (MessageListenerContainer container : listenerRegistry.getListenerContainers()) {
+            if (container instanceof SimpleMessageListenerContainer simple && simple.getListenerId() != null) {
+                Gauge.builder("rabbitmq.listener.consumers", simple, SimpleMessageListenerContainer::getActiveConsumerCount)
+                        .description("Активные потребители контейнера слушателя")
+                        .tag("listener", simple.getListenerId())
+                        .register(meterRegistry);
+            }
+        }
+    }
+
+    /**
+     * Останавливает опрос очередей.
+     */
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    private void poll() {
+        queues.forEach((name, state) -> {
+            try {
+                QueueInformation info = amqpAdmin.getQueueInfo(name);
+                state.messages = info == null ? Double.NaN : info.getMessageCount();
+                state.consumers = info == null ? Double.NaN : info.getConsumerCount();
+            } catch (Exception e) {
+                state.messages = Double.NaN;
+                state.consumers = Double.NaN;
+                LOGGER.debug("Не удалось получить глубину очереди {}: {}", name, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Последние снятые значения очереди.
+     */
+    private static final class QueueState {
+        private volatile double messages = Double.NaN;
+        private volatile double consumers = Double.NaN;
+    }
+}
@@ -0,0 +1,55 @@
+package com.royal.receiverService.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.autoproxy.AbstractBeanFactoryAwareAdvisingPostProcessor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.annotation.AnnotationMatchingPointcut;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.stereotype.Repository;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Оборачивает публичные методы классов {@link Repository} замером времени: таймер {@code repository.query}
+ * с тегами {@code repository} (имя класса) и {@code statement} (имя метода). Каждый метод репозитория выполняет
+ * один запрос или одну группу запросов, поэтому метрика делится по запросам. Для методов потоковой выгрузки
+ * в замер входит обработка строк. Замер добавляется перед транзакционным советом и включает фиксацию.
+ */
+@Component
+public class RepositoryMetricsPostProcessor extends AbstractBeanFactoryAwareAdvisingPostProcessor {
+
+    /**
+     * Конструктор постпроцессора. Реестр метрик запрашивается при первом вызове, чтобы не создавать его раньше
+     * остальных бинов.
+     *
+     * @param registry поставщик реестра метрик.
+     */
+    @Autowired
+    public RepositoryMetricsPostProcessor(ObjectProvider<MeterRegistry> registry) {
+        Map<Method, Timer> timers = new ConcurrentHashMap<>();
+        MethodInterceptor interceptor = invocation -> {
+            Method method = invocation.getMethod();
+            Timer timer = timers.computeIfAbsent(method, key -> Timer.builder("repository.query")
+                    .description("Время выполнения запроса репозитория")
+                    .tag("repository", key.getDeclaringClass().getSimpleName())
+                    .tag("statement", key.getName())
+                    .register(registry.getObject()));
+            long start = System.nanoTime();
+            try {
+                return invocation.proceed();
+            } finally {
+                timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        };
+        this.advisor = new DefaultPointcutAdvisor(new AnnotationMatchingPointcut(Repository.class, true), interceptor);
+        setBeforeExistingAdvisors(true);
+        setProxyTargetClass(true);
+    }
+}
@@ -1,23 +1,45 @@
 package com.royal.receiverService.repository;
 
+import com.royal.receiverService.dto.DeadLetterFilter;
 import com.royal.receiverService.dto.DeadLetterMessage;
 import com.royal.receiverService.exception.DeadLetterPersistenceException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Репозиторий для работы с таблицей dead_letter_messages в базе данных.
- * Предоставляет методы для сохранения и получения мертвых сообщений.
+ * Предоставляет методы для сохранения мертвых сообщений и их выборки по фильтру постранично или потоком.
  */
 @Repository
 public class DeadLetterRepository {
     private static final Logger LOGGER = LoggerFactory.getLogger(DeadLetterRepository.class);
+
+    /**
+     * Длина префикса причины ошибки в индексе idx_dead_letter_messages_reason.
+     */
+    private static final int REASON_INDEX_LENGTH = 200;
+
+    private static final String INSERT_SQL = "INSERT INTO dead_letter_messages "
+            + "(message_content, error_reason, timestamp, payload, content_type, message_id, headers, death_count) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?::jsonb, ?)";
+
+    private static final String SELECT_COLUMNS = "SELECT id, message_content, error_reason, timestamp, payload, content_type, "
+            + "message_id, headers, death_count, replay_count, replayed_at FROM dead_letter_messages";
+
     private final JdbcTemplate jdbcTemplate;
 
     /**
@@ -30,48 +52,150 @@ public class DeadLetterRepository {
     }
 
     /**
-     * Сохраняет мертвое сообщение в базе данных.
+     * Сохраняет пакет мертвых сообщений одним пакетным INSERT.
      *
-     * @param deadLetterMessage объект мертвого сообщения
+     * @param deadLetters мертвые сообщения
      * @throws DeadLetterPersistenceException если произошла ошибка при сохранении
      */
-    public void save(DeadLetterMessage deadLetterMessage) {
-        String sql = "INSERT INTO dead_letter_messages (message_content, error_reason, timestamp) VALUES (?, ?, ?)";
-
+    public void saveAll(List<DeadLetterMessage> deadLetters) {
         try {
-            jdbcTemplate.update(sql,
-                    deadLetterMessage.getMessageBody(),
-                    deadLetterMessage.getErrorReason(),
-                    new Timestamp(System.currentTimeMillis()));
-
-            LOGGER.info("Мертвое сообщение сохранено в БД: {}", deadLetterMessage.getMessageBody());
+            jdbcTemplate.batchUpdate(INSERT_SQL, deadLetters, deadLetters.size(), (ps, deadLetter) -> {
+                ps.setString(1, deadLetter.getMessageBody());
+                ps.setString(2, deadLetter.getErrorReason());
+                ps.setTimestamp(3, deadLetter.getTimestamp());
+                ps.setBytes(4, deadLetter.getPayload());
+                ps.setString(5, deadLetter.getContentType());
+                ps.setString(6, deadLetter.getMessageId());
+                ps.setString(7, deadLetter.getHeaders());
+                ps.setObject(8, deadLetter.getDeathCount(), Types.BIGINT);
+            });
+            LOGGER.info("Пакетно сохранено {} мертвых сообщений", deadLetters.size());
         } catch (Exception e) {
-            LOGGER.error("Ошибка сохранения мертвого сообщения в БД: {}", e.getMessage(), e);
-            throw new DeadLetterPersistenceException("Ошибка сохранения мертвого сообщения в БД", e);
+            LOGGER.error("Ошибка пакетного сохранения мертвых сообщений в БД: {}", e.getMessage(), e);
+            throw new DeadLetterPersistenceException("Ошибка сохранения мертвых сообщений в БД", e);
+        }
+    }
+
+    /**
+     * Отмечает мертвые сообщения как опубликованные повторно.
+     *
+     * @param ids идентификаторы мертвых сообщений
+     * @throws DeadLetterPersistenceException если произошла ошибка при обновлении
+     */
+    public void markReplayed(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.update("UPDATE dead_letter_messages SET replay_count = replay_count + 1, replayed_at = ? WHERE id = ANY(?)",
+                    ps -> {
+                        ps.setTimestamp(1, new Timestamp(System.currentTimeMillis()));
+                        ps.setArray(2, ps.getConnection().createArrayOf("bigint", ids.toArray()));
+                    });
+        } catch (DataAccessException e) {
+            LOGGER.error("Ошибка при отметке повторной публикации мертвых сообщений", e);
+            throw new DeadLetterPersistenceException("Ошибка при обновлении записей в таблице dead_letter_messages", e);
         }
     }
 
     /**
-     * Возвращает список всех мертвых сообщений из базы данных.
+     * Возвращает страницу мертвых сообщений, подходящих под фильтр, в порядке (timestamp, id).
      *
-     * @return список объектов DeadLetterMessage
+     * @param filter условия выборки и позиция курсора
+     * @param limit  максимальное число сообщений на странице
+     * @return страница мертвых сообщений
      * @throws DeadLetterPersistenceException если произошла ошибка при получении данных
      */
-    public List<DeadLetterMessage> findAll() {
-        String sql = "SELECT * FROM dead_letter_messages";
+    public List<DeadLetterMessage> findPage(DeadLetterFilter filter, int limit) {
+        List<Object> parameters = new ArrayList<>();
+        String sql = buildQuery(filter, parameters) + " LIMIT ?";
+        parameters.add(limit);
         try {
-            return jdbcTemplate.query(sql, (rs, rowNum) -> {
-                DeadLetterMessage message = new DeadLetterMessage(
-                        rs.getString("message_content"),
-                        rs.getString("error_reason"),
-                        rs.getTimestamp("timestamp")
-                );
-                message.setId(rs.getLong("id"));
-                return message;
-            });
+            return jdbcTemplate.query(sql, DeadLetterRepository::mapDeadLetter, parameters.toArray());
         } catch (DataAccessException e) {
-            LOGGER.error("Ошибка при получении всех записей из таблицы dead_letter_messages", e);
+            LOGGER.error("Ошибка при получении страницы записей из таблицы dead_letter_messages", e);
             throw new DeadLetterPersistenceException("Ошибка при получении записей из таблицы dead_letter_messages", e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Построчно передает мертвые сообщения, подходящие под фильтр, в порядке (timestamp, id). Выполняется
+     * в транзакции только для чтения, поэтому драйвер читает результат через серверный курсор порциями
+     * по {@code fetchSize} строк.
+     *
+     * @param filter    условия выборки и позиция курсора
+     * @param fetchSize число строк, получаемых из БД за один раз
+     * @param consumer  обработчик очередного сообщения
+     * @throws DeadLetterPersistenceException если произошла ошибка при получении данных
+     */
+    @Transactional(readOnly = true)
+    public void stream(DeadLetterFilter filter, int fetchSize, Consumer<DeadLetterMessage> consumer) {
+        List<Object> parameters = new ArrayList<>();
+        String sql = buildQuery(filter, parameters);
+        try {
+            jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(sql);
+                statement.setFetchSize(fetchSize);
+                for (int i = 0; i < parameters.size(); i++) {
+                    statement.setObject(i + 1, parameters.get(i));
+                }
+                return statement;
+            }, (RowCallbackHandler) rs -> consumer.accept(mapDeadLetter(rs, rs.getRow())));
+        } catch (DataAccessException e) {
+            LOGGER.error("Ошибка потоковой выгрузки записей из таблицы dead_letter_messages", e);
+            throw new DeadLetterPersistenceException("Ошибка потоковой выгрузки записей из таблицы dead_letter_messages", e);
+        }
+    }
+
+    /**
+     * Строит запрос по фильтру. Условия записаны так, чтобы их покрывали индексы из 004-dead-letter-indexes.xml:
+     * (timestamp, id) и (left(error_reason, 200), timestamp, id).
+     */
+    private static String buildQuery(DeadLetterFilter filter, List<Object> parameters) {
+        StringBuilder sql = new StringBuilder(SELECT_COLUMNS).append(" WHERE TRUE");
+        if (filter.getReason() != null) {
+            sql.append(" AND left(error_reason, ").append(REASON_INDEX_LENGTH).append(") = left(?, ")
+                    .append(REASON_INDEX_LENGTH).append(") AND error_reason = ?");
+            parameters.add(filter.getReason());
+            parameters.add(filter.getReason());
+        }
+        if (filter.getIds() != null) {
+            sql.append(" AND id = ANY(?)");
+            parameters.add(filter.getIds().toArray(Long[]::new));
+        }
+        if (filter.getReplayed() != null) {
+            sql.append(filter.getReplayed() ? " AND replayed_at IS NOT NULL" : " AND replayed_at IS NULL");
+        }
+        if (filter.getFrom() != null) {
+            sql.append(" AND timestamp >= ?");
+            parameters.add(filter.getFrom());
+        }
+        if (filter.getTo() != null) {
+            sql.append(" AND timestamp < ?");
+            parameters.add(filter.getTo());
+        }
+        if (filter.getAfterTimestamp() != null && filter.getAfterId() != null) {
+            sql.append(" AND (timestamp, id) > (?, ?)");
+            parameters.add(filter.getAfterTimestamp());
+            parameters.add(filter.getAfterId());
+        }
+        return sql.append(" ORDER BY timestamp, id").toString();
+    }
+
+    private static DeadLetterMessage mapDeadLetter(ResultSet rs, int rowNum) throws SQLException {
+        DeadLetterMessage message = new DeadLetterMessage(
+                rs.getString("message_content"),
+                rs.getString("error_reason"),
+                rs.getTimestamp("timestamp")
+        );
+        message.setId(rs.getLong("id"));
+        message.setPayload(rs.getBytes("payload"));
+        message.setContentType(rs.getString("content_type"));
+        message.setMessageId(rs.getString("message_id"));
+        message.setHeaders(rs.getString("headers"));
+        message.setDeathCount(rs.getObject("death_count", Long.class));
+        message.setReplayCount(rs.getInt("replay_count"));
+        message.setReplayedAt(rs.getTimestamp("replayed_at"));
+        return message;
+    }
+}
@@ -0,0 +1,193 @@
+package com.royal.receiverService.repository;
+
+import com.royal.receiverService.dto.MessagePartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Репозиторий для управления секциями таблицы messages, секционированной по диапазону timestamp.
+ * Позволяет получать список секций, создавать, отсоединять и удалять их. Операции изменения схемы
+ * выполняются с ограничением ожидания блокировки (messages.partitioning.lock-timeout-ms), чтобы не
+ * останавливать вставку сообщений при долгих запросах к таблице, и под транзакционной advisory-блокировкой,
+ * чтобы несколько экземпляров сервиса не создавали и не отсоединяли одну секцию одновременно.
+ */
+@Repository
+public class MessagePartitionRepository {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MessagePartitionRepository.class);
+
+    /**
+     * Секция по умолчанию, куда попадают строки вне диапазонов остальных секций.
+     */
+    public static final String DEFAULT_PARTITION = "messages_default";
+
+    private static final Pattern RANGE_BOUND = Pattern.compile("FROM \\((.+)\\) TO \\((.+)\\)");
+
+    private static final DateTimeFormatter BOUND_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /**
+     * Ключ advisory-блокировки обслуживания секций.
+     */
+    private static final long MAINTENANCE_LOCK_KEY = 0x6d73675f70617274L;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Конструктор с внедрением зависимости JdbcTemplate.
+     *
+     * @param jdbcTemplate объект для взаимодействия с базой данных
+     */
+    @Autowired
+    public MessagePartitionRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Возвращает секции таблицы messages с их диапазонами.
+     *
+     * @return список секций
+     */
+    public List<MessagePartition> findPartitions() {
+        String sql = "SELECT c.relname, pg_get_expr(c.relpartbound, c.oid) FROM pg_inherits i "
+                + "JOIN pg_class c ON c.oid = i.inhrelid WHERE i.inhparent = 'messages'::regclass ORDER BY c.relname";
+        return jdbcTemplate.query(sql, (rs, rowNum) -> toPartition(rs.getString(1), rs.getString(2)));
+    }
+
+    /**
+     * Возвращает текущую дату в часовом поясе сессии БД. Столбец timestamp хранит время без часового пояса,
+     * заполняемое по умолчанию LOCALTIMESTAMP, поэтому границы суток секций считаются по часам БД, а не JVM.
+     *
+     * @return текущая дата БД
+     */
+    public LocalDate currentDate() {
+        return jdbcTemplate.queryForObject("SELECT CAST(LOCALTIMESTAMP AS date)", LocalDate.class);
+    }
+
+    /**
+     * Создает секцию для диапазона [from, to) и присоединяет ее к таблице messages. Строки этого диапазона,
+     * уже попавшие в секцию по умолчанию, переносятся в новую секцию в той же транзакции: иначе присоединение
+     * невозможно. Если секция уже создана другим экземпляром сервиса, ничего не делает.
+     *
+     * @param name          имя новой секции
+     * @param from          нижняя граница диапазона, включительно
+     * @param to            верхняя граница диапазона, не включительно
+     * @param lockTimeoutMs максимальное время ожидания блокировки
+     * @return число строк, перенесенных из секции по умолчанию
+     */
+    @Transactional
+    public int createPartition(String name, LocalDateTime from, LocalDateTime to, long lockTimeoutMs) {
+        setLockTimeout(lockTimeoutMs);
+        lockMaintenance();
+        if (tableExists(name)) {
+            LOGGER.info("Секция {} уже существует", name);
+            return 0;
+        }
+        jdbcTemplate.execute("CREATE TABLE " + quote(name) + " (LIKE messages INCLUDING DEFAULTS)");
+        int moved = jdbcTemplate.update("WITH moved AS (DELETE FROM " + DEFAULT_PARTITION
+                        + " WHERE timestamp >= ? AND timestamp < ? RETURNING id, name, price, timestamp) "
+                        + "INSERT INTO " + quote(name) + " (id, name, price, timestamp) "
+                        + "SELECT id, name, price, timestamp FROM moved",
+                Timestamp.valueOf(from), Timestamp.valueOf(to));
+        jdbcTemplate.execute("ALTER TABLE messages ATTACH PARTITION " + quote(name)
+                + " FOR VALUES FROM ('" + BOUND_FORMAT.format(from) + "') TO ('" + BOUND_FORMAT.format(to) + "')");
+        LOGGER.info("Создана секция {} [{}, {}), перенесено строк из секции по умолчанию: {}", name, from, to, moved);
+        return moved;
+    }
+
+    /**
+     * Отсоединяет секцию от таблицы messages. Данные секции остаются в отдельной таблице.
+     *
+     * @param name          имя секции
+     * @param lockTimeoutMs максимальное время ожидания блокировки
+     */
+    @Transactional
+    public void detachPartition(String name, long lockTimeoutMs) {
+        setLockTimeout(lockTimeoutMs);
+        lockMaintenance();
+        Boolean attached = jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM pg_inherits "
+                + "WHERE inhrelid = to_regclass(?) AND inhparent = 'messages'::regclass)", Boolean.class, quote(name));
+        if (!Boolean.TRUE.equals(attached)) {
+            LOGGER.info("Секция {} уже отсоединена", name);
+            return;
+        }
+        jdbcTemplate.execute("ALTER TABLE messages DETACH PARTITION " + quote(name));
+        LOGGER.info("Секция {} отсоединена от таблицы messages", name);
+    }
+
+    /**
+     * Удаляет отсоединенную секцию.
+     *
+     * @param name          имя таблицы
+     * @param lockTimeoutMs максимальное время ожидания блокировки
+     */
+    @Transactional
+    public void dropTable(String name, long lockTimeoutMs) {
+        setLockTimeout(lockTimeoutMs);
+        lockMaintenance();
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + quote(name));
+        LOGGER.info("Таблица {} удалена", name);
+    }
+
+    /**
+     * Возвращает дни, строки которых лежат в секции по умолчанию, раньше заданной границы. Секция по умолчанию
+     * должна быть пустой, поэтому запрос читает лишь несколько строк.
+     *
+     * @param before граница временных меток, не включительно
+     * @return дни по возрастанию
+     */
+    public List<LocalDate> findDefaultDays(LocalDateTime before) {
+        return jdbcTemplate.queryForList("SELECT DISTINCT CAST(timestamp AS date) FROM " + DEFAULT_PARTITION
+                + " WHERE timestamp < ? ORDER BY 1", LocalDate.class, Timestamp.valueOf(before));
+    }
+
+    /**
+     * Берет транзакционную advisory-блокировку обслуживания секций; ожидание ограничено lock_timeout.
+     */
+    private void lockMaintenance() {
+        jdbcTemplate.query("SELECT pg_advisory_xact_lock(?)", rs -> null, MAINTENANCE_LOCK_KEY);
+    }
+
+    private boolean tableExists(String name) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class,
+                quote(name)));
+    }
+
+    private void setLockTimeout(long lockTimeoutMs) {
+        jdbcTemplate.execute("SET LOCAL lock_timeout = " + Math.max(0, lockTimeoutMs));
+    }
+
+    private static String quote(String name) {
+        return "\"" + name.replace("\"", "\"\"") + "\"";
+    }
+
+    /**
+     * Разбирает границы секции из вывода pg_get_expr: DEFAULT или FOR VALUES FROM (...) TO (...).
+     */
+    private static MessagePartition toPartition(String name, String bound) {
+        Matcher matcher = RANGE_BOUND.matcher(bound);
+        if (!matcher.find()) {
+            return new MessagePartition(name, null, null, true);
+        }
+        return new MessagePartition(name, parseBound(matcher.group(1)), parseBound(matcher.group(2)), false);
+    }
+
+    private static LocalDateTime parseBound(String value) {
+        if (!value.startsWith("'")) {
+            // MINVALUE или MAXVALUE.
+            return null;
+        }
+        return Timestamp.valueOf(value.substring(1, value.length() - 1)).toLocalDateTime();
+    }
+}
@@ -5,16 +5,37 @@ import com.royal.receiverService.exception.MessageAlreadyExistsException;
 import com.royal.receiverService.exception.MessagePersistenceException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataAccessException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * Репозиторий для работы с таблицей сообщений в базе данных.
- * Позволяет проверять существование сообщений, сохранять их и получать список всех сообщений.
+ * Позволяет сохранять сообщения, получать их постранично и выгружать потоком.
  */
 @Repository
 public class MessageRepository {
@@ -23,6 +44,31 @@ public class MessageRepository {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(MessageRepository.class);
 
+    private static final int COPY_CHUNK_SIZE = 64 * 1024;
+
+    private static final String CREATE_STAGING_SQL = "CREATE TEMP TABLE IF NOT EXISTS messages_staging "
+            + "(seq integer, id bigint, name varchar(255), price numeric, timestamp timestamp) ON COMMIT DELETE ROWS";
+
+    private static final String COPY_STAGING_SQL =
+            "COPY messages_staging (seq, id, name, price, timestamp) FROM STDIN (FORMAT text)";
+
+    /**
+     * Условие keyset-пагинации по первичному ключу: без временной метки — после всех строк с заданным id.
+     */
+    private static final String KEYSET_CONDITION = "WHERE (id, timestamp) > (?, coalesce(?::timestamp, 'infinity'))";
+
+    /**
+     * Вставка в одну таблицу с проверкой дубликата по первичному ключу секции (id, timestamp).
+     * Форма INSERT ... SELECT не переписывается драйвером в многострочный INSERT при reWriteBatchedInserts=true,
+     * поэтому в пакете число вставленных строк известно для каждого сообщения.
+     */
+    private static final String INSERT_SQL = "INSERT INTO messages (id, name, price, timestamp) "
+            + "SELECT ?, ?::varchar, ?::numeric, coalesce(?::timestamp, LOCALTIMESTAMP) ON CONFLICT (id, timestamp) DO NOTHING";
+
+    private static final String MERGE_STAGING_SQL = "INSERT INTO messages (id, name, price, timestamp) "
+            + "SELECT DISTINCT ON (id) id, name, price, coalesce(timestamp, LOCALTIMESTAMP) FROM messages_staging "
+            + "ORDER BY id, seq ON CONFLICT (id, timestamp) DO NOTHING RETURNING id, timestamp";
+
     /**
      * Конструктор с внедрением зависимости JdbcTemplate.
      *
@@ -34,64 +80,310 @@ public class MessageRepository {
     }
 
     /**
-     * Проверяет, существует ли сообщение в базе данных по его идентификатору.
+     * Сохраняет сообщение в базе данных за один запрос. Дубликат определяется по первичному ключу секции
+     * (id, timestamp) через ON CONFLICT DO NOTHING: повторная доставка того же сообщения отклоняется, а сообщение
+     * с тем же id и другой временной меткой сохраняется отдельной строкой. Проверка и вставка атомарны,
+     * поэтому одновременная обработка одного id несколькими потребителями не приводит к ошибке БД.
+     * Сообщению без временной метки проставляется время вставки.
      *
-     * @param id идентификатор сообщения
-     * @return true, если сообщение существует, иначе false
+     * @param message объект сообщения для сохранения
+     * @throws MessageAlreadyExistsException если сообщение с таким ID уже существует
      */
-    public boolean existsById(Long id) {
+    public void save(Message message) {
+        List<Timestamp> inserted;
         try {
-            String sql = "SELECT COUNT(*) FROM messages WHERE id = ?";
-            Integer count = jdbcTemplate.queryForObject(sql, Integer.class, id);
-            return count != null && count > 0;
+            inserted = jdbcTemplate.queryForList(INSERT_SQL + " RETURNING timestamp", Timestamp.class,
+                    message.getId(), message.getName(), message.getPrice(), message.getTimestamp());
         } catch (DataAccessException e) {
-            LOGGER.error("Не удалось проверить, существует ли сообщение в бд id: {}", id, e);
-            throw new MessagePersistenceException("Не удалось проверить, существует ли сообщение в бд id: " + id, e);
+            LOGGER.error("Ошибка сохранения сообщения с id: {}", message.getId(), e);
+            throw new MessagePersistenceException("Ошибка сохранения сообщения с id: " + message.getId(), e);
         }
+        if (inserted.isEmpty()) {
+            LOGGER.warn("Попытка сохранить дубликат сообщения id: {}", message.getId());
+            throw new MessageAlreadyExistsException("Сообщение с id " + message.getId() + " уже существует");
+        }
+        message.setTimestamp(inserted.get(0));
+        LOGGER.info("Сообщение было успешно в базе данных сохранено id: {}", message.getId());
     }
 
     /**
-     * Сохраняет сообщение в базе данных. Если сообщение с таким ID уже существует, выбрасывается исключение.
+     * Сохраняет пакет сообщений в одной транзакции: сообщения вставляются пакетно через
+     * {@link JdbcTemplate#batchUpdate} тем же запросом, что и {@link #save}. Повторы id внутри пакета отсекаются
+     * до обращения к БД, а сообщения, чей id уже есть в базе (в том числе параллельно сохраненный другим
+     * потребителем), определяются по нулевому числу вставленных строк: вставка выполняется с ON CONFLICT DO NOTHING
+     * и не откатывает пакет.
      *
-     * @param message объект сообщения для сохранения
+     * @param messages сообщения для сохранения
+     * @return сообщения, пропущенные как дубликаты
      */
-    public void save(Message message) {
+    @Transactional
+    public List<Message> saveAll(List<Message> messages) {
         try {
-            if (existsById(message.getId())) {
-                LOGGER.warn("Попытка сохранить дубликат сообщения id: {}", message.getId());
-                throw new MessageAlreadyExistsException("Сообщение с id " + message.getId() + " уже существует");
+            Set<Long> batchIds = new HashSet<>(messages.size() * 2);
+            List<Message> toInsert = new ArrayList<>(messages.size());
+            List<Message> duplicates = new ArrayList<>();
+            for (Message message : messages) {
+                if (message.getId() != null && !batchIds.add(message.getId())) {
+                    duplicates.add(message);
+                } else {
+                    toInsert.add(message);
+                }
             }
-            String sql = "INSERT INTO messages (id, name, price, timestamp) VALUES (?, ?, ?, ?)";
-            jdbcTemplate.update(sql, message.getId(), message.getName(), message.getPrice(), message.getTimestamp());
-            LOGGER.info("Сообщение было успешно в базе данных сохранено id: {}", message.getId());
+
+            int[][] counts = jdbcTemplate.batchUpdate(INSERT_SQL, toInsert, toInsert.size(), (ps, message) -> {
+                ps.setObject(1, message.getId());
+                ps.setString(2, message.getName());
+                ps.setObject(3, message.getPrice());
+                ps.setTimestamp(4, message.getTimestamp());
+            });
+            int index = 0;
+            for (int[] batch : counts) {
+                for (int count : batch) {
+                    if (count == 0) {
+                        duplicates.add(toInsert.get(index));
+                    }
+                    index++;
+                }
+            }
+            LOGGER.info("Пакетно сохранено {} сообщений, пропущено дубликатов: {}",
+                    messages.size() - duplicates.size(), duplicates.size());
+            return duplicates;
         } catch (DataAccessException e) {
-            LOGGER.error("Ошибка сохранения сообщения с id: {}", message.getId(), e);
-            throw new MessagePersistenceException("Ошибка сохранения сообщения с id: " + message.getId(), e);
+            LOGGER.error("Ошибка пакетного сохранения {} сообщений", messages.size(), e);
+            throw new MessagePersistenceException("Ошибка пакетного сохранения " + messages.size() + " сообщений", e);
         }
     }
 
     /**
-     * Получает список всех сообщений из базы данных.
+     * Сохраняет пакет сообщений через COPY: сообщения потоком загружаются во временную таблицу
+     * {@code messages_staging} (формат COPY text), затем одним запросом переносятся в {@code messages}
+     * с ON CONFLICT DO NOTHING по первичному ключу (id, timestamp). Из повторяющихся внутри пакета id
+     * сохраняется первое сообщение. Временная таблица создается один раз на соединение и очищается при коммите.
+     * Выполняется в одной транзакции, поэтому подтверждать сообщения можно только после возврата из метода.
      *
-     * @return список сообщений
+     * @param messages сообщения для сохранения
+     * @return сообщения, пропущенные как дубликаты (такая строка уже есть в базе или id повторяется внутри пакета)
      */
-    public List<Message> findAll() {
+    @Transactional
+    public List<Message> copyAll(List<Message> messages) {
         try {
-            LOGGER.info("Попытка получения всех сообщений из базы данных");
-            String sql = "SELECT * FROM messages";
-            List<Message> messages = jdbcTemplate.query(sql, (rs, rowNum) -> {
-                Message message = new Message();
-                message.setId(rs.getLong("id"));
-                message.setName(rs.getString("name"));
-                message.setPrice(rs.getDouble("price"));
-                message.setTimestamp(rs.getTimestamp("timestamp"));
-                return message;
+            Map<Long, Timestamp> inserted = new HashMap<>();
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute(CREATE_STAGING_SQL);
+                }
+                copyToStaging(connection, messages);
+                jdbcTemplate.query(MERGE_STAGING_SQL, (RowCallbackHandler) rs -> inserted.put(rs.getLong(1), rs.getTimestamp(2)));
+                return null;
             });
+
+            List<Message> duplicates = new ArrayList<>();
+            for (Message message : messages) {
+                Timestamp timestamp = inserted.remove(message.getId());
+                if (timestamp == null) {
+                    duplicates.add(message);
+                } else {
+                    message.setTimestamp(timestamp);
+                }
+            }
+            LOGGER.info("Через COPY сохранено {} сообщений, пропущено дубликатов: {}",
+                    messages.size() - duplicates.size(), duplicates.size());
+            return duplicates;
+        } catch (DataAccessException e) {
+            LOGGER.error("Ошибка сохранения {} сообщений через COPY", messages.size(), e);
+            throw new MessagePersistenceException("Ошибка сохранения " + messages.size() + " сообщений через COPY", e);
+        }
+    }
+
+    /**
+     * Потоково передает сообщения во временную таблицу через COPY FROM STDIN, отправляя данные частями.
+     */
+    private void copyToStaging(Connection connection, List<Message> messages) throws SQLException {
+        CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_STAGING_SQL);
+        try {
+            StringBuilder chunk = new StringBuilder(COPY_CHUNK_SIZE);
+            for (int seq = 0; seq < messages.size(); seq++) {
+                Message message = messages.get(seq);
+                chunk.append(seq).append('\t');
+                appendCopyValue(chunk, message.getId());
+                chunk.append('\t');
+                appendCopyValue(chunk, message.getName());
+                chunk.append('\t');
+                appendCopyValue(chunk, message.getPrice());
+                chunk.append('\t');
+                appendCopyValue(chunk, message.getTimestamp());
+                chunk.append('\n');
+                if (chunk.length() >= COPY_CHUNK_SIZE) {
+                    writeChunk(copyIn, chunk);
+                }
+            }
+            writeChunk(copyIn, chunk);
+            copyIn.endCopy();
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    private static void writeChunk(CopyIn copyIn, StringBuilder chunk) throws SQLException {
+        byte[] bytes = chunk.toString().getBytes(StandardCharsets.UTF_8);
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+        chunk.setLength(0);
+    }
+
+    /**
+     * Добавляет значение в формате COPY text: {@code \N} для null, спецсимволы экранируются обратной косой чертой.
+     */
+    private static void appendCopyValue(StringBuilder chunk, Object value) {
+        if (value == null) {
+            chunk.append("\\N");
+            return;
+        }
+        String text = value.toString();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\\' -> chunk.append("\\\\");
+                case '\t' -> chunk.append("\\t");
+                case '\n' -> chunk.append("\\n");
+                case '\r' -> chunk.append("\\r");
+                default -> chunk.append(c);
+            }
+        }
+    }
+
+    /**
+     * Находит сообщение по id. Если в таблице несколько строк с одним id и разными временными метками,
+     * возвращается самая поздняя, то есть последняя сохраненная версия сообщения.
+     *
+     * @param id идентификатор сообщения
+     * @return сообщение или пустой Optional, если сообщения нет
+     */
+    public Optional<Message> findById(Long id) {
+        try {
+            String sql = "SELECT id, name, price, timestamp FROM messages "
+                    + "WHERE id = ? ORDER BY timestamp DESC LIMIT 1";
+            return jdbcTemplate.query(sql, MessageRepository::mapMessage, id).stream().findFirst();
+        } catch (DataAccessException e) {
+            LOGGER.error("Ошибка при получении сообщения с id: {}", id, e);
+            throw new MessagePersistenceException("Ошибка при получении сообщения с id: " + id, e);
+        }
+    }
+
+    /**
+     * Возвращает идентификаторы последних сохраненных сообщений, начиная с самых новых.
+     *
+     * @param limit максимальное число идентификаторов
+     * @return список идентификаторов
+     */
+    public List<Long> findRecentIds(int limit) {
+        try {
+            String sql = "SELECT id FROM messages ORDER BY timestamp DESC LIMIT ?";
+            return jdbcTemplate.queryForList(sql, Long.class, limit);
+        } catch (DataAccessException e) {
+            LOGGER.error("Ошибка при получении последних идентификаторов сообщений", e);
+            throw new MessagePersistenceException("Ошибка при получении последних идентификаторов сообщений", e);
+        }
+    }
+
+    /**
+     * Получает страницу сообщений, упорядоченных по первичному ключу (id, timestamp), после позиции
+     * ({@code afterId}, {@code afterTimestamp}) (keyset-пагинация). Запрос использует индексы первичного ключа
+     * секций и не зависит от номера страницы.
+     *
+     * @param afterId        id последнего сообщения предыдущей страницы
+     * @param afterTimestamp временная метка последнего сообщения предыдущей страницы; null — после всех строк с afterId
+     * @param limit          максимальное число сообщений на странице
+     * @return страница сообщений
+     */
+    public List<Message> findPage(long afterId, Timestamp afterTimestamp, int limit) {
+        try {
+            LOGGER.info("Попытка получения страницы сообщений после id {} размером {}", afterId, limit);
+            String sql = "SELECT id, name, price, timestamp FROM messages " + KEYSET_CONDITION
+                    + " ORDER BY id, timestamp LIMIT ?";
+            List<Message> messages = jdbcTemplate.query(sql, MessageRepository::mapMessage, afterId, afterTimestamp, limit);
             LOGGER.info("Успешно получено {} сообщений", messages.size());
             return messages;
         } catch (DataAccessException e) {
-            LOGGER.error("Ошибка при получении всех сообщений из базы данных", e);
-            throw new MessagePersistenceException("Ошибка при получении всех сообщений из базы данных", e);
+            LOGGER.error("Ошибка при получении страницы сообщений из базы данных", e);
+            throw new MessagePersistenceException("Ошибка при получении страницы сообщений из базы данных", e);
+        }
+    }
+
+    /**
+     * Построчно передает сообщения после позиции ({@code afterId}, {@code afterTimestamp}) в порядке первичного
+     * ключа (id, timestamp). Выполняется в транзакции только для чтения, поэтому драйвер PostgreSQL читает результат
+     * через серверный курсор порциями по {@code fetchSize} строк, и память не зависит от размера таблицы.
+     * Выгрузка, не завершившаяся за {@code timeoutMs}, прерывается, чтобы соединение и курсор не удерживались
+     * бесконечно.
+     *
+     * @param afterId        id, после которого начинается выгрузка
+     * @param afterTimestamp временная метка сообщения afterId; null — после всех строк с afterId
+     * @param fetchSize      число строк, получаемых из БД за один раз
+     * @param timeoutMs      наибольшая длительность выгрузки
+     * @param consumer       обработчик очередного сообщения
+     */
+    @Transactional(readOnly = true)
+    public void streamAfter(long afterId, Timestamp afterTimestamp, int fetchSize, long timeoutMs,
+                            Consumer<Message> consumer) {
+        try {
+            stream("SELECT id, name, price, timestamp FROM messages " + KEYSET_CONDITION + " ORDER BY id, timestamp",
+                    fetchSize, timeoutMs, consumer, afterId, afterTimestamp);
+        } catch (DataAccessException e) {
+            LOGGER.error("Ошибка потоковой выгрузки сообщений из базы данных", e);
+            throw new MessagePersistenceException("Ошибка потоковой выгрузки сообщений из базы данных", e);
         }
     }
+
+    /**
+     * Построчно передает сообщения с временной меткой не раньше {@code since} через серверный курсор,
+     * как {@link #streamAfter}. Порядок сообщений не гарантируется.
+     *
+     * @param since     начало интервала
+     * @param fetchSize число строк, получаемых из БД за один раз
+     * @param consumer  обработчик очередного сообщения
+     */
+    @Transactional(readOnly = true)
+    public void streamSince(Timestamp since, int fetchSize, Consumer<Message> consumer) {
+        try {
+            stream("SELECT id, name, price, timestamp FROM messages WHERE timestamp >= ?", fetchSize, 0, consumer, since);
+        } catch (DataAccessException e) {
+            LOGGER.error("Ошибка потоковой выгрузки сообщений с {} из базы данных", since, e);
+            throw new MessagePersistenceException("Ошибка потоковой выгрузки сообщений из базы данных", e);
+        }
+    }
+
+    /**
+     * Выполняет запрос через серверный курсор. При {@code timeoutMs > 0} ограничивает и выполнение запроса
+     * (query timeout), и общую длительность чтения: драйвер не применяет query timeout к последующим порциям курсора.
+     */
+    private void stream(String sql, int fetchSize, long timeoutMs, Consumer<Message> consumer, Object... parameters) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setFetchSize(fetchSize);
+            if (timeoutMs > 0) {
+                statement.setQueryTimeout((int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(timeoutMs)));
+            }
+            for (int i = 0; i < parameters.length; i++) {
+                statement.setObject(i + 1, parameters[i]);
+            }
+            return statement;
+        }, (RowCallbackHandler) rs -> {
+            if (timeoutMs > 0 && System.nanoTime() - deadline > 0) {
+                throw new QueryTimeoutException("Потоковая выгрузка не завершилась за " + timeoutMs + " мс");
+            }
+            consumer.accept(mapMessage(rs, rs.getRow()));
+        });
+    }
+
+    private static Message mapMessage(ResultSet rs, int rowNum) throws SQLException {
+        Message message = new Message();
+        message.setId(rs.getLong("id"));
+        message.setName(rs.getString("name"));
+        message.setPrice(rs.getDouble("price"));
+        message.setTimestamp(rs.getTimestamp("timestamp"));
+        return message;
+    }
 }
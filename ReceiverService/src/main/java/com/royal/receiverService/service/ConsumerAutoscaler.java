@@ -0,0 +1,261 @@
+package com.royal.receiverService.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Сервис автоматического подбора числа потребителей основной очереди.
+ * Периодически снимает глубину очереди (пассивное объявление), среднее время обработки сообщения (EWMA)
+ * и загрузку пула соединений Hikari. Число потребителей подбирается так, чтобы очередь разбиралась
+ * за rabbitmq.consumer.autoscale.target-drain-ms, и увеличивается не более чем вдвое за шаг, а уменьшается
+ * по одному. При насыщении пула соединений потребители не добавляются, а снимаются: узкое место в БД.
+ * Prefetch остается равным rabbitmq.consumer.prefetch: контейнер применяет новое значение только к вновь
+ * запущенным потребителям, а перезапуск потребителей ради него вернул бы в очередь уже полученные сообщения.
+ * Несколько потребителей обрабатывают сообщения одного id в произвольном порядке, поэтому автоподбор по умолчанию
+ * выключен; для параллельной обработки с сохранением порядка предназначен секционированный режим, в котором
+ * автоподбор не создается: каждая секция обрабатывается одним потребителем.
+ */
+@Service
+@ConditionalOnExpression("${rabbitmq.consumer.autoscale.enabled:false} and !${rabbitmq.partitioned.enabled:false}")
+public class ConsumerAutoscaler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConsumerAutoscaler.class);
+
+    /**
+     * Идентификатор контейнера обработки сообщений по одному.
+     */
+    public static final String MESSAGE_LISTENER_ID = "messageListener";
+
+    /**
+     * Идентификатор контейнера пакетной обработки сообщений.
+     */
+    public static final String MESSAGE_BATCH_LISTENER_ID = "messageBatchListener";
+
+    private static final double EWMA_ALPHA = 0.3;
+
+    @Value("${rabbitmq.queue.name}")
+    private String queue;
+
+    @Value("${rabbitmq.consumer.concurrency.min}")
+    private int minConsumers;
+
+    @Value("${rabbitmq.consumer.concurrency.max}")
+    private int maxConsumers;
+
+    @Value("${rabbitmq.consumer.autoscale.interval-ms}")
+    private long intervalMs;
+
+    @Value("${rabbitmq.consumer.autoscale.target-drain-ms}")
+    private long targetDrainMs;
+
+    @Value("${rabbitmq.consumer.autoscale.pool-saturation}")
+    private double poolSaturation;
+
+    private final RabbitListenerEndpointRegistry listenerRegistry;
+    private final AmqpAdmin amqpAdmin;
+    private final DataSource dataSource;
+    private final MeterRegistry meterRegistry;
+
+    private final LongAdder processedNanos = new LongAdder();
+    private final LongAdder processedMessages = new LongAdder();
+
+    private volatile int concurrency;
+    private volatile double latencyMs = Double.NaN;
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Конструктор сервиса автоподбора потребителей.
+     *
+     * @param listenerRegistry реестр контейнеров слушателей.
+     * @param amqpAdmin        администратор RabbitMQ для получения глубины очереди.
+     * @param dataSource       источник данных для контроля загрузки пула соединений.
+     * @param meterRegistry    реестр метрик.
+     */
+    @Autowired
+    public ConsumerAutoscaler(RabbitListenerEndpointRegistry listenerRegistry, AmqpAdmin amqpAdmin,
+                              DataSource dataSource, MeterRegistry meterRegistry) {
+        this.listenerRegistry = listenerRegistry;
+        this.amqpAdmin = amqpAdmin;
+        this.dataSource = dataSource;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Регистрирует метрики и запускает периодический подбор параметров.
+     */
+    @PostConstruct
+    public void start() {
+        concurrency = minConsumers;
+        Gauge.builder("rabbitmq.consumer.concurrency", this, autoscaler -> autoscaler.concurrency)
+                .description("Текущее число потребителей основной очереди")
+                .register(meterRegistry);
+        Gauge.builder("rabbitmq.consumer.latency", this, autoscaler -> autoscaler.latencyMs)
+                .description("Сглаженное время обработки одного сообщения")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("consumer-autoscaler").daemon(true).factory());
+        scheduler.scheduleWithFixedDelay(this::adjustSafely, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        LOGGER.info("Автоподбор потребителей запущен: {}..{} потребителей, интервал {} мс",
+                minConsumers, maxConsumers, intervalMs);
+    }
+
+    /**
+     * Останавливает периодический подбор параметров.
+     */
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Создает перехватчик вызова слушателя, замеряющий время обработки для расчета задержки.
+     * Для пакетного слушателя время делится на число сообщений в пакете.
+     *
+     * @return перехватчик для цепочки советов контейнера.
+     */
+    public MethodInterceptor latencyAdvice() {
+        return invocation -> {
+            long start = System.nanoTime();
+            try {
+                return invocation.proceed();
+            } finally {
+                Object[] arguments = invocation.getArguments();
+                Object data = arguments.length > 1 ? arguments[1] : null;
+                processedNanos.add(System.nanoTime() - start);
+                processedMessages.add(data instanceof List<?> batch ? batch.size() : 1);
+            }
+        };
+    }
+
+    private void adjustSafely() {
+        try {
+            adjust();
+        } catch (Exception e) {
+            LOGGER.warn("Ошибка автоподбора потребителей: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Выполняет один шаг подбора числа потребителей.
+     */
+    void adjust() {
+        String listenerId = listenerRegistry.getListenerContainer(MESSAGE_BATCH_LISTENER_ID) != null
+                ? MESSAGE_BATCH_LISTENER_ID : MESSAGE_LISTENER_ID;
+        MessageListenerContainer listenerContainer = listenerRegistry.getListenerContainer(listenerId);
+        if (!(listenerContainer instanceof SimpleMessageListenerContainer container) || !container.isRunning()) {
+            return;
+        }
+        QueueInformation queueInfo = amqpAdmin.getQueueInfo(queue);
+        if (queueInfo == null) {
+            LOGGER.warn("Очередь {} не найдена, автоподбор пропущен", queue);
+            return;
+        }
+        updateLatency();
+
+        long depth = queueInfo.getMessageCount();
+        boolean poolSaturated = isPoolSaturated();
+        int target = targetConcurrency(depth, poolSaturated);
+        if (target != concurrency) {
+            LOGGER.info("Число потребителей {} -> {}: глубина очереди {}, задержка {} мс, пул соединений насыщен: {}",
+                    concurrency, target, depth, String.format("%.2f", latencyMs), poolSaturated);
+            if (target > concurrency) {
+                container.setMaxConcurrentConsumers(target);
+                container.setConcurrentConsumers(target);
+            } else {
+                container.setConcurrentConsumers(target);
+                container.setMaxConcurrentConsumers(target);
+            }
+            concurrency = target;
+        }
+    }
+
+    /**
+     * Рассчитывает целевое число потребителей.
+     *
+     * @param depth         число сообщений в очереди.
+     * @param poolSaturated признак насыщения пула соединений.
+     * @return число потребителей в пределах rabbitmq.consumer.concurrency.min..max.
+     */
+    private int targetConcurrency(long depth, boolean poolSaturated) {
+        if (poolSaturated) {
+            return Math.max(minConsumers, concurrency - 1);
+        }
+        int desired;
+        if (depth == 0) {
+            desired = minConsumers;
+        } else if (Double.isNaN(latencyMs)) {
+            // Задержка еще не измерена: сообщения есть, но не обрабатываются достаточно быстро для оценки.
+            desired = concurrency + 1;
+        } else {
+            desired = (int) Math.ceil(depth * latencyMs / targetDrainMs);
+        }
+        desired = Math.clamp(desired, minConsumers, maxConsumers);
+        if (desired > concurrency) {
+            return Math.min(desired, concurrency * 2);
+        }
+        return desired < concurrency ? concurrency - 1 : concurrency;
+    }
+
+    /**
+     * Добавляет среднюю задержку за прошедший интервал в экспоненциальное скользящее среднее.
+     */
+    private void updateLatency() {
+        long messages = processedMessages.sumThenReset();
+        long nanos = processedNanos.sumThenReset();
+        if (messages == 0) {
+            return;
+        }
+        double intervalLatencyMs = nanos / (double) messages / TimeUnit.MILLISECONDS.toNanos(1);
+        latencyMs = Double.isNaN(latencyMs) ? intervalLatencyMs
+                : EWMA_ALPHA * intervalLatencyMs + (1 - EWMA_ALPHA) * latencyMs;
+    }
+
+    /**
+     * Проверяет насыщение пула соединений: есть потоки, ожидающие соединения, или занята заданная доля пула.
+     *
+     * @return true, если пул насыщен.
+     */
+    private boolean isPoolSaturated() {
+        try {
+            if (!dataSource.isWrapperFor(HikariDataSource.class)) {
+                return false;
+            }
+            HikariDataSource hikari = dataSource.unwrap(HikariDataSource.class);
+            HikariPoolMXBean pool = hikari.getHikariPoolMXBean();
+            if (pool == null) {
+                return false;
+            }
+            return pool.getThreadsAwaitingConnection() > 0
+                    || pool.getActiveConnections() >= poolSaturation * hikari.getMaximumPoolSize();
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.royal.receiverService.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.royal.receiverService.dto.DeadLetterFilter;
+import com.royal.receiverService.dto.DeadLetterMessage;
+import com.royal.receiverService.dto.DeadLetterReplayRequest;
+import com.royal.receiverService.dto.DeadLetterReplayResult;
+import com.royal.receiverService.repository.DeadLetterRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageDeliveryMode;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Сервис повторной публикации мертвых сообщений в основной обменник.
+ * Сообщения выбираются keyset-страницами по rabbitmq.replay.batch-size и публикуются с исходным телом,
+ * типом содержимого, message_id и заголовками (без истории x-death) с частотой не выше
+ * rabbitmq.replay.rate-per-second. После каждой страницы сервис ждет подтверждений брокера
+ * (не дольше rabbitmq.replay.confirm-timeout-ms) и отмечает подтвержденные сообщения как опубликованные
+ * повторно, поэтому прерванную публикацию можно продолжить тем же запросом. Одновременно выполняется
+ * не больше одной повторной публикации.
+ */
+@Service
+public class DeadLetterReplayService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DeadLetterReplayService.class);
+
+    /**
+     * Заголовок с id мертвого сообщения, из которого опубликовано сообщение.
+     */
+    public static final String REPLAYED_FROM_HEADER = "x-replayed-dead-letter-id";
+
+    private static final TypeReference<Map<String, Object>> HEADERS_TYPE = new TypeReference<>() {
+    };
+
+    @Value("${rabbitmq.exchange.name}")
+    private String exchange;
+
+    @Value("${rabbitmq.routing.key.name}")
+    private String routingKey;
+
+    @Value("${rabbitmq.replay.batch-size}")
+    private int batchSize;
+
+    @Value("${rabbitmq.replay.rate-per-second}")
+    private int ratePerSecond;
+
+    @Value("${rabbitmq.replay.confirm-timeout-ms}")
+    private long confirmTimeoutMs;
+
+    private final DeadLetterRepository deadLetterRepository;
+    private final RabbitTemplate rabbitTemplate;
+    private final ObjectMapper objectMapper;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * Конструктор сервиса повторной публикации.
+     *
+     * @param deadLetterRepository репозиторий мертвых сообщений.
+     * @param rabbitTemplate       шаблон для публикации в RabbitMQ.
+     * @param objectMapper         JSON-десериализатор сохраненных заголовков.
+     */
+    @Autowired
+    public DeadLetterReplayService(DeadLetterRepository deadLetterRepository, RabbitTemplate rabbitTemplate,
+                                   ObjectMapper objectMapper) {
+        this.deadLetterRepository = deadLetterRepository;
+        this.rabbitTemplate = rabbitTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Публикует повторно выбранные мертвые сообщения.
+     *
+     * @param request условия выбора сообщений.
+     * @return итог публикации.
+     * @throws IllegalStateException если уже выполняется другая повторная публикация.
+     */
+    public DeadLetterReplayResult replay(DeadLetterReplayRequest request) {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("Повторная публикация мертвых сообщений уже выполняется");
+        }
+        try {
+            return replayPages(request);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private DeadLetterReplayResult replayPages(DeadLetterReplayRequest request) {
+        DeadLetterFilter filter = new DeadLetterFilter(
+                request.getFrom() == null ? null : Timestamp.valueOf(request.getFrom()),
+                request.getTo() == null ? null : Timestamp.valueOf(request.getTo()),
+                request.getReason(), request.getIds(), request.isIncludeReplayed() ? null : Boolean.FALSE, null, null);
+        long remaining = request.getLimit() == null ? Long.MAX_VALUE : request.getLimit();
+        long intervalNanos = ratePerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / ratePerSecond : 0;
+        long nextSend = System.nanoTime();
+        long start = nextSend;
+
+        DeadLetterReplayResult result = new DeadLetterReplayResult();
+        while (remaining > 0) {
+            List<DeadLetterMessage> page = deadLetterRepository.findPage(filter, (int) Math.min(batchSize, remaining));
+            if (page.isEmpty()) {
+                break;
+            }
+            List<Pending> pending = new ArrayList<>(page.size());
+            for (DeadLetterMessage deadLetter : page) {
+                result.addSelected();
+                if (deadLetter.getPayload() == null) {
+                    result.addSkipped();
+                    continue;
+                }
+                long delay = nextSend - System.nanoTime();
+                if (delay > 0) {
+                    LockSupport.parkNanos(delay);
+                }
+                nextSend = Math.max(nextSend, System.nanoTime() - intervalNanos) + intervalNanos;
+
+                CorrelationData correlationData = new CorrelationData(String.valueOf(deadLetter.getId()));
+                rabbitTemplate.send(exchange, routingKey, toAmqpMessage(deadLetter), correlationData);
+                pending.add(new Pending(deadLetter.getId(), correlationData));
+            }
+            deadLetterRepository.markReplayed(awaitConfirms(pending, result));
+
+            remaining -= page.size();
+            filter = filter.after(page.get(page.size() - 1));
+        }
+        LOGGER.info("Повторная публикация мертвых сообщений завершена за {} мс: выбрано {}, подтверждено {}, отклонено {}, "
+                        + "возвращено {}, без подтверждения {}, пропущено {}",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), result.getSelected(), result.getAcked(),
+                result.getNacked(), result.getReturned(), result.getTimedOut(), result.getSkipped());
+        return result;
+    }
+
+    /**
+     * Ждет подтверждений страницы и учитывает их в итоге.
+     *
+     * @return id сообщений, подтвержденных брокером и не возвращенных как немаршрутизируемые.
+     */
+    private List<Long> awaitConfirms(List<Pending> pending, DeadLetterReplayResult result) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(confirmTimeoutMs);
+        List<Long> confirmed = new ArrayList<>(pending.size());
+        for (Pending publish : pending) {
+            try {
+                CorrelationData.Confirm confirm = publish.correlationData().getFuture()
+                        .get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (publish.correlationData().getReturned() != null) {
+                    result.addReturned();
+                } else if (confirm.isAck()) {
+                    result.addAcked();
+                    confirmed.add(publish.id());
+                } else {
+                    LOGGER.warn("Брокер отклонил повторную публикацию мертвого сообщения {}: {}", publish.id(), confirm.getReason());
+                    result.addNacked();
+                }
+            } catch (TimeoutException e) {
+                result.addTimedOut();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                result.addTimedOut();
+            } catch (Exception e) {
+                LOGGER.warn("Ошибка ожидания подтверждения мертвого сообщения {}: {}", publish.id(), e.getMessage());
+                result.addTimedOut();
+            }
+        }
+        return confirmed;
+    }
+
+    /**
+     * Восстанавливает AMQP-сообщение из сохраненных тела, типа содержимого, message_id и заголовков.
+     * История x-death не переносится: сообщение начинает обработку заново.
+     */
+    private Message toAmqpMessage(DeadLetterMessage deadLetter) {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(deadLetter.getContentType());
+        properties.setMessageId(deadLetter.getMessageId());
+        properties.setDeliveryMode(MessageDeliveryMode.PERSISTENT);
+        if (deadLetter.getHeaders() != null) {
+            try {
+                Map<String, Object> headers = objectMapper.readValue(deadLetter.getHeaders(), HEADERS_TYPE);
+                headers.keySet().removeIf(name -> name.startsWith("x-death") || name.startsWith("x-first-death")
+                        || name.startsWith("x-last-death"));
+                headers.forEach(properties::setHeader);
+            } catch (IOException e) {
+                LOGGER.warn("Не удалось прочитать заголовки мертвого сообщения {}: {}", deadLetter.getId(), e.getMessage());
+            }
+        }
+        properties.setHeader(REPLAYED_FROM_HEADER, deadLetter.getId());
+        return new Message(deadLetter.getPayload(), properties);
+    }
+
+    /**
+     * Опубликованное сообщение, ожидающее подтверждения.
+     *
+     * @param id              id мертвого сообщения.
+     * @param correlationData корреляция публикации.
+     */
+    private record Pending(Long id, CorrelationData correlationData) {
+    }
+}
@@ -1,15 +1,23 @@
 package com.royal.receiverService.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.royal.receiverService.dto.DeadLetterFilter;
 import com.royal.receiverService.dto.DeadLetterMessage;
 import com.royal.receiverService.exception.DeadLetterPersistenceException;
 import com.royal.receiverService.repository.DeadLetterRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.MessageProperties;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.sql.Timestamp;
+import java.util.Base64;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * Сервис для работы с мертвыми (необработанными) сообщениями.
@@ -18,47 +26,80 @@ import java.util.List;
 public class DeadLetterService {
     private static final Logger LOGGER = LoggerFactory.getLogger(DeadLetterService.class);
 
+    private static final String DEFAULT_ERROR_REASON = "Ошибка обработки в основной очереди";
+
     private final DeadLetterRepository deadLetterRepository;
+    private final ObjectMapper objectMapper;
 
     /**
      * Конструктор сервиса мертвых сообщений.
      *
      * @param deadLetterRepository Репозиторий для работы с мертвыми сообщениями.
+     * @param objectMapper         JSON-сериализатор заголовков.
      */
     @Autowired
-    public DeadLetterService(DeadLetterRepository deadLetterRepository) {
+    public DeadLetterService(DeadLetterRepository deadLetterRepository, ObjectMapper objectMapper) {
         this.deadLetterRepository = deadLetterRepository;
+        this.objectMapper = objectMapper;
     }
 
     /**
-     * Сохраняет мертвое сообщение в базу данных.
+     * Преобразует сообщение из очереди DLX в запись для сохранения без десериализации тела: сохраняются
+     * исходные байты, тип содержимого, message_id, заголовки в JSON и число попаданий в DLX из x-death.
+     * Причина ошибки составляется из причины и очереди последнего попадания в DLX.
      *
-     * @param messageBody Тело сообщения.
-     * @param errorReason Причина ошибки.
-     * @throws DeadLetterPersistenceException если возникает ошибка при сохранении сообщения.
+     * @param amqpMessage Сообщение из очереди DLX.
+     * @return Мертвое сообщение.
      */
-    public void saveDeadLetter(String messageBody, String errorReason) {
-        DeadLetterMessage deadLetter = new DeadLetterMessage(messageBody, errorReason, new Timestamp(System.currentTimeMillis()));
+    public DeadLetterMessage toDeadLetter(org.springframework.amqp.core.Message amqpMessage) {
+        MessageProperties properties = amqpMessage.getMessageProperties();
+        byte[] body = amqpMessage.getBody();
+        List<Map<String, ?>> deaths = properties.getXDeathHeader();
+
+        DeadLetterMessage deadLetter = new DeadLetterMessage(describeBody(body, properties.getContentType()),
+                errorReason(deaths), new Timestamp(System.currentTimeMillis()));
+        deadLetter.setPayload(body);
+        deadLetter.setContentType(properties.getContentType());
+        deadLetter.setMessageId(properties.getMessageId());
+        deadLetter.setHeaders(headersToJson(properties.getHeaders()));
+        if (deaths != null) {
+            deadLetter.setDeathCount(deaths.stream()
+                    .map(death -> death.get("count"))
+                    .filter(Number.class::isInstance)
+                    .mapToLong(count -> ((Number) count).longValue())
+                    .sum());
+        }
+        return deadLetter;
+    }
+
+    /**
+     * Сохраняет пакет мертвых сообщений в базу данных.
+     *
+     * @param deadLetters Мертвые сообщения.
+     * @throws DeadLetterPersistenceException если возникает ошибка при сохранении сообщений.
+     */
+    public void saveDeadLetters(List<DeadLetterMessage> deadLetters) {
         try {
-            LOGGER.info("Попытка сохранения мертвого сообщения: messageBody={}, errorReason={}", messageBody, errorReason);
-            deadLetterRepository.save(deadLetter);
-            LOGGER.info("Мертвое сообщение успешно сохранено: messageBody={}, errorReason={}", messageBody, errorReason);
+            LOGGER.info("Попытка сохранения {} мертвых сообщений", deadLetters.size());
+            deadLetterRepository.saveAll(deadLetters);
         } catch (DeadLetterPersistenceException e) {
-            LOGGER.error("Ошибка при сохранении мертвого сообщения: messageBody={}, errorReason={}", messageBody, errorReason, e);
+            LOGGER.error("Ошибка при сохранении {} мертвых сообщений", deadLetters.size(), e);
             throw e;
         }
     }
 
     /**
-     * Возвращает список всех мертвых сообщений из базы данных.
+     * Возвращает страницу мертвых сообщений, подходящих под фильтр.
      *
-     * @return Список мертвых сообщений.
+     * @param filter Условия выборки и позиция курсора.
+     * @param limit  Размер страницы.
+     * @return Страница мертвых сообщений в порядке (timestamp, id).
      * @throws DeadLetterPersistenceException если возникает ошибка при получении сообщений.
      */
-    public List<DeadLetterMessage> getAllDeadLetters() {
+    public List<DeadLetterMessage> getDeadLettersPage(DeadLetterFilter filter, int limit) {
         try {
-            LOGGER.info("Попытка получения всех мертвых сообщений из базы данных");
-            List<DeadLetterMessage> deadLetters = deadLetterRepository.findAll();
+            LOGGER.info("Попытка получения страницы мертвых сообщений из базы данных");
+            List<DeadLetterMessage> deadLetters = deadLetterRepository.findPage(filter, limit);
             LOGGER.info("Успешно получено {} мертвых сообщений", deadLetters.size());
             return deadLetters;
         } catch (DeadLetterPersistenceException e) {
@@ -69,4 +110,48 @@ public class DeadLetterService {
             throw new DeadLetterPersistenceException("Произошла непредвиденная ошибка", e);
         }
     }
+
+    /**
+     * Потоково выгружает мертвые сообщения, подходящие под фильтр, в порядке (timestamp, id).
+     *
+     * @param filter    Условия выборки и позиция курсора.
+     * @param fetchSize Число строк, получаемых из БД за один раз.
+     * @param consumer  Обработчик очередного сообщения.
+     * @throws DeadLetterPersistenceException если возникает ошибка при чтении сообщений.
+     */
+    public void streamDeadLetters(DeadLetterFilter filter, int fetchSize, Consumer<DeadLetterMessage> consumer) {
+        deadLetterRepository.stream(filter, fetchSize, consumer);
+    }
+
+    /**
+     * Возвращает текстовое представление тела для поля message_content: текст для текстовых типов содержимого,
+     * иначе Base64. Исходные байты сохраняются отдельно в payload.
+     */
+    private static String describeBody(byte[] body, String contentType) {
+        if (contentType == null || contentType.startsWith("text/") || contentType.contains("json")) {
+            String text = new String(body, StandardCharsets.UTF_8);
+            // PostgreSQL не допускает нулевой символ в text.
+            if (text.indexOf('\0') < 0) {
+                return text;
+            }
+        }
+        return Base64.getEncoder().encodeToString(body);
+    }
+
+    private static String errorReason(List<Map<String, ?>> deaths) {
+        if (deaths == null || deaths.isEmpty()) {
+            return DEFAULT_ERROR_REASON;
+        }
+        Map<String, ?> lastDeath = deaths.get(0);
+        return lastDeath.get("reason") + ": " + lastDeath.get("queue");
+    }
+
+    private String headersToJson(Map<String, Object> headers) {
+        try {
+            return objectMapper.writeValueAsString(headers);
+        } catch (JsonProcessingException e) {
+            LOGGER.warn("Не удалось сохранить заголовки мертвого сообщения: {}", e.getMessage());
+            return null;
+        }
+    }
 }
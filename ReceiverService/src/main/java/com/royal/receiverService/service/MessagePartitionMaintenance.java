@@ -0,0 +1,172 @@
+package com.royal.receiverService.service;
+
+import com.royal.receiverService.dto.MessagePartition;
+import com.royal.receiverService.repository.MessagePartitionRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сервис обслуживания секций таблицы messages.
+ * При старте и затем каждые messages.partitioning.maintenance-interval-ms создает суточные секции
+ * messages_pYYYYMMDD на messages.partitioning.premake-days дней вперед, а секции, целиком вышедшие
+ * за срок хранения messages.partitioning.retention-days, отсоединяет и в режиме drop удаляет. Так
+ * удаление старых сообщений становится операцией над метаданными, а не массовым DELETE с последующим VACUUM.
+ * Срок хранения по умолчанию не ограничен. Строки, попавшие в секцию по умолчанию за уже прошедшие дни,
+ * переносятся в созданные для этих дней секции, поэтому секция по умолчанию остается пустой и ее не нужно чистить.
+ * Границы суток берутся по часам БД. Несколько экземпляров сервиса могут обслуживать секции одновременно:
+ * изменения схемы выполняются под общей advisory-блокировкой.
+ */
+@Service
+@ConditionalOnProperty(name = "messages.partitioning.enabled", havingValue = "true")
+public class MessagePartitionMaintenance {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MessagePartitionMaintenance.class);
+
+    /**
+     * Режим хранения, при котором вышедшие за срок секции удаляются.
+     */
+    public static final String RETENTION_MODE_DROP = "drop";
+
+    /**
+     * Режим хранения, при котором вышедшие за срок секции только отсоединяются для архивации.
+     */
+    public static final String RETENTION_MODE_DETACH = "detach";
+
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    @Value("${messages.partitioning.premake-days}")
+    private int premakeDays;
+
+    @Value("${messages.partitioning.retention-days}")
+    private int retentionDays;
+
+    @Value("${messages.partitioning.retention-mode}")
+    private String retentionMode;
+
+    @Value("${messages.partitioning.maintenance-interval-ms}")
+    private long intervalMs;
+
+    @Value("${messages.partitioning.lock-timeout-ms}")
+    private long lockTimeoutMs;
+
+    private final MessagePartitionRepository partitionRepository;
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Конструктор сервиса обслуживания секций.
+     *
+     * @param partitionRepository репозиторий секций таблицы messages.
+     */
+    @Autowired
+    public MessagePartitionMaintenance(MessagePartitionRepository partitionRepository) {
+        this.partitionRepository = partitionRepository;
+    }
+
+    /**
+     * Запускает периодическое обслуживание секций.
+     */
+    @PostConstruct
+    public void start() {
+        if (!RETENTION_MODE_DROP.equals(retentionMode) && !RETENTION_MODE_DETACH.equals(retentionMode)) {
+            throw new IllegalStateException("messages.partitioning.retention-mode должен быть drop или detach: " + retentionMode);
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("partition-maintenance").daemon(true).factory());
+        scheduler.scheduleWithFixedDelay(this::maintainSafely, 0, intervalMs, TimeUnit.MILLISECONDS);
+        LOGGER.info("Обслуживание секций messages запущено: секции на {} дней вперед, срок хранения {}, режим {}",
+                premakeDays, retentionDays > 0 ? retentionDays + " дней" : "не ограничен", retentionMode);
+    }
+
+    /**
+     * Останавливает периодическое обслуживание секций.
+     */
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    private void maintainSafely() {
+        try {
+            maintain();
+        } catch (Exception e) {
+            LOGGER.warn("Ошибка обслуживания секций messages: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Выполняет один проход обслуживания: создает недостающие секции, переносит строки из секции по умолчанию
+     * и освобождает устаревшие секции.
+     */
+    void maintain() {
+        LocalDate today = partitionRepository.currentDate();
+        LocalDateTime cutoff = retentionDays > 0 ? today.minusDays(retentionDays).atStartOfDay() : null;
+        List<MessagePartition> partitions = partitionRepository.findPartitions();
+
+        // Новые секции начинаются от верхней границы последней секции, чтобы диапазоны не пересекались.
+        LocalDateTime from = partitions.stream()
+                .map(MessagePartition::getTo)
+                .filter(Objects::nonNull)
+                .max(LocalDateTime::compareTo)
+                .orElse(today.atStartOfDay());
+        if (cutoff != null && from.isBefore(cutoff)) {
+            from = cutoff;
+        }
+        LocalDateTime until = today.plusDays(premakeDays + 1L).atStartOfDay();
+        while (from.isBefore(until)) {
+            LocalDateTime to = from.toLocalDate().plusDays(1).atStartOfDay();
+            partitionRepository.createPartition(partitionName(from), from, to, lockTimeoutMs);
+            from = to;
+        }
+        relocateDefaultRows(until);
+
+        if (cutoff == null) {
+            return;
+        }
+        for (MessagePartition partition : partitionRepository.findPartitions()) {
+            if (partition.isDefaultPartition() || partition.getTo() == null || partition.getTo().isAfter(cutoff)) {
+                continue;
+            }
+            partitionRepository.detachPartition(partition.getName(), lockTimeoutMs);
+            if (RETENTION_MODE_DROP.equals(retentionMode)) {
+                partitionRepository.dropTable(partition.getName(), lockTimeoutMs);
+            }
+        }
+    }
+
+    /**
+     * Создает секции для дней, строки которых попали в секцию по умолчанию (например, после отсоединения
+     * устаревших секций или при перерыве в обслуживании): создание секции переносит эти строки. Строки после
+     * {@code until} остаются в секции по умолчанию, пока до их дня не дойдет заблаговременное создание секций.
+     * Дни старше срока хранения затем освобождаются вместе с остальными устаревшими секциями.
+     */
+    private void relocateDefaultRows(LocalDateTime until) {
+        for (LocalDate day : partitionRepository.findDefaultDays(until)) {
+            LocalDateTime from = day.atStartOfDay();
+            String name = partitionName(from);
+            if (partitionRepository.createPartition(name, from, from.plusDays(1), lockTimeoutMs) == 0) {
+                LOGGER.warn("Строки за {} не перенесены из секции {}: таблица {} уже существует",
+                        day, MessagePartitionRepository.DEFAULT_PARTITION, name);
+            }
+        }
+    }
+
+    private static String partitionName(LocalDateTime from) {
+        return "messages_p" + PARTITION_SUFFIX.format(from);
+    }
+}
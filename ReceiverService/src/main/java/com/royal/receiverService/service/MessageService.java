@@ -1,15 +1,27 @@
 package com.royal.receiverService.service;
 
+import com.royal.receiverService.cache.IdempotencyCache;
+import com.royal.receiverService.cache.MessageReadCache;
 import com.royal.receiverService.dto.Message;
 import com.royal.receiverService.exception.MessageAlreadyExistsException;
 import com.royal.receiverService.exception.MessagePersistenceException;
+import com.royal.receiverService.metrics.ConsumeMetrics;
 import com.royal.receiverService.repository.MessageRepository;
+import com.royal.receiverService.stats.PriceStatistics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Сервис для работы с сообщениями.
@@ -19,30 +31,68 @@ public class MessageService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(MessageService.class);
 
+    private static final String COPY_WRITE_MODE = "copy";
+
+    @Value("${rabbitmq.consumer.batch.write-mode}")
+    private String batchWriteMode;
+
     private final MessageRepository messageRepository;
 
+    private final IdempotencyCache idempotencyCache;
+
+    private final MessageReadCache messageReadCache;
+
+    private final PriceStatistics priceStatistics;
+
+    private final ConsumeMetrics consumeMetrics;
+
     /**
      * Конструктор сервиса сообщений.
      *
      * @param messageRepository Репозиторий для работы с сообщениями.
+     * @param idempotencyCache  Кеш идентификаторов недавно сохраненных сообщений.
+     * @param messageReadCache  Кеш сообщений для чтения по id.
+     * @param priceStatistics   Статистика цены сохраненных сообщений.
+     * @param consumeMetrics    Метрики приема для учета задержки от отправки до сохранения.
      */
     @Autowired
-    public MessageService(MessageRepository messageRepository) {
+    public MessageService(MessageRepository messageRepository, IdempotencyCache idempotencyCache,
+                          MessageReadCache messageReadCache, PriceStatistics priceStatistics,
+                          ConsumeMetrics consumeMetrics) {
         this.messageRepository = messageRepository;
+        this.idempotencyCache = idempotencyCache;
+        this.messageReadCache = messageReadCache;
+        this.priceStatistics = priceStatistics;
+        this.consumeMetrics = consumeMetrics;
     }
 
     /**
-     * Сохраняет сообщение в базу данных.
+     * Сохраняет сообщение в базу данных. Повторная доставка недавно сохраненного сообщения распознается по кешу
+     * и пропускается без обращения к БД.
      *
      * @param message Сообщение для сохранения.
-     * @throws MessageAlreadyExistsException если сообщение уже существует.
+     * @return true, если сообщение сохранено; false, если это известный дубликат и сохранение пропущено.
+     * @throws MessageAlreadyExistsException если сообщение уже существует в БД.
      * @throws MessagePersistenceException   если возникает ошибка при сохранении сообщения.
      */
-    public void saveMessage(Message message) {
+    public boolean saveMessage(Message message) {
+        if (idempotencyCache.contains(message.getId())) {
+            LOGGER.info("Сообщение с id {} уже сохранено недавно, повторная доставка пропущена", message.getId());
+            return false;
+        }
+        // Метку, которую проставит репозиторий для сообщения без нее, нельзя учитывать в задержке.
+        Timestamp sentAt = message.getTimestamp();
         try {
             LOGGER.info("Попытка сохранить сообщение с id: {}", message.getId());
             messageRepository.save(message);
+            if (sentAt != null) {
+                consumeMetrics.recordSaved(sentAt);
+            }
+            idempotencyCache.add(message.getId());
+            messageReadCache.put(message);
+            priceStatistics.record(message);
             LOGGER.info("Сообщение успешно сохранено с id: {}", message.getId());
+            return true;
         } catch (MessageAlreadyExistsException e) {
             LOGGER.warn("Не удалось сохранить сообщение: {}", e.getMessage());
             throw e;
@@ -56,15 +106,86 @@ public class MessageService {
     }
 
     /**
-     * Возвращает список всех сообщений из базы данных.
+     * Сохраняет пакет сообщений в базу данных в одной транзакции. Известные по кешу дубликаты пропускаются
+     * без обращения к БД и считаются обработанными. При rabbitmq.consumer.batch.write-mode=copy пакет загружается
+     * через COPY во временную таблицу, иначе — пакетными INSERT.
+     *
+     * @param messages Сообщения для сохранения.
+     * @return Сообщения, не сохраненные как дубликаты уже существующих в БД.
+     * @throws MessagePersistenceException если возникает ошибка при сохранении пакета; пакет при этом откатывается.
+     */
+    public List<Message> saveMessages(List<Message> messages) {
+        List<Message> toSave = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            if (idempotencyCache.contains(message.getId())) {
+                LOGGER.info("Сообщение с id {} уже сохранено недавно, повторная доставка пропущена", message.getId());
+            } else {
+                toSave.add(message);
+            }
+        }
+        if (toSave.isEmpty()) {
+            return List.of();
+        }
+        Set<Message> unstamped = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Message message : toSave) {
+            if (message.getTimestamp() == null) {
+                unstamped.add(message);
+            }
+        }
+        try {
+            LOGGER.info("Попытка сохранить пакет из {} сообщений", toSave.size());
+            List<Message> duplicates = COPY_WRITE_MODE.equalsIgnoreCase(batchWriteMode)
+                    ? messageRepository.copyAll(toSave)
+                    : messageRepository.saveAll(toSave);
+            Set<Message> rejected = Collections.newSetFromMap(new IdentityHashMap<>());
+            rejected.addAll(duplicates);
+            for (Message message : toSave) {
+                if (!rejected.contains(message)) {
+                    if (!unstamped.contains(message)) {
+                        consumeMetrics.recordSaved(message.getTimestamp());
+                    }
+                    idempotencyCache.add(message.getId());
+                    messageReadCache.put(message);
+                    priceStatistics.record(message);
+                }
+            }
+            if (!duplicates.isEmpty()) {
+                LOGGER.warn("В пакете найдено {} дубликатов", duplicates.size());
+            }
+            return duplicates;
+        } catch (MessagePersistenceException e) {
+            LOGGER.error("Не удалось сохранить пакет сообщений из-за ошибки базы данных: {}", e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            LOGGER.error("При сохранении пакета сообщений произошла непредвиденная ошибка: {}", e.getMessage());
+            throw new MessagePersistenceException("При сохранении пакета сообщений произошла непредвиденная ошибка", e);
+        }
+    }
+
+    /**
+     * Возвращает сообщение по id. Недавно сохраненные и недавно прочитанные сообщения отдаются из кеша.
      *
-     * @return Список сообщений.
+     * @param id Идентификатор сообщения.
+     * @return Сообщение или пустой Optional, если сообщения нет.
+     * @throws MessagePersistenceException если возникает ошибка при получении сообщения.
+     */
+    public Optional<Message> getMessage(Long id) throws MessagePersistenceException {
+        return Optional.ofNullable(messageReadCache.get(id, key -> messageRepository.findById(key).orElse(null)));
+    }
+
+    /**
+     * Возвращает страницу сообщений после позиции ({@code afterId}, {@code afterTimestamp}).
+     *
+     * @param afterId        id последнего сообщения предыдущей страницы.
+     * @param afterTimestamp временная метка последнего сообщения предыдущей страницы или null.
+     * @param limit          размер страницы.
+     * @return Страница сообщений.
      * @throws MessagePersistenceException если возникает ошибка при получении сообщений.
      */
-    public List<Message> getAllMessages() throws MessagePersistenceException {
+    public List<Message> getMessagesPage(long afterId, Timestamp afterTimestamp, int limit) throws MessagePersistenceException {
         try {
-            LOGGER.info("Попытка получения всех сообщений из базы данных через сервис");
-            List<Message> messages = messageRepository.findAll();
+            LOGGER.info("Попытка получения страницы сообщений через сервис");
+            List<Message> messages = messageRepository.findPage(afterId, afterTimestamp, limit);
             LOGGER.info("Успешно получено {} сообщений через сервис", messages.size());
             return messages;
         } catch (MessagePersistenceException e) {
@@ -72,4 +193,19 @@ public class MessageService {
             throw new MessagePersistenceException("Ошибка при получении сообщений через сервис", e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Потоково выгружает сообщения после позиции ({@code afterId}, {@code afterTimestamp}) в порядке (id, timestamp).
+     *
+     * @param afterId        id, после которого начинается выгрузка.
+     * @param afterTimestamp временная метка сообщения afterId или null.
+     * @param fetchSize      число строк, получаемых из БД за один раз.
+     * @param timeoutMs      наибольшая длительность выгрузки.
+     * @param consumer       обработчик очередного сообщения.
+     * @throws MessagePersistenceException если возникает ошибка при чтении сообщений или выгрузка не уложилась в timeoutMs.
+     */
+    public void streamMessages(long afterId, Timestamp afterTimestamp, int fetchSize, long timeoutMs,
+                               Consumer<Message> consumer) throws MessagePersistenceException {
+        messageRepository.streamAfter(afterId, afterTimestamp, fetchSize, timeoutMs, consumer);
+    }
+}
@@ -0,0 +1,212 @@
+package com.royal.receiverService.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerEndpoint;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.amqp.rabbit.listener.api.ChannelAwareMessageListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Потребители секционированной топологии (rabbitmq.partitioned.enabled=true).
+ * Для каждой очереди-секции фабрика partitionContainerFactory создает отдельный контейнер с одним потребителем,
+ * поэтому секции обрабатываются параллельно, а сообщения внутри секции — по порядку. Контейнеры регистрируются
+ * в {@link RabbitListenerEndpointRegistry} (идентификаторы partition-N) и обрабатывают сообщения тем же
+ * {@link RabbitConsumer#consume}, что и основная очередь. Экземпляр сразу подписывается на «свои» секции
+ * (номер секции по модулю rabbitmq.partitioned.instance-count равен rabbitmq.partitioned.instance-index),
+ * а на остальные — с задержкой rabbitmq.partitioned.standby-delay-ms как резервный потребитель: брокер
+ * активирует его только после отключения основного.
+ *
+ * <p>Брокер не возвращает секцию вернувшемуся владельцу сам: активный потребитель остается активным, пока
+ * не отключится. Поэтому раз в rabbitmq.partitioned.rebalance-interval-ms резервный потребитель, получавший
+ * сообщения за прошедший интервал, переподписывается, если у очереди есть другие потребители: он встает в конец
+ * очереди ожидания, и брокер активирует следующего, в итоге — владельца. Неподтвержденные сообщения при этом
+ * возвращаются в очередь в исходном порядке.
+ * Сообщение, отправленное на повторную попытку ({@link RetryRouter}), возвращается в секцию позже следующих за ним.
+ */
+@Component
+@ConditionalOnProperty(name = "rabbitmq.partitioned.enabled", havingValue = "true")
+public class PartitionedConsumers implements SmartLifecycle {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PartitionedConsumers.class);
+
+    @Value("${rabbitmq.partitioned.queue.prefix}")
+    private String partitionQueuePrefix;
+
+    @Value("${rabbitmq.partitioned.partitions}")
+    private int partitions;
+
+    @Value("${rabbitmq.partitioned.instance-index}")
+    private int instanceIndex;
+
+    @Value("${rabbitmq.partitioned.instance-count}")
+    private int instanceCount;
+
+    @Value("${rabbitmq.partitioned.standby-delay-ms}")
+    private long standbyDelayMs;
+
+    @Value("${rabbitmq.partitioned.rebalance-interval-ms}")
+    private long rebalanceIntervalMs;
+
+    private final RabbitConsumer rabbitConsumer;
+    private final RabbitListenerEndpointRegistry listenerRegistry;
+    private final SimpleRabbitListenerContainerFactory containerFactory;
+    private final AmqpAdmin amqpAdmin;
+
+    private final List<MessageListenerContainer> containers = new ArrayList<>();
+    private final List<Integer> standby = new ArrayList<>();
+
+    private AtomicLongArray lastDeliveryNanos;
+    private ScheduledExecutorService standbyScheduler;
+    private volatile boolean running;
+
+    /**
+     * Конструктор потребителей секций.
+     *
+     * @param rabbitConsumer   обработчик сообщений основной очереди, которым обрабатываются и сообщения секций.
+     * @param listenerRegistry реестр контейнеров слушателей.
+     * @param containerFactory фабрика контейнеров секций.
+     * @param amqpAdmin        администратор RabbitMQ для получения числа потребителей секции.
+     */
+    @Autowired
+    public PartitionedConsumers(RabbitConsumer rabbitConsumer, RabbitListenerEndpointRegistry listenerRegistry,
+                                @Qualifier("partitionContainerFactory") SimpleRabbitListenerContainerFactory containerFactory,
+                                AmqpAdmin amqpAdmin) {
+        this.rabbitConsumer = rabbitConsumer;
+        this.listenerRegistry = listenerRegistry;
+        this.containerFactory = containerFactory;
+        this.amqpAdmin = amqpAdmin;
+    }
+
+    /**
+     * Запускает потребителей своих секций и планирует подписку на остальные секции в качестве резерва.
+     */
+    @Override
+    public void start() {
+        lastDeliveryNanos = new AtomicLongArray(partitions);
+        List<Integer> owned = new ArrayList<>();
+        for (int partition = 0; partition < partitions; partition++) {
+            boolean isOwned = partition % instanceCount == instanceIndex;
+            if (!isOwned && standbyDelayMs < 0) {
+                continue;
+            }
+            MessageListenerContainer container = createContainer(partition);
+            containers.add(container);
+            if (isOwned) {
+                container.start();
+                owned.add(partition);
+            } else {
+                standby.add(partition);
+            }
+        }
+        if (!standby.isEmpty()) {
+            standbyScheduler = Executors.newSingleThreadScheduledExecutor(
+                    Thread.ofPlatform().name("partition-standby").daemon(true).factory());
+            standbyScheduler.schedule(() -> standby.forEach(partition -> container(partition).start()),
+                    standbyDelayMs, TimeUnit.MILLISECONDS);
+            if (rebalanceIntervalMs > 0) {
+                standbyScheduler.scheduleWithFixedDelay(this::rebalanceSafely, standbyDelayMs + rebalanceIntervalMs,
+                        rebalanceIntervalMs, TimeUnit.MILLISECONDS);
+            }
+        }
+        running = true;
+        LOGGER.info("Секционированный прием запущен: экземпляр {} из {}, свои секции {}, резервные секции {}",
+                instanceIndex, instanceCount, owned, standby);
+    }
+
+    /**
+     * Останавливает всех потребителей секций.
+     */
+    @Override
+    public void stop() {
+        if (standbyScheduler != null) {
+            standbyScheduler.shutdownNow();
+        }
+        containers.forEach(MessageListenerContainer::stop);
+        containers.clear();
+        standby.clear();
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Создает контейнер секции через фабрику контейнеров и регистрирует его в реестре слушателей
+     * без автоматического запуска. При повторном запуске используется уже зарегистрированный контейнер.
+     */
+    private MessageListenerContainer createContainer(int partition) {
+        MessageListenerContainer existing = container(partition);
+        if (existing != null) {
+            return existing;
+        }
+        SimpleRabbitListenerEndpoint endpoint = new SimpleRabbitListenerEndpoint();
+        endpoint.setId(listenerId(partition));
+        endpoint.setQueueNames(partitionQueuePrefix + partition);
+        endpoint.setAutoStartup(false);
+        endpoint.setMessageListener((ChannelAwareMessageListener) (message, channel) -> {
+            lastDeliveryNanos.set(partition, System.nanoTime());
+            rabbitConsumer.consume(message, channel);
+        });
+        listenerRegistry.registerListenerContainer(endpoint, containerFactory);
+        return container(partition);
+    }
+
+    private MessageListenerContainer container(int partition) {
+        return listenerRegistry.getListenerContainer(listenerId(partition));
+    }
+
+    private static String listenerId(int partition) {
+        return "partition-" + partition;
+    }
+
+    private void rebalanceSafely() {
+        try {
+            rebalance();
+        } catch (Exception e) {
+            LOGGER.warn("Ошибка возврата секций владельцам: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Переподписывает резервных потребителей, которые были активны за прошедший интервал, если у секции
+     * есть другие потребители.
+     */
+    void rebalance() {
+        long activeSince = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(rebalanceIntervalMs);
+        for (int partition : standby) {
+            long lastDelivery = lastDeliveryNanos.get(partition);
+            MessageListenerContainer container = container(partition);
+            if (lastDelivery == 0 || lastDelivery - activeSince < 0 || container == null || !container.isRunning()) {
+                continue;
+            }
+            QueueInformation queueInfo = amqpAdmin.getQueueInfo(partitionQueuePrefix + partition);
+            if (queueInfo == null || queueInfo.getConsumerCount() <= 1) {
+                continue;
+            }
+            LOGGER.info("Резервный потребитель секции {} уступает ее: у очереди {} потребителей",
+                    partition, queueInfo.getConsumerCount());
+            lastDeliveryNanos.set(partition, 0);
+            container.stop();
+            container.start();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.royal.receiverService.service;
+
+import com.rabbitmq.client.Channel;
+import com.royal.receiverService.dto.Message;
+import com.royal.receiverService.metrics.ConsumeMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Компонент для пакетной обработки сообщений из RabbitMQ (rabbitmq.consumer.batch.enabled=true).
+ * Пакет сохраняется в одной транзакции, после чего ошибочные сообщения отклоняются по одному в DLX,
+ * а успешные подтверждаются одним basicAck с multiple=true по наибольшему delivery tag. Дубликаты подтверждаются
+ * вместе с успешными, а сообщения с временной ошибкой БД перед подтверждением публикуются в очередь задержки
+ * ({@link RetryRouter}).
+ */
+@Component
+@ConditionalOnProperty(name = "rabbitmq.consumer.batch.enabled", havingValue = "true")
+public class RabbitBatchConsumer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RabbitBatchConsumer.class);
+
+    private final MessageService messageService;
+    private final MessageConverter messageConverter;
+    private final RetryRouter retryRouter;
+    private final ConsumeMetrics consumeMetrics;
+
+    /**
+     * Конструктор для инициализации сервиса сообщений и конвертера.
+     *
+     * @param messageService   Сервис для обработки сообщений.
+     * @param messageConverter Конвертер сообщений RabbitMQ.
+     * @param retryRouter      Компонент повторных попыток для сообщений, которые не удалось сохранить.
+     * @param consumeMetrics   Метрики приема.
+     */
+    @Autowired
+    public RabbitBatchConsumer(MessageService messageService, MessageConverter messageConverter,
+                               RetryRouter retryRouter, ConsumeMetrics consumeMetrics) {
+        this.messageService = messageService;
+        this.messageConverter = messageConverter;
+        this.retryRouter = retryRouter;
+        this.consumeMetrics = consumeMetrics;
+    }
+
+    /**
+     * Обработчик пакета сообщений из RabbitMQ. Сообщения принимаются в сыром виде, чтобы ошибка преобразования
+     * одного сообщения не отклоняла весь пакет.
+     *
+     * @param amqpMessages Полученные сообщения.
+     * @param channel      Канал для подтверждения обработки сообщений.
+     * @throws IOException если происходит ошибка при подтверждении или отклонении сообщений.
+     */
+    @RabbitListener(id = ConsumerAutoscaler.MESSAGE_BATCH_LISTENER_ID, queues = "${rabbitmq.queue.name}",
+            containerFactory = "batchContainerFactory", autoStartup = "#{!${rabbitmq.partitioned.enabled:false}}")
+    public void consumeBatch(List<org.springframework.amqp.core.Message> amqpMessages, Channel channel) throws IOException {
+        LOGGER.info("Получен пакет из {} сообщений", amqpMessages.size());
+
+        List<Delivery> deliveries = new ArrayList<>(amqpMessages.size());
+        List<Long> failedTags = new ArrayList<>();
+        for (org.springframework.amqp.core.Message amqpMessage : amqpMessages) {
+            long deliveryTag = amqpMessage.getMessageProperties().getDeliveryTag();
+            try {
+                amqpMessage.getMessageProperties().setInferredArgumentType(Message.class);
+                deliveries.add(new Delivery((Message) messageConverter.fromMessage(amqpMessage), amqpMessage));
+            } catch (Exception e) {
+                LOGGER.error("Не удалось прочитать сообщение: delivery tag {}: {}", deliveryTag, e.getMessage());
+                failedTags.add(deliveryTag);
+            }
+        }
+
+        long lastAckTag = save(deliveries, failedTags);
+
+        String queue = amqpMessages.get(0).getMessageProperties().getConsumerQueue();
+        for (long deliveryTag : failedTags) {
+            channel.basicNack(deliveryTag, false, false);
+        }
+        if (!failedTags.isEmpty()) {
+            consumeMetrics.recordOutcome(queue, ConsumeMetrics.NACK, failedTags.size());
+            LOGGER.info("Сообщения отправлены в очередь мертвых писем (DLX): delivery tags {}", failedTags);
+        }
+        if (lastAckTag > 0) {
+            channel.basicAck(lastAckTag, true);
+            consumeMetrics.recordOutcome(queue, ConsumeMetrics.ACK, amqpMessages.size() - failedTags.size());
+            LOGGER.info("Пакет подтвержден до delivery tag {}", lastAckTag);
+        }
+    }
+
+    /**
+     * Сохраняет пакет одной транзакцией. Если пакет целиком не сохранился, сообщения сохраняются по одному,
+     * чтобы отклонить только ошибочные. Дубликаты и сообщения, принятые очередью задержки, подтверждаются.
+     *
+     * @param deliveries прочитанные сообщения пакета.
+     * @param failedTags список, в который добавляются delivery tag неуспешных сообщений.
+     * @return наибольший delivery tag подтверждаемого сообщения или 0.
+     */
+    private long save(List<Delivery> deliveries, List<Long> failedTags) {
+        if (deliveries.isEmpty()) {
+            return 0;
+        }
+        long lastAckTag = 0;
+        try {
+            Set<Message> duplicates = Collections.newSetFromMap(new IdentityHashMap<>());
+            duplicates.addAll(messageService.saveMessages(deliveries.stream().map(Delivery::message).toList()));
+            for (Delivery delivery : deliveries) {
+                if (duplicates.contains(delivery.message())) {
+                    LOGGER.warn("Дубликат сообщения с id: {}", delivery.message().getId());
+                }
+                lastAckTag = Math.max(lastAckTag, delivery.deliveryTag());
+            }
+        } catch (Exception e) {
+            LOGGER.error("Ошибка пакетного сохранения, сохранение по одному сообщению: {}", e.getMessage());
+            for (Delivery delivery : deliveries) {
+                try {
+                    messageService.saveMessage(delivery.message());
+                    lastAckTag = Math.max(lastAckTag, delivery.deliveryTag());
+                } catch (Exception itemError) {
+                    LOGGER.error("Ошибка обработки сообщения: {}", itemError.getMessage());
+                    RetryRouter.Decision decision = retryRouter.decide(delivery.amqpMessage(), itemError);
+                    if (decision == RetryRouter.Decision.ACK
+                            || decision == RetryRouter.Decision.RETRY && retryRouter.publishRetry(delivery.amqpMessage())) {
+                        lastAckTag = Math.max(lastAckTag, delivery.deliveryTag());
+                    } else {
+                        failedTags.add(delivery.deliveryTag());
+                    }
+                }
+            }
+        }
+        return lastAckTag;
+    }
+
+    /**
+     * Прочитанное сообщение вместе с исходным AMQP-сообщением.
+     *
+     * @param message     сообщение.
+     * @param amqpMessage исходное сообщение для повторной публикации.
+     */
+    private record Delivery(Message message, org.springframework.amqp.core.Message amqpMessage) {
+
+        private long deliveryTag() {
+            return amqpMessage.getMessageProperties().getDeliveryTag();
+        }
+    }
+}
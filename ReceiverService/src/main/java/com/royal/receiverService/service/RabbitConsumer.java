@@ -2,58 +2,90 @@ package com.royal.receiverService.service;
 
 import com.rabbitmq.client.Channel;
 import com.royal.receiverService.dto.Message;
+import com.royal.receiverService.metrics.ConsumeMetrics;
+import com.royal.receiverService.writebehind.WriteBehindPipeline;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
-import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
 
 /**
- * Компонент для обработки сообщений из RabbitMQ.
+ * Компонент для обработки сообщений из RabbitMQ по одному.
+ * Отключается при включенном пакетном приеме (rabbitmq.consumer.batch.enabled=true), см. {@link RabbitBatchConsumer}.
+ * В секционированном режиме (rabbitmq.partitioned.enabled=true) слушатель основной очереди не запускается,
+ * а {@link #consume} обрабатывает сообщения очередей-секций, см. {@link PartitionedConsumers}.
+ * При включенной отложенной записи (rabbitmq.consumer.write-behind.enabled=true) сообщение передается
+ * в {@link WriteBehindPipeline}, который сохраняет и подтверждает его вместе с другими.
  */
 @Component
+@ConditionalOnExpression("!${rabbitmq.consumer.batch.enabled:false} or ${rabbitmq.partitioned.enabled:false}")
 public class RabbitConsumer {
     private final MessageService messageService;
+    private final MessageConverter messageConverter;
+    private final RetryRouter retryRouter;
+    private final WriteBehindPipeline writeBehindPipeline;
+    private final ConsumeMetrics consumeMetrics;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(RabbitConsumer.class);
 
     /**
      * Конструктор для инициализации сервиса сообщений.
      *
-     * @param messageService Сервис для обработки сообщений.
+     * @param messageService      Сервис для обработки сообщений.
+     * @param messageConverter    Конвертер сообщений RabbitMQ.
+     * @param retryRouter         Компонент повторных попыток для сообщений, которые не удалось обработать.
+     * @param writeBehindPipeline Конвейер отложенной записи, если он включен.
+     * @param consumeMetrics      Метрики приема.
      */
     @Autowired
-    public RabbitConsumer(MessageService messageService) {
+    public RabbitConsumer(MessageService messageService, MessageConverter messageConverter, RetryRouter retryRouter,
+                          ObjectProvider<WriteBehindPipeline> writeBehindPipeline, ConsumeMetrics consumeMetrics) {
         this.messageService = messageService;
+        this.messageConverter = messageConverter;
+        this.retryRouter = retryRouter;
+        this.writeBehindPipeline = writeBehindPipeline.getIfAvailable();
+        this.consumeMetrics = consumeMetrics;
     }
 
     /**
-     * Обработчик сообщений из RabbitMQ.
+     * Обработчик сообщений из RabbitMQ. Ошибка обработки передается в {@link RetryRouter}: дубликат подтверждается,
+     * ошибка БД уходит на повторную попытку с задержкой, остальное — в DLX. Сообщение принимается в сыром виде,
+     * чтобы ошибка преобразования тоже отклоняла доставку и ее не захватило подтверждение с multiple=true.
      *
-     * @param message     Полученное сообщение.
+     * @param amqpMessage Полученное AMQP-сообщение.
      * @param channel     Канал для подтверждения обработки сообщения.
-     * @param deliveryTag Уникальный идентификатор доставки сообщения.
      * @throws IOException если происходит ошибка при подтверждении или отклонении сообщения.
      */
-    @RabbitListener(queues = "${rabbitmq.queue.name}", ackMode = "MANUAL")
-    public void consume(Message message, Channel channel, @Header(AmqpHeaders.DELIVERY_TAG) long deliveryTag) throws IOException {
+    @RabbitListener(id = ConsumerAutoscaler.MESSAGE_LISTENER_ID, queues = "${rabbitmq.queue.name}",
+            containerFactory = "consumerContainerFactory", ackMode = "MANUAL",
+            autoStartup = "#{!${rabbitmq.partitioned.enabled:false}}")
+    public void consume(org.springframework.amqp.core.Message amqpMessage, Channel channel) throws IOException {
+        long deliveryTag = amqpMessage.getMessageProperties().getDeliveryTag();
         try {
+            amqpMessage.getMessageProperties().setInferredArgumentType(Message.class);
+            Message message = (Message) messageConverter.fromMessage(amqpMessage);
             LOGGER.info("Получено сообщение: {}", message.toString());
             LOGGER.info("Delivery tag: {}", deliveryTag);
 
-            messageService.saveMessage(message);
+            if (writeBehindPipeline != null && writeBehindPipeline.submit(message, amqpMessage, channel)) {
+                return;
+            }
+            boolean saved = messageService.saveMessage(message);
 
             channel.basicAck(deliveryTag, false);
-            LOGGER.info("Сообщение подтверждено: delivery tag {}", deliveryTag);
+            consumeMetrics.recordOutcome(amqpMessage.getMessageProperties().getConsumerQueue(), ConsumeMetrics.ACK, 1);
+            LOGGER.info(saved ? "Сообщение подтверждено: delivery tag {}" : "Повторная доставка подтверждена: delivery tag {}",
+                    deliveryTag);
         } catch (Exception e) {
             LOGGER.error("Ошибка обработки сообщения: {}", e.getMessage(), e);
 
-            channel.basicNack(deliveryTag, false, false);
-            LOGGER.info("Сообщение отправлено в очередь мертвых писем (DLX): delivery tag {}", deliveryTag);
+            retryRouter.handleFailure(amqpMessage, e, channel);
         }
     }
 }
@@ -1,59 +1,89 @@
 package com.royal.receiverService.service;
 
 import com.rabbitmq.client.Channel;
-import com.royal.receiverService.dto.Message;
-import com.royal.receiverService.exception.DeadLetterPersistenceException;
+import com.royal.receiverService.dto.DeadLetterMessage;
+import com.royal.receiverService.metrics.ConsumeMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
-import org.springframework.amqp.support.AmqpHeaders;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Компонент для обработки сообщений из очереди мертвых писем (DLX) в RabbitMQ.
+ * Сообщения принимаются пакетами в сыром виде и сохраняются без десериализации, поэтому в БД попадают
+ * и сообщения, которые не удалось прочитать в основной очереди.
  */
 @Component
 public class RabbitDLXConsumer {
     private static final Logger LOGGER = LoggerFactory.getLogger(RabbitDLXConsumer.class);
+
+    /**
+     * Идентификатор контейнера очереди мертвых писем.
+     */
+    public static final String DEAD_LETTER_LISTENER_ID = "deadLetterListener";
+
     private final DeadLetterService deadLetterService;
+    private final ConsumeMetrics consumeMetrics;
 
     /**
      * Конструктор для инициализации сервиса мертвых сообщений.
      *
      * @param deadLetterService Сервис для обработки мертвых писем.
+     * @param consumeMetrics    Метрики приема.
      */
     @Autowired
-    public RabbitDLXConsumer(DeadLetterService deadLetterService) {
+    public RabbitDLXConsumer(DeadLetterService deadLetterService, ConsumeMetrics consumeMetrics) {
         this.deadLetterService = deadLetterService;
+        this.consumeMetrics = consumeMetrics;
     }
 
     /**
-     * Обработчик сообщений из очереди мертвых писем (DLX).
+     * Обработчик пакета сообщений из очереди мертвых писем (DLX). Пакет сохраняется одним пакетным INSERT
+     * и подтверждается одним basicAck с multiple=true. Если пакет не удалось сохранить целиком, сообщения
+     * сохраняются по одному, а несохраненные отклоняются.
      *
-     * @param message     Полученное сообщение.
-     * @param channel     Канал для подтверждения обработки сообщения.
-     * @param deliveryTag Уникальный идентификатор доставки сообщения.
+     * @param amqpMessages Полученные сообщения.
+     * @param channel      Канал для подтверждения обработки сообщений.
      * @throws IOException если происходит ошибка при подтверждении или отклонении сообщения.
      */
-    @RabbitListener(queues = "${rabbitmq.dlx.queue.name}", ackMode = "MANUAL")
-    public void consumeDLX(Message message, Channel channel, @Header(AmqpHeaders.DELIVERY_TAG) long deliveryTag) throws IOException {
-        try {
-            LOGGER.error("Сообщение попало в DLX: {}", message.toString());
+    @RabbitListener(id = DEAD_LETTER_LISTENER_ID, queues = "${rabbitmq.dlx.queue.name}",
+            containerFactory = "deadLetterContainerFactory")
+    public void consumeDLX(List<Message> amqpMessages, Channel channel) throws IOException {
+        LOGGER.error("В DLX получено {} сообщений", amqpMessages.size());
 
-            deadLetterService.saveDeadLetter(message.toString(), "Ошибка обработки в основной очереди");
-
-            channel.basicAck(deliveryTag, false);
-            LOGGER.info("Мертвое письмо успешно обработано и подтверждено.");
-        } catch (DeadLetterPersistenceException e) {
-            LOGGER.error("Ошибка сохранения мертвого письма в БД: {}", e.getMessage(), e);
-            channel.basicNack(deliveryTag, false, false);
+        List<DeadLetterMessage> deadLetters = new ArrayList<>(amqpMessages.size());
+        for (Message amqpMessage : amqpMessages) {
+            deadLetters.add(deadLetterService.toDeadLetter(amqpMessage));
+        }
+        long lastTag = amqpMessages.get(amqpMessages.size() - 1).getMessageProperties().getDeliveryTag();
+        String queue = amqpMessages.get(0).getMessageProperties().getConsumerQueue();
+        try {
+            deadLetterService.saveDeadLetters(deadLetters);
+            channel.basicAck(lastTag, true);
+            consumeMetrics.recordOutcome(queue, ConsumeMetrics.ACK, amqpMessages.size());
+            LOGGER.info("Мертвые письма сохранены и подтверждены до delivery tag {}", lastTag);
+            return;
         } catch (Exception e) {
-            LOGGER.error("Неизвестная ошибка при обработке DLX: {}", e.getMessage(), e);
-            channel.basicNack(deliveryTag, false, true);
+            LOGGER.error("Ошибка пакетного сохранения мертвых писем, сохранение по одному: {}", e.getMessage());
+        }
+
+        for (int i = 0; i < amqpMessages.size(); i++) {
+            long deliveryTag = amqpMessages.get(i).getMessageProperties().getDeliveryTag();
+            try {
+                deadLetterService.saveDeadLetters(List.of(deadLetters.get(i)));
+                channel.basicAck(deliveryTag, false);
+                consumeMetrics.recordOutcome(queue, ConsumeMetrics.ACK, 1);
+            } catch (Exception e) {
+                LOGGER.error("Ошибка сохранения мертвого письма в БД: {}", e.getMessage(), e);
+                channel.basicNack(deliveryTag, false, false);
+                consumeMetrics.recordOutcome(queue, ConsumeMetrics.NACK, 1);
+            }
         }
     }
 }
@@ -0,0 +1,227 @@
+package com.royal.receiverService.service;
+
+import com.rabbitmq.client.Channel;
+import com.royal.receiverService.exception.MessageAlreadyExistsException;
+import com.royal.receiverService.exception.MessagePersistenceException;
+import com.royal.receiverService.metrics.ConsumeMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Компонент, определяющий судьбу сообщения, которое не удалось обработать.
+ * Дубликат ({@link MessageAlreadyExistsException}) подтверждается без обработки. Ошибка БД
+ * ({@link MessagePersistenceException}) считается временной: сообщение публикуется в очередь задержки
+ * очередного уровня (rabbitmq.retry.delays-ms), откуда по истечении TTL возвращается в основной обменник.
+ * Номер попытки передается в заголовке {@value #RETRY_ATTEMPT_HEADER}. Остальные ошибки и сообщения,
+ * исчерпавшие все уровни, отклоняются в DLX.
+ */
+@Component
+public class RetryRouter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RetryRouter.class);
+
+    /**
+     * Заголовок с числом уже выполненных повторных попыток.
+     */
+    public static final String RETRY_ATTEMPT_HEADER = "x-retry-attempt";
+
+    /**
+     * Решение по сообщению, которое не удалось обработать.
+     */
+    public enum Decision {
+        /**
+         * Подтвердить: сообщение уже обработано.
+         */
+        ACK,
+        /**
+         * Отправить в очередь задержки для повторной попытки.
+         */
+        RETRY,
+        /**
+         * Отклонить в DLX.
+         */
+        DEAD_LETTER
+    }
+
+    @Value("${rabbitmq.retry.enabled}")
+    private boolean enabled;
+
+    @Value("${rabbitmq.retry.exchange.name}")
+    private String retryExchange;
+
+    @Value("${rabbitmq.retry.queue.prefix}")
+    private String retryQueuePrefix;
+
+    @Value("${rabbitmq.retry.delays-ms}")
+    private long[] delaysMs;
+
+    @Value("${rabbitmq.retry.confirm-timeout-ms}")
+    private long confirmTimeoutMs;
+
+    private final RabbitTemplate rabbitTemplate;
+    private final ConsumeMetrics consumeMetrics;
+
+    /**
+     * Конструктор компонента повторных попыток.
+     *
+     * @param rabbitTemplate шаблон для публикации в очереди задержки.
+     * @param consumeMetrics метрики приема.
+     */
+    @Autowired
+    public RetryRouter(RabbitTemplate rabbitTemplate, ConsumeMetrics consumeMetrics) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.consumeMetrics = consumeMetrics;
+    }
+
+    /**
+     * Возвращает имя очереди задержки: задержка входит в имя, потому что TTL существующей очереди изменить нельзя.
+     *
+     * @param prefix  префикс очередей задержки.
+     * @param delayMs задержка уровня.
+     * @return имя очереди, оно же ключ маршрутизации в обменнике повторных попыток.
+     */
+    public static String queueName(String prefix, long delayMs) {
+        return prefix + delayMs + "ms";
+    }
+
+    /**
+     * Определяет, что делать с сообщением по классу ошибки и числу выполненных попыток.
+     *
+     * @param amqpMessage сообщение.
+     * @param error       ошибка обработки.
+     * @return решение.
+     */
+    public Decision decide(Message amqpMessage, Throwable error) {
+        if (hasCause(error, MessageAlreadyExistsException.class)) {
+            return Decision.ACK;
+        }
+        if (enabled && hasCause(error, MessagePersistenceException.class) && attempt(amqpMessage) < delaysMs.length) {
+            return Decision.RETRY;
+        }
+        return Decision.DEAD_LETTER;
+    }
+
+    /**
+     * Публикует сообщение в очередь задержки следующего уровня и ждет подтверждения брокера.
+     *
+     * @param amqpMessage сообщение.
+     * @return true, если брокер подтвердил публикацию и исходное сообщение можно подтверждать.
+     */
+    public boolean publishRetry(Message amqpMessage) {
+        return publishRetries(List.of(amqpMessage)).get(0);
+    }
+
+    /**
+     * Публикует сообщения в очереди задержки следующего уровня и ждет подтверждений брокера. Сначала отправляются
+     * все сообщения, затем подтверждения ожидаются с общим сроком rabbitmq.retry.confirm-timeout-ms, поэтому
+     * ожидание не растет с числом сообщений.
+     *
+     * @param amqpMessages сообщения.
+     * @return признаки подтверждения публикации в порядке сообщений.
+     */
+    public List<Boolean> publishRetries(List<Message> amqpMessages) {
+        List<CorrelationData> sent = new ArrayList<>(amqpMessages.size());
+        for (Message amqpMessage : amqpMessages) {
+            sent.add(send(amqpMessage));
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(confirmTimeoutMs);
+        List<Boolean> published = new ArrayList<>(amqpMessages.size());
+        for (int i = 0; i < amqpMessages.size(); i++) {
+            published.add(sent.get(i) != null && awaitConfirm(amqpMessages.get(i), sent.get(i), deadline));
+        }
+        return published;
+    }
+
+    /**
+     * Отправляет сообщение в очередь задержки следующего уровня, не дожидаясь подтверждения.
+     *
+     * @return данные корреляции для ожидания подтверждения или null, если отправить не удалось.
+     */
+    private CorrelationData send(Message amqpMessage) {
+        int attempt = attempt(amqpMessage);
+        amqpMessage.getMessageProperties().setHeader(RETRY_ATTEMPT_HEADER, attempt + 1);
+        CorrelationData correlationData = new CorrelationData();
+        try {
+            rabbitTemplate.send(retryExchange, queueName(retryQueuePrefix, delaysMs[attempt]), amqpMessage, correlationData);
+            return correlationData;
+        } catch (Exception e) {
+            LOGGER.error("Не удалось отправить сообщение в очередь задержки: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Ждет подтверждения публикации в очередь задержки до срока {@code deadline} по {@link System#nanoTime()}.
+     */
+    private boolean awaitConfirm(Message amqpMessage, CorrelationData correlationData, long deadline) {
+        int attempt = attempt(amqpMessage);
+        try {
+            CorrelationData.Confirm confirm = correlationData.getFuture()
+                    .get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            if (confirm.isAck() && correlationData.getReturned() == null) {
+                consumeMetrics.recordRetry(attempt);
+                LOGGER.info("Сообщение отправлено на повторную попытку {} из {} через {} мс",
+                        attempt, delaysMs.length, delaysMs[attempt - 1]);
+                return true;
+            }
+            LOGGER.error("Брокер не принял сообщение в очередь задержки: {}", confirm.getReason());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            LOGGER.error("Не удалось отправить сообщение в очередь задержки: {}", e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Обрабатывает ошибку сообщения, полученного с ручным подтверждением: подтверждает, отправляет на повторную
+     * попытку или отклоняет в DLX. Если очередь задержки не подтвердила публикацию, сообщение отклоняется в DLX.
+     *
+     * @param amqpMessage сообщение.
+     * @param error       ошибка обработки.
+     * @param channel     канал для подтверждения.
+     * @throws IOException если происходит ошибка при подтверждении или отклонении сообщения.
+     */
+    public void handleFailure(Message amqpMessage, Throwable error, Channel channel) throws IOException {
+        long deliveryTag = amqpMessage.getMessageProperties().getDeliveryTag();
+        String queue = amqpMessage.getMessageProperties().getConsumerQueue();
+        Decision decision = decide(amqpMessage, error);
+        if (decision == Decision.ACK) {
+            channel.basicAck(deliveryTag, false);
+            consumeMetrics.recordOutcome(queue, ConsumeMetrics.ACK, 1);
+            LOGGER.info("Дубликат подтвержден без обработки: delivery tag {}", deliveryTag);
+        } else if (decision == Decision.RETRY && publishRetry(amqpMessage)) {
+            channel.basicAck(deliveryTag, false);
+            consumeMetrics.recordOutcome(queue, ConsumeMetrics.ACK, 1);
+        } else {
+            channel.basicNack(deliveryTag, false, false);
+            consumeMetrics.recordOutcome(queue, ConsumeMetrics.NACK, 1);
+            LOGGER.info("Сообщение отправлено в очередь мертвых писем (DLX): delivery tag {}", deliveryTag);
+        }
+    }
+
+    private static int attempt(Message amqpMessage) {
+        Object attempt = amqpMessage.getMessageProperties().getHeader(RETRY_ATTEMPT_HEADER);
+        return attempt instanceof Number number ? number.intValue() : 0;
+    }
+
+    private static boolean hasCause(Throwable error, Class<? extends Throwable> type) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (type.isInstance(cause)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,349 @@
+package com.royal.receiverService.stats;
+
+import com.royal.receiverService.dto.Message;
+import com.royal.receiverService.dto.PriceStats;
+import com.royal.receiverService.dto.PriceStatsReport;
+import com.royal.receiverService.repository.MessageRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Инкрементально обновляемая статистика цены сохраненных сообщений по минутам и часам.
+ * Для каждого окна хранится кольцевой буфер корзин времени (stats.minute-buckets минут и stats.hour-buckets часов):
+ * число, сумма, минимум, максимум и скетч квантилей {@link QuantileSketch}. Сообщение учитывается в корзине
+ * по своей временной метке; корзина, вышедшая из окна, переиспользуется. Отчет строится слиянием корзин окна,
+ * поэтому его стоимость зависит от числа корзин, а не от размера таблицы.
+ *
+ * <p>Чтобы потребители не ждали друг друга, корзины разбиты на stats.stripes независимых полос со своими
+ * блокировками: поток записывает в полосу по своему идентификатору, а отчет сливает одноименные корзины всех полос.
+ *
+ * <p>После готовности приложения корзины в фоновом потоке восстанавливаются из таблицы messages за последние
+ * stats.hour-buckets часов. Потребители к этому моменту уже работают, поэтому сообщения, учтенные при сохранении
+ * во время восстановления, при чтении таблицы пропускаются по id.
+ */
+@Component
+public class PriceStatistics {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PriceStatistics.class);
+
+    /**
+     * Окно по минутам.
+     */
+    public static final String MINUTE_WINDOW = "minute";
+
+    /**
+     * Окно по часам.
+     */
+    public static final String HOUR_WINDOW = "hour";
+
+    @Value("${stats.enabled}")
+    private boolean enabled;
+
+    @Value("${stats.minute-buckets}")
+    private int minuteBuckets;
+
+    @Value("${stats.hour-buckets}")
+    private int hourBuckets;
+
+    @Value("${stats.stripes}")
+    private int stripeCount;
+
+    @Value("${stats.relative-accuracy}")
+    private double relativeAccuracy;
+
+    @Value("${stats.rebuild-on-startup}")
+    private boolean rebuildOnStartup;
+
+    @Value("${messages.stream.fetch-size}")
+    private int fetchSize;
+
+    private final MessageRepository messageRepository;
+
+    private Stripe[] stripes;
+
+    /**
+     * Идентификаторы сообщений, учтенных при сохранении во время восстановления; null вне восстановления.
+     */
+    private volatile Set<Long> recordedDuringRebuild;
+
+    /**
+     * Конструктор статистики.
+     *
+     * @param messageRepository репозиторий сообщений для восстановления статистики при старте.
+     */
+    @Autowired
+    public PriceStatistics(MessageRepository messageRepository) {
+        this.messageRepository = messageRepository;
+    }
+
+    /**
+     * Создает корзины. Если включено восстановление, с этого момента запоминает id учтенных сообщений.
+     */
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            LOGGER.info("Статистика цены сообщений отключена");
+            return;
+        }
+        stripes = new Stripe[Math.max(1, stripeCount)];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+        if (rebuildOnStartup) {
+            recordedDuringRebuild = ConcurrentHashMap.newKeySet();
+        }
+    }
+
+    /**
+     * Запускает восстановление корзин из таблицы messages в фоновом потоке, не задерживая готовность приложения.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildAsync() {
+        if (enabled && rebuildOnStartup) {
+            Thread.ofPlatform().name("price-stats-rebuild").daemon(true).start(this::rebuild);
+        }
+    }
+
+    private void rebuild() {
+        Set<Long> recorded = recordedDuringRebuild;
+        long since = stripes[0].hours.oldestStart(System.currentTimeMillis());
+        try {
+            long start = System.nanoTime();
+            long[] restored = new long[1];
+            messageRepository.streamSince(new Timestamp(since), fetchSize, message -> {
+                if (!recorded.contains(message.getId())) {
+                    add(message);
+                    restored[0]++;
+                }
+            });
+            LOGGER.info("Статистика цены восстановлена по {} сообщениям за {} мс", restored[0],
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (Exception e) {
+            LOGGER.warn("Не удалось восстановить статистику цены из базы данных: {}", e.getMessage());
+        } finally {
+            recordedDuringRebuild = null;
+        }
+    }
+
+    /**
+     * Проверяет, включена ли статистика.
+     *
+     * @return true, если статистика собирается.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Учитывает сохраненное сообщение. Сообщения старше окна пропускаются.
+     *
+     * @param message сохраненное сообщение.
+     */
+    public void record(Message message) {
+        if (!enabled) {
+            return;
+        }
+        Set<Long> recorded = recordedDuringRebuild;
+        if (recorded != null && message.getId() != null) {
+            recorded.add(message.getId());
+        }
+        add(message);
+    }
+
+    private void add(Message message) {
+        double price = message.getPrice();
+        if (!Double.isFinite(price)) {
+            LOGGER.debug("Сообщение с id {} и ценой {} не учтено в статистике", message.getId(), price);
+            return;
+        }
+        long timestamp = message.getTimestamp() == null ? System.currentTimeMillis() : message.getTimestamp().getTime();
+        Stripe stripe = stripes[(int) Math.floorMod(Thread.currentThread().threadId(), (long) stripes.length)];
+        stripe.lock.lock();
+        try {
+            stripe.minutes.record(timestamp, price);
+            stripe.hours.record(timestamp, price);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Строит отчет по окну.
+     *
+     * @param window    окно: {@value #MINUTE_WINDOW} или {@value #HOUR_WINDOW}.
+     * @param quantiles уровни квантилей от 0 до 1.
+     * @return агрегаты по непустым корзинам окна в порядке времени и итог за окно.
+     */
+    public PriceStatsReport report(String window, double[] quantiles) {
+        boolean hourly = HOUR_WINDOW.equals(window);
+        long now = System.currentTimeMillis();
+        long bucketMillis = stripes[0].window(hourly).bucketMillis;
+        long oldestStart = stripes[0].window(hourly).oldestStart(now);
+        Map<Long, Bucket> merged = new TreeMap<>();
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                for (Bucket bucket : stripe.window(hourly).current(now)) {
+                    merged.computeIfAbsent(bucket.key, key -> new Bucket(new QuantileSketch(relativeAccuracy), key))
+                            .merge(bucket);
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        Bucket total = new Bucket(new QuantileSketch(relativeAccuracy), Long.MIN_VALUE);
+        List<PriceStats> buckets = new ArrayList<>(merged.size());
+        for (Bucket bucket : merged.values()) {
+            buckets.add(bucket.toStats(bucketMillis, quantiles));
+            total.merge(bucket);
+        }
+        PriceStats totalStats = total.count == 0
+                ? new PriceStats(Instant.ofEpochMilli(oldestStart), 0, 0, 0, 0, Map.of())
+                : new PriceStats(Instant.ofEpochMilli(oldestStart), total.count, total.sum, total.min, total.max,
+                quantiles(total.sketch, quantiles, total.min, total.max));
+        return new PriceStatsReport(hourly ? HOUR_WINDOW : MINUTE_WINDOW, buckets, totalStats);
+    }
+
+    private static Map<String, Double> quantiles(QuantileSketch sketch, double[] levels, double min, double max) {
+        Map<String, Double> result = new LinkedHashMap<>();
+        for (double level : levels) {
+            // Оценка скетча может немного выйти за точные границы корзины.
+            result.put(String.valueOf(level), Math.clamp(sketch.quantile(level), min, max));
+        }
+        return result;
+    }
+
+    /**
+     * Полоса корзин минутного и часового окон со своей блокировкой.
+     */
+    private final class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Window minutes = new Window(TimeUnit.MINUTES.toMillis(1), minuteBuckets);
+        private final Window hours = new Window(TimeUnit.HOURS.toMillis(1), hourBuckets);
+
+        private Window window(boolean hourly) {
+            return hourly ? hours : minutes;
+        }
+    }
+
+    /**
+     * Кольцевой буфер корзин времени одного размера.
+     */
+    private final class Window {
+        private final long bucketMillis;
+        private final Bucket[] ring;
+
+        private Window(long bucketMillis, int size) {
+            this.bucketMillis = bucketMillis;
+            this.ring = new Bucket[size];
+            for (int i = 0; i < size; i++) {
+                ring[i] = new Bucket(new QuantileSketch(relativeAccuracy));
+            }
+        }
+
+        private void record(long timestamp, double price) {
+            long key = Math.floorDiv(timestamp, bucketMillis);
+            Bucket bucket = ring[(int) Math.floorMod(key, (long) ring.length)];
+            if (bucket.key != key) {
+                if (key < bucket.key) {
+                    // Корзина уже занята более новым интервалом: сообщение вне окна.
+                    return;
+                }
+                bucket.reset(key);
+            }
+            bucket.add(price);
+        }
+
+        private List<Bucket> current(long now) {
+            long newest = Math.floorDiv(now, bucketMillis);
+            List<Bucket> buckets = new ArrayList<>();
+            for (Bucket bucket : ring) {
+                if (bucket.count > 0 && bucket.key > newest - ring.length && bucket.key <= newest) {
+                    buckets.add(bucket);
+                }
+            }
+            return buckets;
+        }
+
+        private long oldestStart(long now) {
+            return (Math.floorDiv(now, bucketMillis) - ring.length + 1) * bucketMillis;
+        }
+    }
+
+    /**
+     * Агрегаты одного интервала времени.
+     */
+    private static final class Bucket {
+        private final QuantileSketch sketch;
+        private long key = Long.MIN_VALUE;
+        private long count;
+        private double sum;
+        private double min;
+        private double max;
+
+        private Bucket(QuantileSketch sketch) {
+            this.sketch = sketch;
+        }
+
+        private Bucket(QuantileSketch sketch, long key) {
+            this.sketch = sketch;
+            this.key = key;
+        }
+
+        private void reset(long newKey) {
+            key = newKey;
+            count = 0;
+            sum = 0;
+            sketch.clear();
+        }
+
+        private void add(double price) {
+            if (count == 0) {
+                min = price;
+                max = price;
+            } else {
+                min = Math.min(min, price);
+                max = Math.max(max, price);
+            }
+            count++;
+            sum += price;
+            sketch.add(price);
+        }
+
+        private void merge(Bucket other) {
+            if (count == 0) {
+                min = other.min;
+                max = other.max;
+            } else {
+                min = Math.min(min, other.min);
+                max = Math.max(max, other.max);
+            }
+            count += other.count;
+            sum += other.sum;
+            sketch.merge(other.sketch);
+        }
+
+        private PriceStats toStats(long bucketMillis, double[] levels) {
+            return new PriceStats(Instant.ofEpochMilli(key * bucketMillis), count, sum, min, max,
+                    quantiles(sketch, levels, min, max));
+        }
+    }
+}
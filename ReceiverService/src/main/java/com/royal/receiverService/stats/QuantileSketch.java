@@ -0,0 +1,185 @@
+package com.royal.receiverService.stats;
+
+import java.util.Arrays;
+
+/**
+ * Объединяемый скетч для оценки квантилей с заданной относительной точностью.
+ * Значения раскладываются по модулю в логарифмические корзины с основанием
+ * gamma = (1 + α) / (1 - α): модуль v попадает в корзину ceil(log_gamma(v)), а квантиль оценивается серединой
+ * корзины с относительной ошибкой не больше α. Положительные и отрицательные значения хранятся в отдельных
+ * наборах корзин. Два скетча с одной точностью объединяются сложением счетчиков, поэтому квантили за окно
+ * считаются слиянием скетчей корзин времени без хранения самих значений.
+ * Значения с модулем не больше {@value #MIN_MAGNITUDE} учитываются в отдельном счетчике и оцениваются нулем.
+ * Не потокобезопасен.
+ */
+public final class QuantileSketch {
+
+    private static final double MIN_MAGNITUDE = 1e-9;
+    private static final int INITIAL_BINS = 64;
+
+    private final double relativeAccuracy;
+    private final double gamma;
+    private final double logGamma;
+
+    private final Store positive = new Store();
+    private final Store negative = new Store();
+    private long zeroCount;
+    private long count;
+
+    /**
+     * Создает пустой скетч.
+     *
+     * @param relativeAccuracy относительная точность α, от 0 до 1.
+     */
+    public QuantileSketch(double relativeAccuracy) {
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1) {
+            throw new IllegalArgumentException("Относительная точность должна быть в интервале (0, 1): " + relativeAccuracy);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+    }
+
+    /**
+     * Добавляет значение.
+     *
+     * @param value конечное значение.
+     * @throws IllegalArgumentException если значение NaN или бесконечно.
+     */
+    public void add(double value) {
+        if (!Double.isFinite(value)) {
+            throw new IllegalArgumentException("Значение должно быть конечным: " + value);
+        }
+        count++;
+        if (Math.abs(value) <= MIN_MAGNITUDE) {
+            zeroCount++;
+        } else if (value > 0) {
+            positive.increment(index(value), 1);
+        } else {
+            negative.increment(index(-value), 1);
+        }
+    }
+
+    /**
+     * Добавляет в скетч все значения другого скетча с той же точностью.
+     *
+     * @param other другой скетч.
+     */
+    public void merge(QuantileSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("Нельзя объединить скетчи с разной точностью");
+        }
+        count += other.count;
+        zeroCount += other.zeroCount;
+        positive.merge(other.positive);
+        negative.merge(other.negative);
+    }
+
+    /**
+     * Оценивает квантиль.
+     *
+     * @param quantile уровень квантиля от 0 до 1.
+     * @return оценка квантиля или NaN для пустого скетча.
+     */
+    public double quantile(double quantile) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) (quantile * (count - 1));
+        long negativeCount = count - zeroCount - positive.total();
+        if (rank < negativeCount) {
+            // Отрицательные значения идут по убыванию модуля: ранг отсчитывается с конца их корзин.
+            return -value(negative.indexAtRank(negativeCount - 1 - rank));
+        }
+        rank -= negativeCount;
+        if (rank < zeroCount) {
+            return 0;
+        }
+        return value(positive.indexAtRank(rank - zeroCount));
+    }
+
+    /**
+     * Возвращает число добавленных значений.
+     *
+     * @return число значений.
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * Удаляет все значения, сохраняя выделенную память.
+     */
+    public void clear() {
+        positive.clear();
+        negative.clear();
+        zeroCount = 0;
+        count = 0;
+    }
+
+    private int index(double magnitude) {
+        return (int) Math.ceil(Math.log(magnitude) / logGamma);
+    }
+
+    private double value(int index) {
+        return 2 * Math.pow(gamma, index) / (gamma + 1);
+    }
+
+    /**
+     * Счетчики корзин одного знака: массив, растущий в обе стороны от первой занятой корзины.
+     */
+    private static final class Store {
+        private long[] bins = new long[0];
+        private int offset;
+        private long total;
+
+        private void increment(int index, long delta) {
+            if (bins.length == 0) {
+                bins = new long[INITIAL_BINS];
+                offset = index - INITIAL_BINS / 2;
+            } else if (index < offset || index >= offset + bins.length) {
+                int low = Math.min(index, offset);
+                int high = Math.max(index, offset + bins.length - 1);
+                int size = Math.max(bins.length * 2, high - low + 1);
+                int newOffset = index < offset ? high - size + 1 : low;
+                long[] grown = new long[size];
+                System.arraycopy(bins, 0, grown, offset - newOffset, bins.length);
+                bins = grown;
+                offset = newOffset;
+            }
+            bins[index - offset] += delta;
+            total += delta;
+        }
+
+        private void merge(Store other) {
+            for (int i = 0; i < other.bins.length; i++) {
+                if (other.bins[i] != 0) {
+                    increment(other.offset + i, other.bins[i]);
+                }
+            }
+        }
+
+        /**
+         * Возвращает корзину, в которую попадает значение с рангом {@code rank} по возрастанию, начиная с нуля.
+         */
+        private int indexAtRank(long rank) {
+            long seen = 0;
+            for (int i = 0; i < bins.length; i++) {
+                seen += bins[i];
+                if (seen > rank) {
+                    return offset + i;
+                }
+            }
+            return offset + bins.length - 1;
+        }
+
+        private long total() {
+            return total;
+        }
+
+        private void clear() {
+            Arrays.fill(bins, 0);
+            total = 0;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.royal.receiverService.writebehind;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Ограниченный кольцевой буфер без блокировок для нескольких производителей и одного потребителя.
+ * Каждой ячейке соответствует номер последовательности: производитель занимает позицию CAS-ом хвоста,
+ * записывает элемент и публикует ячейку номером позиция + 1, потребитель забирает элемент и освобождает ячейку
+ * номером позиция + емкость. Емкость округляется вверх до степени двойки. Забирать элементы
+ * ({@link #drainTo(List, int)}) может только один поток.
+ *
+ * @param <E> тип элементов.
+ */
+public final class MpscRingBuffer<E> {
+
+    private final Object[] elements;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    /**
+     * Создает пустой буфер.
+     *
+     * @param capacity минимальная емкость; округляется вверх до степени двойки.
+     */
+    public MpscRingBuffer(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Емкость буфера должна быть от 1 до 2^30: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+        this.elements = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Добавляет элемент, если в буфере есть место. Может вызываться из любого потока.
+     *
+     * @param element элемент.
+     * @return false, если буфер заполнен.
+     */
+    public boolean offer(E element) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long diff = sequences.getAcquire(index) - position;
+            if (diff == 0) {
+                if (tail.weakCompareAndSetVolatile(position, position + 1)) {
+                    elements[index] = element;
+                    sequences.setRelease(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Забирает опубликованные элементы в порядке добавления. Вызывается только потоком-потребителем.
+     *
+     * @param sink        список, в который добавляются элементы.
+     * @param maxElements наибольшее число элементов.
+     * @return число забранных элементов.
+     */
+    @SuppressWarnings("unchecked")
+    public int drainTo(List<? super E> sink, int maxElements) {
+        long position = head;
+        int drained = 0;
+        while (drained < maxElements) {
+            int index = (int) position & mask;
+            if (sequences.getAcquire(index) != position + 1) {
+                break;
+            }
+            sink.add((E) elements[index]);
+            elements[index] = null;
+            sequences.setRelease(index, position + elements.length);
+            position++;
+            drained++;
+        }
+        head = position;
+        return drained;
+    }
+
+    /**
+     * Возвращает приблизительное число элементов в буфере.
+     *
+     * @return число занятых позиций, включая еще не опубликованные.
+     */
+    public int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    /**
+     * Возвращает емкость буфера.
+     *
+     * @return емкость.
+     */
+    public int capacity() {
+        return elements.length;
+    }
+}
@@ -0,0 +1,318 @@
+package com.royal.receiverService.writebehind;
+
+import com.rabbitmq.client.Channel;
+import com.royal.receiverService.dto.Message;
+import com.royal.receiverService.metrics.ConsumeMetrics;
+import com.royal.receiverService.service.ConsumerAutoscaler;
+import com.royal.receiverService.service.MessageService;
+import com.royal.receiverService.service.RetryRouter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Отложенная запись сообщений с групповой фиксацией (rabbitmq.consumer.write-behind.enabled=true).
+ * Потребитель кладет полученное сообщение в кольцевой буфер {@link MpscRingBuffer} и сразу берет следующее.
+ * Отдельный поток забирает накопленные сообщения, пока их не станет rabbitmq.consumer.write-behind.batch-size
+ * или пока старейшее не прождет rabbitmq.consumer.write-behind.max-delay-ms, сохраняет их одной транзакцией
+ * и только после фиксации подтверждает доставки: по каждому каналу одним basicAck с multiple=true по наибольшему
+ * delivery tag. Сообщения одного канала попадают в буфер в порядке доставки, поэтому все меньшие delivery tag
+ * канала к этому моменту уже обработаны. Если пакет не сохранился, сообщения сохраняются по одному, а ошибочные
+ * передаются в {@link RetryRouter} одной публикацией с общим ожиданием подтверждений и отклоняются
+ * до подтверждения пакета. Заполненный буфер останавливает
+ * потребителя до освобождения места. Метрики: {@code messages.write_behind.pending} — сообщения в буфере,
+ * {@code messages.write_behind.batch.size} — размер фиксируемых пакетов; время работы потока фиксации
+ * публикуется как {@code rabbitmq.listener.duration} с тегом {@code listener=}{@value #FLUSHER_LISTENER_ID}
+ * вместе с {@code rabbitmq.listener.consumers} (один поток), чтобы загрузка слушателей учитывала сохранение.
+ *
+ * <p>Несовместим с автоподбором потребителей ({@link ConsumerAutoscaler}): слушатель только передает сообщение
+ * в буфер, и его время не отражает стоимость сохранения, а пропускную способность ограничивает один поток
+ * фиксации, которому дополнительные потребители не помогают. При включении обоих приложение не запускается.
+ */
+@Component
+@ConditionalOnProperty(name = "rabbitmq.consumer.write-behind.enabled", havingValue = "true")
+public class WriteBehindPipeline {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteBehindPipeline.class);
+
+    /**
+     * Значение тега {@code listener} метрик потока групповой фиксации.
+     */
+    public static final String FLUSHER_LISTENER_ID = "writeBehindFlusher";
+
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    @Value("${rabbitmq.consumer.write-behind.capacity}")
+    private int capacity;
+
+    @Value("${rabbitmq.consumer.write-behind.batch-size}")
+    private int batchSize;
+
+    @Value("${rabbitmq.consumer.write-behind.max-delay-ms}")
+    private long maxDelayMs;
+
+    private final MessageService messageService;
+    private final RetryRouter retryRouter;
+    private final ConsumeMetrics consumeMetrics;
+    private final MeterRegistry meterRegistry;
+    private final ObjectProvider<ConsumerAutoscaler> autoscaler;
+
+    private MpscRingBuffer<Pending> buffer;
+    private DistributionSummary batchSizes;
+    private Timer flushDuration;
+    private volatile boolean running;
+    private Thread flusher;
+
+    /**
+     * Конструктор конвейера отложенной записи.
+     *
+     * @param messageService сервис для сохранения сообщений.
+     * @param retryRouter    компонент повторных попыток для сообщений, которые не удалось сохранить.
+     * @param consumeMetrics метрики приема.
+     * @param meterRegistry  реестр метрик.
+     * @param autoscaler     сервис автоподбора потребителей, если включен; с ним конвейер не запускается.
+     */
+    @Autowired
+    public WriteBehindPipeline(MessageService messageService, RetryRouter retryRouter, ConsumeMetrics consumeMetrics,
+                               MeterRegistry meterRegistry, ObjectProvider<ConsumerAutoscaler> autoscaler) {
+        this.messageService = messageService;
+        this.retryRouter = retryRouter;
+        this.consumeMetrics = consumeMetrics;
+        this.meterRegistry = meterRegistry;
+        this.autoscaler = autoscaler;
+    }
+
+    /**
+     * Создает буфер и запускает поток групповой фиксации.
+     */
+    @PostConstruct
+    public void start() {
+        if (autoscaler.getIfAvailable() != null) {
+            throw new IllegalStateException("Отложенная запись (rabbitmq.consumer.write-behind.enabled) несовместима "
+                    + "с автоподбором потребителей (rabbitmq.consumer.autoscale.enabled)");
+        }
+        buffer = new MpscRingBuffer<>(capacity);
+        Gauge.builder("messages.write_behind.pending", buffer, MpscRingBuffer::size)
+                .description("Сообщения, ожидающие групповой фиксации")
+                .register(meterRegistry);
+        batchSizes = DistributionSummary.builder("messages.write_behind.batch.size")
+                .description("Число сообщений в групповой фиксации")
+                .register(meterRegistry);
+        flushDuration = consumeMetrics.listenerTimer(FLUSHER_LISTENER_ID);
+        Gauge.builder("rabbitmq.listener.consumers", this,
+                        pipeline -> pipeline.flusher != null && pipeline.flusher.isAlive() ? 1 : 0)
+                .description("Активные потребители контейнера слушателя")
+                .tag("listener", FLUSHER_LISTENER_ID)
+                .register(meterRegistry);
+        running = true;
+        flusher = Thread.ofPlatform().name("write-behind-flusher").daemon(true).start(this::flushLoop);
+        LOGGER.info("Отложенная запись сообщений включена: буфер {}, пакет до {} сообщений, ожидание до {} мс",
+                buffer.capacity(), batchSize, maxDelayMs);
+    }
+
+    /**
+     * Останавливает поток после сохранения уже принятых сообщений. Доставки, которые не удалось подтвердить
+     * из-за закрытого канала, брокер доставит повторно, и они будут распознаны как дубликаты.
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Передает сообщение на сохранение. Если буфер заполнен, ждет освобождения места.
+     *
+     * @param message     прочитанное сообщение.
+     * @param amqpMessage исходное сообщение с delivery tag.
+     * @param channel     канал, по которому сообщение получено и будет подтверждено.
+     * @return false, если конвейер остановлен и сообщение нужно обработать синхронно.
+     */
+    public boolean submit(Message message, org.springframework.amqp.core.Message amqpMessage, Channel channel) {
+        Pending pending = new Pending(message, amqpMessage, channel, System.nanoTime());
+        while (!buffer.offer(pending)) {
+            if (!running) {
+                return false;
+            }
+            LockSupport.unpark(flusher);
+            LockSupport.parkNanos(FULL_PARK_NANOS);
+        }
+        if (buffer.size() >= batchSize) {
+            LockSupport.unpark(flusher);
+        }
+        return true;
+    }
+
+    private void flushLoop() {
+        long maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (running || buffer.size() > 0 || !batch.isEmpty()) {
+            buffer.drainTo(batch, batchSize - batch.size());
+            if (batch.isEmpty()) {
+                LockSupport.parkNanos(maxDelayNanos);
+                continue;
+            }
+            long waitNanos = batch.get(0).enqueuedNanos() + maxDelayNanos - System.nanoTime();
+            if (batch.size() < batchSize && waitNanos > 0 && running) {
+                LockSupport.parkNanos(waitNanos);
+                continue;
+            }
+            long start = System.nanoTime();
+            try {
+                flush(batch);
+            } catch (Exception e) {
+                LOGGER.error("Ошибка групповой фиксации пакета из {} сообщений: {}", batch.size(), e.getMessage(), e);
+                requeue(batch);
+            }
+            flushDuration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Сохраняет пакет одной транзакцией и подтверждает доставки. Если пакет целиком не сохранился,
+     * сообщения сохраняются по одному.
+     *
+     * @param batch сообщения в порядке поступления.
+     */
+    private void flush(List<Pending> batch) {
+        batchSizes.record(batch.size());
+        Set<Pending> failed = Collections.newSetFromMap(new IdentityHashMap<>());
+        try {
+            List<Message> duplicates = messageService.saveMessages(batch.stream().map(Pending::message).toList());
+            if (!duplicates.isEmpty()) {
+                LOGGER.warn("Дубликатов в пакете: {}, подтверждаются без сохранения", duplicates.size());
+            }
+        } catch (Exception e) {
+            LOGGER.error("Ошибка групповой фиксации, сохранение по одному сообщению: {}", e.getMessage());
+            List<Pending> retries = new ArrayList<>();
+            for (Pending pending : batch) {
+                try {
+                    messageService.saveMessage(pending.message());
+                } catch (Exception itemError) {
+                    LOGGER.error("Ошибка обработки сообщения: {}", itemError.getMessage());
+                    RetryRouter.Decision decision = retryRouter.decide(pending.amqpMessage(), itemError);
+                    if (decision == RetryRouter.Decision.DEAD_LETTER) {
+                        failed.add(pending);
+                    } else if (decision == RetryRouter.Decision.RETRY) {
+                        retries.add(pending);
+                    }
+                }
+            }
+            if (!retries.isEmpty()) {
+                List<Boolean> published = retryRouter.publishRetries(retries.stream().map(Pending::amqpMessage).toList());
+                for (int i = 0; i < retries.size(); i++) {
+                    if (!published.get(i)) {
+                        failed.add(retries.get(i));
+                    }
+                }
+            }
+        }
+        settle(batch, failed);
+    }
+
+    /**
+     * Отклоняет ошибочные доставки в DLX, затем подтверждает остальные одним basicAck с multiple=true на канал.
+     *
+     * @param batch  сообщения пакета.
+     * @param failed сообщения, которые нужно отклонить.
+     */
+    private void settle(List<Pending> batch, Set<Pending> failed) {
+        Map<Channel, ChannelAck> acks = new IdentityHashMap<>();
+        for (Pending pending : batch) {
+            long deliveryTag = pending.amqpMessage().getMessageProperties().getDeliveryTag();
+            String queue = pending.amqpMessage().getMessageProperties().getConsumerQueue();
+            if (!failed.contains(pending)) {
+                acks.computeIfAbsent(pending.channel(), channel -> new ChannelAck(queue)).add(deliveryTag);
+                continue;
+            }
+            try {
+                pending.channel().basicNack(deliveryTag, false, false);
+                consumeMetrics.recordOutcome(queue, ConsumeMetrics.NACK, 1);
+                LOGGER.info("Сообщение отправлено в очередь мертвых писем (DLX): delivery tag {}", deliveryTag);
+            } catch (Exception e) {
+                LOGGER.error("Не удалось отклонить сообщение: delivery tag {}: {}", deliveryTag, e.getMessage());
+            }
+        }
+        acks.forEach((channel, ack) -> {
+            try {
+                channel.basicAck(ack.lastTag, true);
+                consumeMetrics.recordOutcome(ack.queue, ConsumeMetrics.ACK, ack.count);
+                LOGGER.info("Пакет подтвержден до delivery tag {}", ack.lastTag);
+            } catch (Exception e) {
+                LOGGER.error("Не удалось подтвердить пакет до delivery tag {}: {}", ack.lastTag, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Возвращает доставки пакета в очередь, чтобы следующее подтверждение с multiple=true их не захватило.
+     *
+     * @param batch сообщения пакета.
+     */
+    private void requeue(List<Pending> batch) {
+        for (Pending pending : batch) {
+            try {
+                pending.channel().basicNack(pending.amqpMessage().getMessageProperties().getDeliveryTag(), false, true);
+                consumeMetrics.recordOutcome(pending.amqpMessage().getMessageProperties().getConsumerQueue(),
+                        ConsumeMetrics.REQUEUE, 1);
+            } catch (Exception e) {
+                LOGGER.error("Не удалось вернуть сообщение в очередь: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Подтверждения одного канала в пакете.
+     */
+    private static final class ChannelAck {
+        private final String queue;
+        private long lastTag;
+        private int count;
+
+        private ChannelAck(String queue) {
+            this.queue = queue;
+        }
+
+        private void add(long deliveryTag) {
+            lastTag = Math.max(lastTag, deliveryTag);
+            count++;
+        }
+    }
+
+    /**
+     * Сообщение, ожидающее групповой фиксации.
+     *
+     * @param message       прочитанное сообщение.
+     * @param amqpMessage   исходное сообщение с delivery tag.
+     * @param channel       канал для подтверждения.
+     * @param enqueuedNanos время помещения в буфер по {@link System#nanoTime()}.
+     */
+    private record Pending(Message message, org.springframework.amqp.core.Message amqpMessage, Channel channel,
+                           long enqueuedNanos) {
+    }
+}
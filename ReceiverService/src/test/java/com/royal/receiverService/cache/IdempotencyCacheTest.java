@@ -0,0 +1,160 @@
+package com.royal.receiverService.cache;
+
+import com.royal.receiverService.repository.MessageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class IdempotencyCacheTest {
+
+	private static final long NO_TTL_MS = 60_000;
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	@Test
+	void findsCollidingIdsWhenProbeChainWrapsAround() {
+		IdempotencyCache cache = newCache(4, NO_TTL_MS);
+		int lastSlot = lastSlot(cache);
+		List<Long> colliding = idsWithHome(cache, lastSlot, 4);
+		colliding.forEach(cache::add);
+
+		for (long id : colliding) {
+			assertTrue(cache.contains(id), "id " + id + " потерян в цепочке через конец таблицы");
+		}
+		assertFalse(cache.contains(idsWithHome(cache, lastSlot, 5).get(4)));
+		assertEquals(4, size(cache));
+	}
+
+	@Test
+	void keepsProbeChainReachableWhenMiddleEntryIsEvicted() {
+		IdempotencyCache cache = newCache(4, NO_TTL_MS);
+		int lastSlot = lastSlot(cache);
+		// Первым вставляется id с домашним слотом 0, поэтому цепочка из последнего слота проходит через него.
+		long middle = idsWithHome(cache, 0, 1).get(0);
+		List<Long> chain = idsWithHome(cache, lastSlot, 2);
+		cache.add(middle);
+		chain.forEach(cache::add);
+		long other = idsWithHome(cache, lastSlot / 2, 1).get(0);
+		cache.add(other);
+
+		// Заполненный кеш вытесняет самую старую запись — ту, что стоит в середине цепочки.
+		cache.add(idsWithHome(cache, lastSlot / 2, 2).get(1));
+		assertFalse(cache.contains(middle));
+		for (long id : chain) {
+			assertTrue(cache.contains(id), "id " + id + " недостижим после удаления из середины цепочки");
+		}
+		assertTrue(cache.contains(other));
+
+		cache.add(middle);
+		assertTrue(cache.contains(middle));
+	}
+
+	@Test
+	void evictsOldestEntryWhenFull() {
+		IdempotencyCache cache = newCache(4, NO_TTL_MS);
+		for (long id = 1; id <= 5; id++) {
+			cache.add(id);
+		}
+		cache.add(3L);
+
+		assertFalse(cache.contains(1L));
+		for (long id = 2; id <= 5; id++) {
+			assertTrue(cache.contains(id));
+		}
+		assertEquals(4, size(cache));
+		assertEquals(1, evictions("size"));
+		assertEquals(0, evictions("ttl"));
+	}
+
+	@Test
+	void evictsEntriesOlderThanTtl() throws InterruptedException {
+		IdempotencyCache cache = newCache(4, 20);
+		cache.add(1L);
+		cache.add(2L);
+		Thread.sleep(60);
+		cache.add(3L);
+
+		assertFalse(cache.contains(1L));
+		assertFalse(cache.contains(2L));
+		assertTrue(cache.contains(3L));
+		assertEquals(1, size(cache));
+		assertEquals(2, evictions("ttl"));
+		assertEquals(0, evictions("size"));
+	}
+
+	@Test
+	void matchesFifoModelUnderRandomChurn() {
+		int capacity = 64;
+		IdempotencyCache cache = newCache(capacity, NO_TTL_MS);
+		ArrayDeque<Long> order = new ArrayDeque<>();
+		Set<Long> model = new HashSet<>();
+		Random random = new Random(11);
+		for (int i = 0; i < 200_000; i++) {
+			long id = random.nextInt(256) - 128;
+			if (random.nextBoolean()) {
+				assertEquals(model.contains(id), cache.contains(id), "Расхождение с моделью на шаге " + i);
+			} else if (model.add(id)) {
+				cache.add(id);
+				order.addLast(id);
+				if (order.size() > capacity) {
+					model.remove(order.removeFirst());
+				}
+			}
+		}
+	}
+
+	@Test
+	void ignoresIdsWhenDisabled() {
+		IdempotencyCache cache = newCache(0, NO_TTL_MS);
+		cache.add(1L);
+		assertFalse(cache.contains(1L));
+	}
+
+	private IdempotencyCache newCache(int capacity, long ttlMs) {
+		IdempotencyCache cache = new IdempotencyCache(mock(MessageRepository.class), registry);
+		ReflectionTestUtils.setField(cache, "enabled", true);
+		ReflectionTestUtils.setField(cache, "capacity", capacity);
+		ReflectionTestUtils.setField(cache, "ttlMs", ttlMs);
+		ReflectionTestUtils.setField(cache, "warmup", false);
+		cache.init();
+		return cache;
+	}
+
+	private static int lastSlot(IdempotencyCache cache) {
+		return (int) ReflectionTestUtils.getField(cache, "mask");
+	}
+
+	private static int size(IdempotencyCache cache) {
+		return (int) ReflectionTestUtils.getField(cache, "size");
+	}
+
+	/**
+	 * Подбирает id, хеш которых указывает на заданный слот таблицы.
+	 */
+	private static List<Long> idsWithHome(IdempotencyCache cache, int home, int count) {
+		List<Long> ids = new ArrayList<>(count);
+		for (long id = 1; ids.size() < count; id++) {
+			int slot = ReflectionTestUtils.invokeMethod(cache, "slot", id);
+			if (slot == home) {
+				ids.add(id);
+			}
+		}
+		return ids;
+	}
+
+	private double evictions(String reason) {
+		return registry.get("dedup.cache.evictions").tag("reason", reason).functionCounter().count();
+	}
+}
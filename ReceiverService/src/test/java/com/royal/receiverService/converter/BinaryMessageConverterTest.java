@@ -0,0 +1,95 @@
+package com.royal.receiverService.converter;
+
+import com.royal.receiverService.dto.Message;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConversionException;
+
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BinaryMessageConverterTest {
+
+	private static final int NAME_LENGTH_OFFSET = 2 + Long.BYTES;
+
+	private final BinaryMessageConverter converter = new BinaryMessageConverter();
+
+	@Test
+	void roundTripsAllFields() {
+		Message message = message(42L, "Цена товара", 19.99, new Timestamp(1_700_000_000_123L));
+		MessageProperties properties = new MessageProperties();
+		org.springframework.amqp.core.Message amqpMessage = converter.toMessage(message, properties);
+		assertEquals(BinaryMessageConverter.CONTENT_TYPE, properties.getContentType());
+		assertEquals(amqpMessage.getBody().length, properties.getContentLength());
+
+		Message decoded = assertInstanceOf(Message.class, converter.fromMessage(amqpMessage));
+		assertEquals(42L, decoded.getId());
+		assertEquals("Цена товара", decoded.getName());
+		assertEquals(19.99, decoded.getPrice());
+		assertEquals(new Timestamp(1_700_000_000_123L), decoded.getTimestamp());
+	}
+
+	@Test
+	void roundTripsAbsentFieldsAndBoundaryValues() {
+		byte[] emptyBody = encode(message(null, null, 0, null));
+		Message empty = BinaryMessageConverter.decode(emptyBody, 0, emptyBody.length);
+		assertNull(empty.getId());
+		assertNull(empty.getName());
+		assertNull(empty.getTimestamp());
+
+		byte[] body = encode(message(Long.MIN_VALUE, "", -1.5, new Timestamp(0)));
+		byte[] framed = new byte[body.length + 7];
+		System.arraycopy(body, 0, framed, 3, body.length);
+		Message decoded = BinaryMessageConverter.decode(framed, 3, body.length);
+		assertEquals(Long.MIN_VALUE, decoded.getId());
+		assertEquals("", decoded.getName());
+		assertEquals(-1.5, decoded.getPrice());
+		assertEquals(new Timestamp(0), decoded.getTimestamp());
+	}
+
+	@Test
+	void rejectsMalformedLength() {
+		byte[] body = encode(message(7L, "name", 1, new Timestamp(1)));
+		assertRejected(body, body.length - 1);
+		assertRejected(Arrays.copyOf(body, body.length + 1), body.length + 1);
+		assertRejected(body, 0);
+
+		byte[] negativeName = body.clone();
+		ByteBuffer.wrap(negativeName).putInt(NAME_LENGTH_OFFSET, -1);
+		assertRejected(negativeName, negativeName.length);
+
+		byte[] longerName = body.clone();
+		ByteBuffer.wrap(longerName).putInt(NAME_LENGTH_OFFSET, 5);
+		assertRejected(longerName, longerName.length);
+	}
+
+	@Test
+	void rejectsUnsupportedVersion() {
+		byte[] body = encode(message(7L, "name", 1, new Timestamp(1)));
+		body[0] = 1;
+		assertRejected(body, body.length);
+	}
+
+	private static void assertRejected(byte[] body, int length) {
+		assertThrows(MessageConversionException.class, () -> BinaryMessageConverter.decode(body, 0, length));
+	}
+
+	private static byte[] encode(Message message) {
+		return BinaryMessageConverter.encode(message);
+	}
+
+	private static Message message(Long id, String name, double price, Timestamp timestamp) {
+		Message message = new Message();
+		message.setId(id);
+		message.setName(name);
+		message.setPrice(price);
+		message.setTimestamp(timestamp);
+		return message;
+	}
+}
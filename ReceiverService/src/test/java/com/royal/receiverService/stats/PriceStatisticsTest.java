@@ -0,0 +1,69 @@
+package com.royal.receiverService.stats;
+
+import com.royal.receiverService.dto.Message;
+import com.royal.receiverService.dto.PriceStats;
+import com.royal.receiverService.dto.PriceStatsReport;
+import com.royal.receiverService.repository.MessageRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+class PriceStatisticsTest {
+
+	private static final int THREADS = 8;
+	private static final int MESSAGES_PER_THREAD = 10_000;
+
+	@Test
+	void mergesStripesWrittenByConcurrentThreads() throws InterruptedException {
+		PriceStatistics statistics = newStatistics();
+		long now = System.currentTimeMillis();
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < THREADS; t++) {
+			int thread = t;
+			threads.add(Thread.ofPlatform().start(() -> {
+				for (int i = 0; i < MESSAGES_PER_THREAD; i++) {
+					statistics.record(message(thread * MESSAGES_PER_THREAD + i, i - 5_000, now));
+				}
+			}));
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		PriceStatsReport report = statistics.report(PriceStatistics.MINUTE_WINDOW, new double[]{0, 0.5, 1});
+		PriceStats total = report.getTotal();
+		assertEquals((long) THREADS * MESSAGES_PER_THREAD, total.getCount());
+		assertEquals(-5_000, total.getMin());
+		assertEquals(4_999, total.getMax());
+		assertEquals(-0.5, total.getAverage(), 1e-9);
+		assertEquals(-5_000, total.getQuantiles().get("0.0"), 5_000 * 0.01);
+		assertEquals(-1, total.getQuantiles().get("0.5"), 0.02);
+		assertEquals(4_999, total.getQuantiles().get("1.0"), 4_999 * 0.01);
+		assertEquals(total.getCount(), report.getBuckets().stream().mapToLong(PriceStats::getCount).sum());
+	}
+
+	private static PriceStatistics newStatistics() {
+		PriceStatistics statistics = new PriceStatistics(mock(MessageRepository.class));
+		ReflectionTestUtils.setField(statistics, "enabled", true);
+		ReflectionTestUtils.setField(statistics, "minuteBuckets", 60);
+		ReflectionTestUtils.setField(statistics, "hourBuckets", 24);
+		ReflectionTestUtils.setField(statistics, "stripeCount", 4);
+		ReflectionTestUtils.setField(statistics, "relativeAccuracy", 0.01);
+		statistics.init();
+		return statistics;
+	}
+
+	private static Message message(long id, double price, long timestamp) {
+		Message message = new Message();
+		message.setId(id);
+		message.setPrice(price);
+		message.setTimestamp(new Timestamp(timestamp));
+		return message;
+	}
+}
@@ -0,0 +1,103 @@
+package com.royal.receiverService.stats;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QuantileSketchTest {
+
+	private static final double ACCURACY = 0.01;
+	private static final double[] LEVELS = {0, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99, 0.999, 1};
+
+	@Test
+	void estimatesPositiveQuantilesWithinRelativeAccuracy() {
+		Random random = new Random(42);
+		double[] values = new double[100_000];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = Math.exp(random.nextGaussian() * 2 + 3);
+		}
+		assertQuantiles(values);
+	}
+
+	@Test
+	void estimatesMixedSignQuantilesWithinRelativeAccuracy() {
+		Random random = new Random(7);
+		double[] values = new double[100_000];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = random.nextGaussian() * 1000;
+		}
+		assertQuantiles(values);
+	}
+
+	@Test
+	void keepsNegativeValuesApartFromZero() {
+		QuantileSketch sketch = new QuantileSketch(ACCURACY);
+		for (double value : new double[]{-500, -3, 1e-12, 0, 2, 40}) {
+			sketch.add(value);
+		}
+		assertEquals(-500, sketch.quantile(0), 500 * ACCURACY);
+		assertEquals(-3, sketch.quantile(0.2), 3 * ACCURACY);
+		assertEquals(0, sketch.quantile(0.4));
+		assertEquals(0, sketch.quantile(0.6));
+		assertEquals(2, sketch.quantile(0.8), 2 * ACCURACY);
+		assertEquals(40, sketch.quantile(1), 40 * ACCURACY);
+	}
+
+	@Test
+	void mergeMatchesSingleSketch() {
+		Random random = new Random(1);
+		QuantileSketch single = new QuantileSketch(ACCURACY);
+		QuantileSketch left = new QuantileSketch(ACCURACY);
+		QuantileSketch right = new QuantileSketch(ACCURACY);
+		for (int i = 0; i < 10_000; i++) {
+			double value = (random.nextDouble() - 0.3) * 1e6;
+			single.add(value);
+			(i % 3 == 0 ? left : right).add(value);
+		}
+		left.merge(right);
+		assertEquals(single.count(), left.count());
+		for (double level : LEVELS) {
+			assertEquals(single.quantile(level), left.quantile(level));
+		}
+	}
+
+	@Test
+	void clearEmptiesSketch() {
+		QuantileSketch sketch = new QuantileSketch(ACCURACY);
+		sketch.add(-1);
+		sketch.add(1);
+		sketch.clear();
+		assertEquals(0, sketch.count());
+		assertTrue(Double.isNaN(sketch.quantile(0.5)));
+		sketch.add(10);
+		assertEquals(10, sketch.quantile(0), 10 * ACCURACY);
+	}
+
+	@Test
+	void rejectsInvalidInput() {
+		assertThrows(IllegalArgumentException.class, () -> new QuantileSketch(0));
+		assertThrows(IllegalArgumentException.class, () -> new QuantileSketch(ACCURACY).add(Double.NaN));
+		assertThrows(IllegalArgumentException.class,
+				() -> new QuantileSketch(ACCURACY).merge(new QuantileSketch(0.05)));
+	}
+
+	private static void assertQuantiles(double[] values) {
+		QuantileSketch sketch = new QuantileSketch(ACCURACY);
+		for (double value : values) {
+			sketch.add(value);
+		}
+		double[] sorted = values.clone();
+		Arrays.sort(sorted);
+		for (double level : LEVELS) {
+			double exact = sorted[(int) (level * (sorted.length - 1))];
+			double estimate = sketch.quantile(level);
+			assertEquals(exact, estimate, Math.abs(exact) * ACCURACY * (1 + 1e-9),
+					"Квантиль " + level + " вне допустимой относительной ошибки");
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package com.royal.receiverService.writebehind;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MpscRingBufferTest {
+
+	private static final int PRODUCERS = 4;
+	private static final int ITEMS_PER_PRODUCER = 200_000;
+
+	@Test
+	void roundsCapacityUpToPowerOfTwo() {
+		assertEquals(8, new MpscRingBuffer<>(5).capacity());
+		assertEquals(8, new MpscRingBuffer<>(8).capacity());
+		assertThrows(IllegalArgumentException.class, () -> new MpscRingBuffer<>(0));
+	}
+
+	@Test
+	void rejectsOfferWhenFullAndAcceptsAfterDrain() {
+		MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(4);
+		for (int i = 0; i < 4; i++) {
+			assertTrue(buffer.offer(i));
+		}
+		assertFalse(buffer.offer(4));
+
+		List<Integer> drained = new ArrayList<>();
+		assertEquals(2, buffer.drainTo(drained, 2));
+		assertEquals(List.of(0, 1), drained);
+		assertTrue(buffer.offer(4));
+		assertTrue(buffer.offer(5));
+		assertFalse(buffer.offer(6));
+
+		drained.clear();
+		assertEquals(4, buffer.drainTo(drained, 10));
+		assertEquals(List.of(2, 3, 4, 5), drained);
+		assertEquals(0, buffer.size());
+	}
+
+	@Test
+	void concurrentProducersLoseNothingAndKeepPerProducerOrder() throws InterruptedException {
+		MpscRingBuffer<long[]> buffer = new MpscRingBuffer<>(64);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Thread> producers = new ArrayList<>();
+		for (int p = 0; p < PRODUCERS; p++) {
+			long producer = p;
+			producers.add(Thread.ofPlatform().start(() -> {
+				awaitQuietly(start);
+				for (long seq = 0; seq < ITEMS_PER_PRODUCER; seq++) {
+					long[] item = {producer, seq};
+					while (!buffer.offer(item)) {
+						Thread.onSpinWait();
+					}
+				}
+			}));
+		}
+
+		long[] nextExpected = new long[PRODUCERS];
+		List<long[]> batch = new ArrayList<>();
+		long received = 0;
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+		start.countDown();
+		while (received < (long) PRODUCERS * ITEMS_PER_PRODUCER) {
+			assertTrue(System.nanoTime() < deadline, "Буфер не отдал все элементы за отведенное время");
+			batch.clear();
+			if (buffer.drainTo(batch, 32) == 0) {
+				LockSupport.parkNanos(1_000);
+				continue;
+			}
+			for (long[] item : batch) {
+				int producer = (int) item[0];
+				assertEquals(nextExpected[producer], item[1], "Нарушен порядок элементов производителя " + producer);
+				nextExpected[producer]++;
+				received++;
+			}
+		}
+		for (Thread producer : producers) {
+			producer.join();
+		}
+
+		for (int p = 0; p < PRODUCERS; p++) {
+			assertEquals(ITEMS_PER_PRODUCER, nextExpected[p]);
+		}
+		assertEquals(0, buffer.drainTo(batch, 32));
+		assertEquals(0, buffer.size());
+	}
+
+	private static void awaitQuietly(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package com.royal.senderService.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.royal.senderService.config.RabbitMQConfig;
+import com.royal.senderService.controller.MessageController;
+import com.royal.senderService.dto.Message;
+import com.royal.senderService.metrics.PublishMetrics;
+import com.royal.senderService.service.RabbitMQProducer;
+import com.royal.senderService.service.ShardedRabbitPublisher;
+import com.royal.senderService.spool.SpoolJournal;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Сборка компонентов SenderService для бенчмарков без Spring-контекста и без брокера.
+ * Компоненты создаются теми же классами и с теми же значениями свойств, что и в приложении;
+ * на месте брокера используется {@link StubRabbitConnectionFactory}.
+ */
+final class BenchmarkFixtures {
+
+    static final String EXCHANGE = "message_exchange";
+    static final String ROUTING_KEY = "message_routing_key";
+
+    private static final long CONFIRM_TIMEOUT_MS = 10_000;
+    private static final int MAX_OUTSTANDING_CONFIRMS = 10_000;
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * Создает конфигурацию RabbitMQ с заданным форматом сообщений.
+     *
+     * @param codec формат сообщений (json или binary).
+     * @return конфигурация RabbitMQ.
+     */
+    static RabbitMQConfig config(String codec) {
+        RabbitMQConfig config = new RabbitMQConfig();
+        ReflectionTestUtils.setField(config, "codec", codec);
+        return config;
+    }
+
+    /**
+     * Создает кеширующую фабрику соединений с publisher confirms поверх заглушки клиента.
+     *
+     * @return фабрика соединений.
+     */
+    static CachingConnectionFactory connectionFactory() {
+        CachingConnectionFactory connectionFactory = new CachingConnectionFactory(new StubRabbitConnectionFactory());
+        connectionFactory.setPublisherConfirmType(CachingConnectionFactory.ConfirmType.CORRELATED);
+        connectionFactory.setPublisherReturns(true);
+        return connectionFactory;
+    }
+
+    /**
+     * Создает продюсер так же, как его собирает приложение (без шардирования).
+     *
+     * @param codec             формат сообщений.
+     * @param connectionFactory фабрика соединений.
+     * @return продюсер сообщений.
+     */
+    static RabbitMQProducer producer(String codec, CachingConnectionFactory connectionFactory) {
+        PublishMetrics publishMetrics = new PublishMetrics(new SimpleMeterRegistry());
+        RabbitTemplate rabbitTemplate = (RabbitTemplate) config(codec).amqpTemplate(connectionFactory, publishMetrics);
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        RabbitMQProducer producer = new RabbitMQProducer(rabbitTemplate,
+                beanFactory.getBeanProvider(ShardedRabbitPublisher.class), publishMetrics);
+        ReflectionTestUtils.setField(producer, "exchange", EXCHANGE);
+        ReflectionTestUtils.setField(producer, "routingJsonKey", ROUTING_KEY);
+        ReflectionTestUtils.setField(producer, "confirmTimeoutMs", CONFIRM_TIMEOUT_MS);
+        ReflectionTestUtils.setField(producer, "maxOutstandingConfirms", MAX_OUTSTANDING_CONFIRMS);
+        producer.init();
+        return producer;
+    }
+
+    /**
+     * Создает контроллер сообщений без локального журнала.
+     *
+     * @param producer     продюсер сообщений.
+     * @param objectMapper маппер JSON.
+     * @return контроллер.
+     */
+    static MessageController controller(RabbitMQProducer producer, ObjectMapper objectMapper) {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        return new MessageController(producer, objectMapper, beanFactory.getBeanProvider(SpoolJournal.class));
+    }
+
+    /**
+     * Создает типичное сообщение.
+     *
+     * @return сообщение.
+     */
+    static Message message() {
+        Message message = new Message();
+        message.setId(100L);
+        message.setName("tomato");
+        message.setPrice(5.0);
+        return message;
+    }
+}
@@ -0,0 +1,95 @@
+package com.royal.senderService.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.royal.senderService.dto.Message;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Полная обработка HTTP-запроса {@code MessageController} через MockMvc: разбор JSON, публикация,
+ * ожидание подтверждения и формирование ответа. Путь MVC прогревается JIT заметно дольше остальных,
+ * поэтому прогрев увеличен.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageControllerBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"json", "binary"})
+    public String codec;
+
+    private CachingConnectionFactory connectionFactory;
+    private MockMvc mockMvc;
+    private byte[] messageBody;
+    private byte[] batchBody;
+
+    @Setup
+    public void setup() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        connectionFactory = BenchmarkFixtures.connectionFactory();
+        mockMvc = MockMvcBuilders.standaloneSetup(BenchmarkFixtures.controller(
+                BenchmarkFixtures.producer(codec, connectionFactory), objectMapper)).build();
+
+        Message message = BenchmarkFixtures.message();
+        messageBody = objectMapper.writeValueAsBytes(message);
+        ByteArrayOutputStream batch = new ByteArrayOutputStream();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            message.setId((long) i);
+            batch.write(objectMapper.writeValueAsBytes(message));
+            batch.write('\n');
+        }
+        batchBody = batch.toByteArray();
+    }
+
+    @TearDown
+    public void tearDown() {
+        connectionFactory.destroy();
+    }
+
+    @Benchmark
+    public MvcResult publish() throws Exception {
+        MvcResult result = mockMvc.perform(post("/api/v1/publish")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(messageBody))
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(result)).andReturn();
+    }
+
+    /**
+     * Пакет из {@value #BATCH_SIZE} сообщений в формате NDJSON за одну операцию.
+     */
+    @Benchmark
+    public MvcResult publishBatch() throws Exception {
+        return mockMvc.perform(post("/api/v1/publish/batch")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(batchBody))
+                .andReturn();
+    }
+}
@@ -0,0 +1,56 @@
+package com.royal.senderService.benchmark;
+
+import com.royal.senderService.dto.Message;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+import java.sql.Timestamp;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сериализация и десериализация {@link Message} конвертером, который настраивает {@code RabbitMQConfig}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageConverterBenchmark {
+
+    @Param({"json", "binary"})
+    public String codec;
+
+    private MessageConverter converter;
+    private Message message;
+    private org.springframework.amqp.core.Message encoded;
+
+    @Setup
+    public void setup() {
+        converter = BenchmarkFixtures.config(codec).messageConverter();
+        message = BenchmarkFixtures.message();
+        message.setTimestamp(new Timestamp(System.currentTimeMillis()));
+        encoded = converter.toMessage(message, new MessageProperties());
+    }
+
+    @Benchmark
+    public org.springframework.amqp.core.Message toMessage() {
+        return converter.toMessage(message, new MessageProperties());
+    }
+
+    @Benchmark
+    public Object fromMessage() {
+        return converter.fromMessage(encoded);
+    }
+}
@@ -0,0 +1,68 @@
+package com.royal.senderService.benchmark;
+
+import com.royal.senderService.dto.Message;
+import com.royal.senderService.dto.PublishResult;
+import com.royal.senderService.service.RabbitMQProducer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Публикация через {@link RabbitMQProducer} с настоящим {@code RabbitTemplate} и кешем каналов,
+ * но с каналами-заглушками, которые подтверждают сообщения сразу после basicPublish.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RabbitMQProducerBenchmark {
+
+    @Param({"json", "binary"})
+    public String codec;
+
+    private CachingConnectionFactory connectionFactory;
+    private RabbitMQProducer producer;
+
+    @Setup
+    public void setup() {
+        connectionFactory = BenchmarkFixtures.connectionFactory();
+        producer = BenchmarkFixtures.producer(codec, connectionFactory);
+    }
+
+    @TearDown
+    public void tearDown() {
+        connectionFactory.destroy();
+    }
+
+    @Benchmark
+    public void sendMessage(MessageState state) {
+        producer.sendMessage(state.message);
+    }
+
+    @Benchmark
+    public PublishResult sendMessageAsync(MessageState state) {
+        return producer.sendMessageAsync(state.message).join();
+    }
+
+    /**
+     * Сообщение на поток: продюсер меняет временную метку сообщения, поэтому потоки не делят один объект.
+     */
+    @State(Scope.Thread)
+    public static class MessageState {
+        private final Message message = BenchmarkFixtures.message();
+    }
+}
@@ -0,0 +1,147 @@
+package com.royal.senderService.benchmark;
+
+import com.rabbitmq.client.AddressResolver;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmListener;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetAddress;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Фабрика соединений клиента RabbitMQ, работающая без брокера.
+ * Каналы принимают публикации в памяти и сразу подтверждают их через зарегистрированные {@link ConfirmListener},
+ * поэтому весь клиентский путь Spring AMQP (конвертер, кеш каналов, publisher confirms) выполняется полностью,
+ * а сетевой ввод-вывод исключен из замеров.
+ */
+class StubRabbitConnectionFactory extends ConnectionFactory {
+
+    private final AtomicInteger channelNumbers = new AtomicInteger();
+
+    StubRabbitConnectionFactory() {
+        setAutomaticRecoveryEnabled(false);
+    }
+
+    @Override
+    public Connection newConnection(ExecutorService executor, AddressResolver addressResolver, String clientProvidedName) {
+        return proxy(Connection.class, new ConnectionHandler(clientProvidedName));
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(StubRabbitConnectionFactory.class.getClassLoader(),
+                new Class<?>[]{type}, handler));
+    }
+
+    /**
+     * Значение по умолчанию для неинтересных методов: ноль для примитивов, null для объектов.
+     */
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+
+    private final class ConnectionHandler implements InvocationHandler {
+        private final String name;
+        private volatile boolean open = true;
+
+        private ConnectionHandler(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            return switch (method.getName()) {
+                case "isOpen" -> open;
+                case "createChannel" -> proxy(Channel.class, new ChannelHandler((Connection) proxy,
+                        channelNumbers.incrementAndGet()));
+                case "close", "abort" -> {
+                    open = false;
+                    yield null;
+                }
+                case "getAddress" -> InetAddress.getLoopbackAddress();
+                case "getPort" -> 5672;
+                case "getClientProvidedName", "getId" -> name;
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "equals" -> proxy == args[0];
+                case "toString" -> "StubConnection[" + name + "]";
+                default -> defaultValue(method.getReturnType());
+            };
+        }
+    }
+
+    private static final class ChannelHandler implements InvocationHandler {
+        private final Connection connection;
+        private final int channelNumber;
+        private final List<ConfirmListener> confirmListeners = new CopyOnWriteArrayList<>();
+        private long nextPublishSeqNo;
+        private volatile boolean open = true;
+
+        private ChannelHandler(Connection connection, int channelNumber) {
+            this.connection = connection;
+            this.channelNumber = channelNumber;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws IOException {
+            switch (method.getName()) {
+                case "isOpen":
+                    return open;
+                case "close":
+                case "abort":
+                    open = false;
+                    return null;
+                case "getConnection":
+                    return connection;
+                case "getChannelNumber":
+                    return channelNumber;
+                case "confirmSelect":
+                    nextPublishSeqNo = 1;
+                    return null;
+                case "getNextPublishSeqNo":
+                    return nextPublishSeqNo;
+                case "addConfirmListener":
+                    if (args[0] instanceof ConfirmListener listener) {
+                        confirmListeners.add(listener);
+                    }
+                    return null;
+                case "basicPublish":
+                    publish();
+                    return null;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return "StubChannel[" + channelNumber + "]";
+                default:
+                    return defaultValue(method.getReturnType());
+            }
+        }
+
+        private void publish() throws IOException {
+            if (nextPublishSeqNo == 0) {
+                return;
+            }
+            long deliveryTag = nextPublishSeqNo++;
+            for (ConfirmListener listener : confirmListeners) {
+                listener.handleAck(deliveryTag, false);
+            }
+        }
+    }
+}
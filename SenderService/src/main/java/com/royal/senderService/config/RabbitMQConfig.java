@@ -1,5 +1,8 @@
 package com.royal.senderService.config;
 
+import com.royal.senderService.converter.BinaryMessageConverter;
+import com.royal.senderService.converter.PartitionKeyMessageConverter;
+import com.royal.senderService.metrics.PublishMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.amqp.core.*;
@@ -8,9 +11,14 @@ import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Конфигурация RabbitMQ, включая основные и DLX (Dead Letter Exchange) очереди, обменники и биндинги.
  */
@@ -32,6 +40,18 @@ public class RabbitMQConfig {
     @Value("${rabbitmq.dlx.routing.key.name}")
     private String dlxRoutingKey;
 
+    @Value("${rabbitmq.message.codec}")
+    private String codec;
+
+    @Value("${rabbitmq.partitioned.enabled}")
+    private boolean partitioned;
+    @Value("${rabbitmq.partitioned.exchange.name}")
+    private String partitionedExchange;
+    @Value("${rabbitmq.partitioned.queue.prefix}")
+    private String partitionQueuePrefix;
+    @Value("${rabbitmq.partitioned.partitions}")
+    private int partitions;
+
     private static final Logger LOGGER = LoggerFactory.getLogger(RabbitMQConfig.class);
 
     /**
@@ -78,11 +98,13 @@ public class RabbitMQConfig {
     }
 
     /**
-     * Создает биндинг основной очереди к основному обменнику.
+     * Создает биндинг основной очереди к основному обменнику. В секционированном режиме
+     * (rabbitmq.partitioned.enabled=true) не создается: сообщения идут в секции, см. {@link #partitionedTopology()}.
      *
      * @return Биндинг основной очереди.
      */
     @Bean
+    @ConditionalOnProperty(name = "rabbitmq.partitioned.enabled", havingValue = "false", matchIfMissing = true)
     public Binding binding() {
         return BindingBuilder.bind(queue())
                 .to(exchange())
@@ -102,26 +124,72 @@ public class RabbitMQConfig {
     }
 
     /**
-     * Определяет конвертер сообщений для работы с JSON.
+     * Создает секционированную топологию (rabbitmq.partitioned.enabled=true): основной обменник привязывается
+     * к обменнику x-consistent-hash, который распределяет сообщения по rabbitmq.partitioned.partitions очередям
+     * по хешу message_id. Каждая очередь-секция имеет единственного активного потребителя
+     * (x-single-active-consumer), поэтому сообщения с одним id обрабатываются по порядку.
+     * Требуется плагин rabbitmq_consistent_hash_exchange.
+     *
+     * @return Обменник, очереди-секции и биндинги.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "rabbitmq.partitioned.enabled", havingValue = "true")
+    public Declarables partitionedTopology() {
+        CustomExchange hashExchange = new CustomExchange(partitionedExchange, "x-consistent-hash", true, false,
+                Map.of("hash-property", "message_id"));
+        List<Declarable> declarables = new ArrayList<>();
+        declarables.add(hashExchange);
+        declarables.add(BindingBuilder.bind(hashExchange).to(exchange()).with(routingKey));
+        for (int partition = 0; partition < partitions; partition++) {
+            Queue partitionQueue = QueueBuilder.durable(partitionQueuePrefix + partition)
+                    .singleActiveConsumer()
+                    .withArgument("x-dead-letter-exchange", dlxExchange)
+                    .withArgument("x-dead-letter-routing-key", dlxRoutingKey)
+                    .build();
+            declarables.add(partitionQueue);
+            // Ключ маршрутизации для consistent-hash — вес секции.
+            declarables.add(BindingBuilder.bind(partitionQueue).to(hashExchange).with("1").noargs());
+        }
+        return new Declarables(declarables);
+    }
+
+    /**
+     * Определяет конвертер исходящих сообщений: JSON или компактный бинарный формат (rabbitmq.message.codec=binary).
+     * В секционированном режиме конвертер дополнительно записывает id сообщения в message_id.
      *
      * @return Конвертер сообщений.
      */
     @Bean
     public MessageConverter messageConverter() {
-        return new Jackson2JsonMessageConverter();
+        MessageConverter converter;
+        if ("binary".equalsIgnoreCase(codec)) {
+            LOGGER.info("Используется бинарный формат сообщений: {}", BinaryMessageConverter.CONTENT_TYPE);
+            converter = new BinaryMessageConverter();
+        } else {
+            converter = new Jackson2JsonMessageConverter();
+        }
+        return partitioned ? new PartitionKeyMessageConverter(converter) : converter;
     }
 
     /**
-     * Создает шаблон для работы с RabbitMQ, добавляя поддержку JSON-конвертера и логирование подтверждений.
+     * Создает шаблон для работы с RabbitMQ, добавляя поддержку JSON-конвертера, логирование подтверждений
+     * и учет подтверждений и возвратов в метриках публикации.
      *
      * @param connectionFactory Фабрика соединений RabbitMQ.
+     * @param publishMetrics    Метрики публикации.
      * @return Конфигурированный шаблон RabbitMQ.
      */
     @Bean
-    public AmqpTemplate amqpTemplate(ConnectionFactory connectionFactory) {
+    public AmqpTemplate amqpTemplate(ConnectionFactory connectionFactory, PublishMetrics publishMetrics) {
         RabbitTemplate rabbitTemplate = new RabbitTemplate(connectionFactory);
         rabbitTemplate.setMessageConverter(messageConverter());
+        rabbitTemplate.setMandatory(true);
+        rabbitTemplate.setReturnsCallback(returned -> {
+            publishMetrics.recordReturn(returned);
+            LOGGER.error("Сообщение возвращено брокером: {} {}", returned.getReplyCode(), returned.getReplyText());
+        });
         rabbitTemplate.setConfirmCallback((correlationData, ack, cause) -> {
+            publishMetrics.recordConfirm(correlationData, ack);
             if (ack) {
                 LOGGER.info("CorrelationData: {}", correlationData);
             } else {
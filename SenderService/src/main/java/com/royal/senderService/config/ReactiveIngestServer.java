@@ -0,0 +1,82 @@
+package com.royal.senderService.config;
+
+import com.royal.senderService.controller.ReactiveMessageHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.HttpHandler;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.POST;
+import static org.springframework.web.reactive.function.server.RequestPredicates.contentType;
+
+/**
+ * Отдельный неблокирующий HTTP-сервер на Reactor Netty для потокового приема сообщений.
+ * Работает параллельно с сервлетным контейнером на собственном порту.
+ */
+@Component
+@ConditionalOnProperty(name = "rabbitmq.reactive.enabled", havingValue = "true")
+public class ReactiveIngestServer implements SmartLifecycle {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReactiveIngestServer.class);
+
+    @Value("${rabbitmq.reactive.port}")
+    private int port;
+
+    private final ReactiveMessageHandler reactiveMessageHandler;
+
+    private volatile DisposableServer server;
+
+    /**
+     * Конструктор сервера потокового приема.
+     *
+     * @param reactiveMessageHandler Обработчик потоковых запросов.
+     */
+    @Autowired
+    public ReactiveIngestServer(ReactiveMessageHandler reactiveMessageHandler) {
+        this.reactiveMessageHandler = reactiveMessageHandler;
+    }
+
+    /**
+     * Запускает HTTP-сервер с маршрутом POST /api/v1/reactive/publish.
+     */
+    @Override
+    public void start() {
+        RouterFunction<ServerResponse> routes = RouterFunctions.route(
+                POST("/api/v1/reactive/publish")
+                        .and(contentType(MediaType.APPLICATION_JSON, MediaType.APPLICATION_NDJSON)),
+                reactiveMessageHandler::ingest);
+        HttpHandler httpHandler = RouterFunctions.toHttpHandler(routes);
+        server = HttpServer.create()
+                .port(port)
+                .handle(new ReactorHttpHandlerAdapter(httpHandler))
+                .bindNow();
+        LOGGER.info("Сервер потокового приема сообщений запущен на порту {}", server.port());
+    }
+
+    /**
+     * Останавливает HTTP-сервер.
+     */
+    @Override
+    public void stop() {
+        if (server != null) {
+            server.disposeNow();
+            server = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return server != null;
+    }
+}
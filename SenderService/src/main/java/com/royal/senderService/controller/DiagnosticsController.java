@@ -0,0 +1,44 @@
+package com.royal.senderService.controller;
+
+import com.royal.senderService.dto.PinningSite;
+import com.royal.senderService.service.VirtualThreadPinningMonitor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * Контроллер диагностики режима виртуальных потоков.
+ * Доступен только при spring.threads.virtual.enabled=true.
+ */
+@RestController
+@RequestMapping("/api/v1")
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class DiagnosticsController {
+
+    private final VirtualThreadPinningMonitor pinningMonitor;
+
+    /**
+     * Конструктор контроллера диагностики.
+     *
+     * @param pinningMonitor Сервис обнаружения закрепления виртуальных потоков.
+     */
+    @Autowired
+    public DiagnosticsController(VirtualThreadPinningMonitor pinningMonitor) {
+        this.pinningMonitor = pinningMonitor;
+    }
+
+    /**
+     * Обрабатывает GET-запрос для получения отчета о закреплении виртуальных потоков.
+     *
+     * @return Список мест закрепления, отсортированный по суммарной длительности.
+     */
+    @GetMapping("/diagnostics/pinning")
+    public ResponseEntity<List<PinningSite>> getPinningReport() {
+        return ResponseEntity.ok(pinningMonitor.getReport());
+    }
+}
@@ -1,15 +1,34 @@
 package com.royal.senderService.controller;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.royal.senderService.dto.BatchPublishResponse;
 import com.royal.senderService.dto.Message;
+import com.royal.senderService.dto.PublishResult;
+import com.royal.senderService.exception.BatchTooLargeException;
+import com.royal.senderService.exception.PublisherOverloadedException;
 import com.royal.senderService.exception.RabbitMQException;
 import com.royal.senderService.service.RabbitMQProducer;
+import com.royal.senderService.spool.SpoolJournal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
 /**
  * Контроллер для обработки HTTP-запросов, связанных с отправкой сообщений в RabbitMQ.
  */
@@ -18,42 +37,159 @@ import org.springframework.web.bind.annotation.*;
 public class MessageController {
 
     private final RabbitMQProducer rabbitMQProducer;
+    private final ObjectReader messageReader;
+    private final SpoolJournal spoolJournal;
     private static final Logger LOGGER = LoggerFactory.getLogger(MessageController.class);
 
+    @Value("${rabbitmq.publish.max-outstanding-confirms}")
+    private int maxBatchSize;
+
     /**
      * Конструктор контроллера, инициализирующий сервис RabbitMQProducer.
      *
      * @param rabbitMQProducer Сервис для отправки сообщений в RabbitMQ.
+     * @param objectMapper     Маппер для потокового чтения пакета сообщений.
+     * @param spoolJournal     Локальный журнал сообщений, если он включен.
      */
     @Autowired
-    public MessageController(RabbitMQProducer rabbitMQProducer) {
+    public MessageController(RabbitMQProducer rabbitMQProducer, ObjectMapper objectMapper,
+                             ObjectProvider<SpoolJournal> spoolJournal) {
         this.rabbitMQProducer = rabbitMQProducer;
+        this.messageReader = objectMapper.readerFor(Message.class);
+        this.spoolJournal = spoolJournal.getIfAvailable();
     }
 
     /**
      * Обрабатывает POST-запрос для публикации сообщения в RabbitMQ.
+     * Ответ формируется асинхронно после подтверждения брокером, поток сервлета при этом не блокируется.
+     * Если включен локальный журнал, ответ отправляется после фиксации сообщения в журнале на диске.
      *
      * @param message Сообщение, которое нужно отправить.
-     * @return Ответ с результатом отправки.
+     * @return Future с ответом о результате отправки.
      */
     @PostMapping("/publish")
-    public ResponseEntity<String> sendMessage(@RequestBody Message message) {
+    public CompletableFuture<ResponseEntity<String>> sendMessage(@RequestBody Message message) {
+        LOGGER.info("Получен запрос на отправку сообщения: {}", message.toString());
+
+        if (spoolJournal != null) {
+            return spoolMessage(message);
+        }
+
+        return rabbitMQProducer.sendMessageAsync(message)
+                .handle((result, e) -> {
+                    if (e == null && result.isAcked()) {
+                        LOGGER.info("Сообщение успешно отправлено и подтверждено: {}", message.toString());
+                        return ResponseEntity.ok("Сообщение успешно отправлено");
+                    }
+                    if (e == null) {
+                        LOGGER.error("Брокер отклонил сообщение {}: {}", message.getId(), result.getReason());
+                        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                                .body("Брокер отклонил сообщение: " + result.getReason());
+                    }
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    if (cause instanceof PublisherOverloadedException) {
+                        LOGGER.warn("Отправка отклонена: {}", cause.getMessage());
+                        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                                .body("Сервис перегружен: " + cause.getMessage());
+                    }
+                    if (cause instanceof RabbitMQException) {
+                        LOGGER.error("Ошибка при отправке сообщения: {}", cause.getMessage(), cause);
+                        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                                .body("Ошибка при отправке сообщения: " + cause.getMessage());
+                    }
+                    LOGGER.error("Неизвестная ошибка: {}", cause.getMessage(), cause);
+                    return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                            .body("Неизвестная ошибка: " + cause.getMessage());
+                });
+    }
+
+    /**
+     * Записывает сообщение в локальный журнал, откуда оно будет доставлено в RabbitMQ фоновым потоком.
+     *
+     * @param message Сообщение, которое нужно отправить.
+     * @return Future с ответом о результате записи в журнал.
+     */
+    private CompletableFuture<ResponseEntity<String>> spoolMessage(Message message) {
+        message.setTimestamp(new Timestamp(System.currentTimeMillis()));
+        return spoolJournal.append(message)
+                .handle((ignored, e) -> {
+                    if (e == null) {
+                        LOGGER.info("Сообщение записано в журнал: {}", message.getId());
+                        return ResponseEntity.ok("Сообщение принято и записано в журнал");
+                    }
+                    LOGGER.error("Ошибка записи сообщения в журнал: {}", e.getMessage(), e);
+                    return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                            .body("Ошибка записи сообщения в журнал: " + e.getMessage());
+                });
+    }
+
+    /**
+     * Обрабатывает POST-запрос для пакетной публикации сообщений в RabbitMQ.
+     * Поддерживается как JSON-массив, так и NDJSON (по одному сообщению в строке). Тело запроса разбирается
+     * и проверяется целиком до начала публикации: при ошибке разбора возвращается 400 с номером элемента
+     * и ни одно сообщение не отправляется. Пакет удерживается в памяти, поэтому его размер ограничен лимитом
+     * неподтвержденных сообщений: на первом элементе сверх лимита разбор прекращается и возвращается 413.
+     * Ошибки публикации отдельных сообщений отражаются в результате по каждому сообщению.
+     *
+     * @param body Поток тела запроса с сообщениями.
+     * @return Ответ с результатом подтверждения по каждому сообщению.
+     */
+    @PostMapping(value = "/publish/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<?> sendBatch(InputStream body) {
         try {
-            LOGGER.info("Получен запрос на отправку сообщения: {}", message.toString());
+            List<Message> batch = readBatch(body);
+            LOGGER.info("Получен запрос на пакетную отправку {} сообщений", batch.size());
 
-            rabbitMQProducer.sendMessage(message);
+            List<PublishResult> results = rabbitMQProducer.sendBatch(batch);
+            BatchPublishResponse response = new BatchPublishResponse(results);
 
-            LOGGER.info("Сообщение успешно отправлено: {}", message.toString());
+            LOGGER.info("Пакет отправлен: всего {}, подтверждено {}, отклонено {}",
+                    response.getTotal(), response.getAcked(), response.getNacked());
 
-            return ResponseEntity.ok("Сообщение успешно отправлено");
+            return ResponseEntity.ok(response);
+        } catch (BatchTooLargeException e) {
+            LOGGER.warn("Пакетный запрос отклонен: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            LOGGER.error("Некорректное тело пакетного запроса: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body("Некорректное тело пакетного запроса: " + e.getMessage());
         } catch (RabbitMQException e) {
-            LOGGER.error("Ошибка при отправке сообщения: {}", e.getMessage(), e);
+            LOGGER.error("Ошибка при пакетной отправке сообщений: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body("Ошибка при отправке сообщения: " + e.getMessage());
+                    .body("Ошибка при пакетной отправке сообщений: " + e.getMessage());
         } catch (Exception e) {
             LOGGER.error("Неизвестная ошибка: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body("Неизвестная ошибка: " + e.getMessage());
         }
     }
+
+    /**
+     * Разбирает и проверяет все элементы пакета.
+     *
+     * @param body Поток тела запроса с сообщениями.
+     * @return Сообщения пакета в исходном порядке.
+     * @throws IllegalArgumentException если элемент пакета не удалось разобрать или в нем не указан id.
+     * @throws BatchTooLargeException   если в пакете больше {@code maxBatchSize} элементов.
+     */
+    private List<Message> readBatch(InputStream body) {
+        List<Message> batch = new ArrayList<>();
+        try (MappingIterator<Message> messages = messageReader.readValues(body)) {
+            while (messages.hasNextValue()) {
+                Message message = messages.nextValue();
+                if (message == null || message.getId() == null) {
+                    throw new IllegalArgumentException("Не указан id элемента пакета #" + batch.size());
+                }
+                if (batch.size() >= maxBatchSize) {
+                    throw new BatchTooLargeException("Пакет больше лимита неподтвержденных сообщений: " + maxBatchSize);
+                }
+                batch.add(message);
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Ошибка разбора элемента пакета #" + batch.size() + ": "
+                    + e.getMessage(), e);
+        }
+        return batch;
+    }
 }
@@ -0,0 +1,64 @@
+package com.royal.senderService.controller;
+
+import com.royal.senderService.dto.Message;
+import com.royal.senderService.exception.RabbitMQException;
+import com.royal.senderService.service.ReactiveRabbitPublisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+/**
+ * Обработчик неблокирующего потокового приема сообщений.
+ * Принимает JSON-массив или NDJSON и публикует сообщения по мере чтения тела запроса.
+ */
+@Component
+@ConditionalOnProperty(name = "rabbitmq.reactive.enabled", havingValue = "true")
+public class ReactiveMessageHandler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReactiveMessageHandler.class);
+
+    private final ReactiveRabbitPublisher reactiveRabbitPublisher;
+
+    /**
+     * Конструктор обработчика, инициализирующий сервис реактивной публикации.
+     *
+     * @param reactiveRabbitPublisher Сервис реактивной публикации сообщений.
+     */
+    @Autowired
+    public ReactiveMessageHandler(ReactiveRabbitPublisher reactiveRabbitPublisher) {
+        this.reactiveRabbitPublisher = reactiveRabbitPublisher;
+    }
+
+    /**
+     * Обрабатывает POST-запрос потоковой публикации сообщений.
+     *
+     * @param request Запрос с потоком сообщений в теле.
+     * @return Ответ с итогом публикации.
+     */
+    public Mono<ServerResponse> ingest(ServerRequest request) {
+        LOGGER.info("Получен запрос на потоковую отправку сообщений");
+        return reactiveRabbitPublisher.publish(request.bodyToFlux(Message.class))
+                .flatMap(summary -> {
+                    LOGGER.info("Потоковая отправка завершена: всего {}, подтверждено {}, отклонено {}",
+                            summary.getTotal(), summary.getAcked(), summary.getNacked());
+                    return ServerResponse.ok().bodyValue(summary);
+                })
+                .onErrorResume(e -> e instanceof DecodingException || e instanceof IllegalArgumentException, e -> {
+                    LOGGER.error("Некорректное тело потокового запроса: {}", e.getMessage());
+                    return ServerResponse.status(HttpStatus.BAD_REQUEST)
+                            .bodyValue("Некорректное тело потокового запроса: " + e.getMessage());
+                })
+                .onErrorResume(RabbitMQException.class, e -> {
+                    LOGGER.error("Ошибка при потоковой отправке сообщений: {}", e.getMessage(), e);
+                    return ServerResponse.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                            .bodyValue("Ошибка при потоковой отправке сообщений: " + e.getMessage());
+                });
+    }
+}
@@ -0,0 +1,44 @@
+package com.royal.senderService.controller;
+
+import com.royal.senderService.dto.ShardStats;
+import com.royal.senderService.service.ShardedRabbitPublisher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * Контроллер для получения статистики шардированной публикации.
+ * Доступен только при включенном режиме шардирования.
+ */
+@RestController
+@RequestMapping("/api/v1")
+@ConditionalOnProperty(name = "rabbitmq.publisher.sharding.enabled", havingValue = "true")
+public class ShardController {
+
+    private final ShardedRabbitPublisher shardedRabbitPublisher;
+
+    /**
+     * Конструктор контроллера статистики шардов.
+     *
+     * @param shardedRabbitPublisher Сервис шардированной публикации.
+     */
+    @Autowired
+    public ShardController(ShardedRabbitPublisher shardedRabbitPublisher) {
+        this.shardedRabbitPublisher = shardedRabbitPublisher;
+    }
+
+    /**
+     * Обрабатывает GET-запрос для получения статистики по шардам.
+     *
+     * @return Список статистики шардов.
+     */
+    @GetMapping("/publish/shards")
+    public ResponseEntity<List<ShardStats>> getShardStats() {
+        return ResponseEntity.ok(shardedRabbitPublisher.getStats());
+    }
+}
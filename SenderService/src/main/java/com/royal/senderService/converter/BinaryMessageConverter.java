@@ -0,0 +1,131 @@
+package com.royal.senderService.converter;
+
+import com.royal.senderService.dto.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+
+/**
+ * Компактный бинарный конвертер {@link Message} для RabbitMQ.
+ * Формат фиксированный (big-endian): версия формата (1 байт), флаги наличия полей (1 байт: id, имя, временная метка),
+ * id (8 байт), длина имени в байтах (4 байта), имя в UTF-8, цена (8 байт, double), временная метка в миллисекундах
+ * эпохи (8 байт). Поля, отсутствие которых отмечено флагом, записываются нулями, поэтому любое значение id
+ * и временной метки передается без искажений.
+ */
+public class BinaryMessageConverter implements MessageConverter {
+
+    /**
+     * Тип содержимого сообщений в бинарном формате.
+     */
+    public static final String CONTENT_TYPE = "application/x-royal-message";
+
+    private static final byte VERSION = 2;
+
+    private static final int HAS_ID = 1;
+    private static final int HAS_NAME = 1 << 1;
+    private static final int HAS_TIMESTAMP = 1 << 2;
+
+    private static final int FIXED_SIZE = 2 + Long.BYTES + Integer.BYTES + Double.BYTES + Long.BYTES;
+
+    private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle DOUBLE = MethodHandles.byteArrayViewVarHandle(double[].class, ByteOrder.BIG_ENDIAN);
+
+    @Override
+    public org.springframework.amqp.core.Message toMessage(Object object, MessageProperties messageProperties) {
+        if (!(object instanceof Message message)) {
+            throw new MessageConversionException("Бинарный формат поддерживает только Message, получено: "
+                    + (object == null ? "null" : object.getClass().getName()));
+        }
+        messageProperties.setContentType(CONTENT_TYPE);
+        byte[] body = encode(message);
+        messageProperties.setContentLength(body.length);
+        return new org.springframework.amqp.core.Message(body, messageProperties);
+    }
+
+    @Override
+    public Object fromMessage(org.springframework.amqp.core.Message message) {
+        byte[] body = message.getBody();
+        return decode(body, 0, body.length);
+    }
+
+    /**
+     * Кодирует сообщение в бинарный формат.
+     *
+     * @param message сообщение.
+     * @return массив байтов точного размера.
+     */
+    public static byte[] encode(Message message) {
+        byte[] name = message.getName() == null ? null : message.getName().getBytes(StandardCharsets.UTF_8);
+        int nameLength = name == null ? 0 : name.length;
+        byte[] body = new byte[FIXED_SIZE + nameLength];
+
+        int flags = (message.getId() == null ? 0 : HAS_ID) | (name == null ? 0 : HAS_NAME)
+                | (message.getTimestamp() == null ? 0 : HAS_TIMESTAMP);
+        int offset = 0;
+        body[offset++] = VERSION;
+        body[offset++] = (byte) flags;
+        LONG.set(body, offset, message.getId() == null ? 0L : message.getId());
+        offset += Long.BYTES;
+        INT.set(body, offset, nameLength);
+        offset += Integer.BYTES;
+        if (name != null) {
+            System.arraycopy(name, 0, body, offset, nameLength);
+            offset += nameLength;
+        }
+        DOUBLE.set(body, offset, message.getPrice());
+        offset += Double.BYTES;
+        LONG.set(body, offset, message.getTimestamp() == null ? 0L : message.getTimestamp().getTime());
+        return body;
+    }
+
+    /**
+     * Декодирует сообщение из бинарного формата.
+     *
+     * @param body   массив байтов.
+     * @param offset смещение начала сообщения.
+     * @param length длина закодированного сообщения.
+     * @return сообщение.
+     * @throws MessageConversionException если данные повреждены, длина не совпадает с содержимым
+     *                                    или версия формата не поддерживается.
+     */
+    public static Message decode(byte[] body, int offset, int length) {
+        if (length <= 0 || body[offset] != VERSION) {
+            throw new MessageConversionException("Неподдерживаемая версия бинарного сообщения длиной " + length);
+        }
+        if (length < FIXED_SIZE) {
+            throw new MessageConversionException("Некорректное бинарное сообщение длиной " + length);
+        }
+        int flags = body[offset + 1];
+        if ((flags & ~(HAS_ID | HAS_NAME | HAS_TIMESTAMP)) != 0) {
+            throw new MessageConversionException("Неизвестные флаги бинарного сообщения: " + flags);
+        }
+        int position = offset + 2;
+        long id = (long) LONG.get(body, position);
+        position += Long.BYTES;
+        int nameLength = (int) INT.get(body, position);
+        position += Integer.BYTES;
+        if (nameLength < 0 || nameLength != length - FIXED_SIZE || ((flags & HAS_NAME) == 0 && nameLength != 0)) {
+            throw new MessageConversionException("Длина имени " + nameLength
+                    + " не соответствует длине бинарного сообщения " + length);
+        }
+
+        Message message = new Message();
+        message.setId((flags & HAS_ID) == 0 ? null : id);
+        if ((flags & HAS_NAME) != 0) {
+            message.setName(new String(body, position, nameLength, StandardCharsets.UTF_8));
+        }
+        position += nameLength;
+        message.setPrice((double) DOUBLE.get(body, position));
+        position += Double.BYTES;
+        long timestamp = (long) LONG.get(body, position);
+        message.setTimestamp((flags & HAS_TIMESTAMP) == 0 ? null : new Timestamp(timestamp));
+        return message;
+    }
+}
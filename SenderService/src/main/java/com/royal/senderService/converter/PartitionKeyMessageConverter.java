@@ -0,0 +1,38 @@
+package com.royal.senderService.converter;
+
+import com.royal.senderService.dto.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+/**
+ * Конвертер-обертка, записывающий id сообщения в свойство message_id AMQP-сообщения.
+ * Обменник consistent-hash секционированной топологии хеширует по message_id, поэтому все сообщения
+ * с одним id попадают в одну секцию и обрабатываются по порядку.
+ */
+public class PartitionKeyMessageConverter implements MessageConverter {
+
+    private final MessageConverter delegate;
+
+    /**
+     * Конструктор конвертера.
+     *
+     * @param delegate конвертер, формирующий тело сообщения.
+     */
+    public PartitionKeyMessageConverter(MessageConverter delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public org.springframework.amqp.core.Message toMessage(Object object, MessageProperties messageProperties) {
+        org.springframework.amqp.core.Message amqpMessage = delegate.toMessage(object, messageProperties);
+        if (object instanceof Message message && message.getId() != null) {
+            amqpMessage.getMessageProperties().setMessageId(message.getId().toString());
+        }
+        return amqpMessage;
+    }
+
+    @Override
+    public Object fromMessage(org.springframework.amqp.core.Message message) {
+        return delegate.fromMessage(message);
+    }
+}
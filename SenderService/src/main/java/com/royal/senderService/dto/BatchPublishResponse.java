@@ -0,0 +1,38 @@
+package com.royal.senderService.dto;
+
+import java.util.List;
+
+/**
+ * DTO-класс, представляющий ответ на пакетную публикацию сообщений.
+ * Содержит итоговые счетчики подтвержденных и отклоненных сообщений, а также результат по каждому сообщению.
+ */
+
+public class BatchPublishResponse {
+    private int total;
+    private int acked;
+    private int nacked;
+    private List<PublishResult> results;
+
+    public BatchPublishResponse(List<PublishResult> results) {
+        this.results = results;
+        this.total = results.size();
+        this.acked = (int) results.stream().filter(PublishResult::isAcked).count();
+        this.nacked = total - acked;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getAcked() {
+        return acked;
+    }
+
+    public int getNacked() {
+        return nacked;
+    }
+
+    public List<PublishResult> getResults() {
+        return results;
+    }
+}
@@ -0,0 +1,52 @@
+package com.royal.senderService.dto;
+
+/**
+ * DTO-класс, представляющий итог потоковой (реактивной) публикации сообщений.
+ * Содержит число принятых сообщений, а также число подтвержденных, отклоненных и возвращенных брокером.
+ */
+
+public class IngestSummary {
+    private long total;
+    private long acked;
+    private long nacked;
+    private long returned;
+
+    public IngestSummary() {
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public long getAcked() {
+        return acked;
+    }
+
+    public long getNacked() {
+        return nacked;
+    }
+
+    public long getReturned() {
+        return returned;
+    }
+
+    /**
+     * Учитывает результат подтверждения одного сообщения.
+     *
+     * @param ack      подтверждено ли сообщение брокером.
+     * @param returned возвращено ли сообщение как немаршрутизируемое.
+     * @return текущий итог.
+     */
+    public IngestSummary add(boolean ack, boolean returned) {
+        this.total++;
+        if (ack) {
+            this.acked++;
+        } else {
+            this.nacked++;
+        }
+        if (returned) {
+            this.returned++;
+        }
+        return this;
+    }
+}
@@ -0,0 +1,62 @@
+package com.royal.senderService.dto;
+
+/**
+ * DTO-класс, представляющий результат публикации одного сообщения в RabbitMQ.
+ * Содержит идентификатор сообщения, идентификатор корреляции и результат подтверждения брокером (ack/nack).
+ */
+
+public class PublishResult {
+    private Long id;
+    private String correlationId;
+    private boolean acked;
+    private String reason;
+
+    public PublishResult(Long id, String correlationId, boolean acked, String reason) {
+        this.id = id;
+        this.correlationId = correlationId;
+        this.acked = acked;
+        this.reason = reason;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getCorrelationId() {
+        return correlationId;
+    }
+
+    public void setCorrelationId(String correlationId) {
+        this.correlationId = correlationId;
+    }
+
+    public boolean isAcked() {
+        return acked;
+    }
+
+    public void setAcked(boolean acked) {
+        this.acked = acked;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public void setReason(String reason) {
+        this.reason = reason;
+    }
+
+    @Override
+    public String toString() {
+        return "PublishResult{" +
+                "id=" + id +
+                ", correlationId='" + correlationId + '\'' +
+                ", acked=" + acked +
+                ", reason='" + reason + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,55 @@
+package com.royal.senderService.dto;
+
+/**
+ * DTO-класс, представляющий статистику одного шарда публикации.
+ * Шард соответствует выделенному каналу на одном из соединений с RabbitMQ.
+ */
+
+public class ShardStats {
+    private int shard;
+    private int connection;
+    private long published;
+    private long acked;
+    private long nacked;
+    private int pending;
+    private double messagesPerSecond;
+
+    public ShardStats(int shard, int connection, long published, long acked, long nacked, int pending,
+                      double messagesPerSecond) {
+        this.shard = shard;
+        this.connection = connection;
+        this.published = published;
+        this.acked = acked;
+        this.nacked = nacked;
+        this.pending = pending;
+        this.messagesPerSecond = messagesPerSecond;
+    }
+
+    public int getShard() {
+        return shard;
+    }
+
+    public int getConnection() {
+        return connection;
+    }
+
+    public long getPublished() {
+        return published;
+    }
+
+    public long getAcked() {
+        return acked;
+    }
+
+    public long getNacked() {
+        return nacked;
+    }
+
+    public int getPending() {
+        return pending;
+    }
+
+    public double getMessagesPerSecond() {
+        return messagesPerSecond;
+    }
+}
@@ -0,0 +1,15 @@
+package com.royal.senderService.exception;
+
+/**
+ * Исключение, выбрасываемое, когда пакет сообщений больше лимита неподтвержденных сообщений.
+ */
+public class BatchTooLargeException extends IllegalArgumentException {
+    /**
+     * Конструктор исключения с сообщением об ошибке.
+     *
+     * @param message описание ошибки.
+     */
+    public BatchTooLargeException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,15 @@
+package com.royal.senderService.exception;
+
+/**
+ * Исключение, выбрасываемое, когда превышен лимит сообщений, ожидающих подтверждения от RabbitMQ.
+ */
+public class PublisherOverloadedException extends RabbitMQException {
+    /**
+     * Конструктор исключения с сообщением об ошибке.
+     *
+     * @param message описание ошибки.
+     */
+    public PublisherOverloadedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,25 @@
+package com.royal.senderService.exception;
+
+/**
+ * Исключение, выбрасываемое при ошибках работы с локальным журналом сообщений (spool).
+ */
+public class SpoolException extends RuntimeException {
+    /**
+     * Конструктор исключения с сообщением об ошибке.
+     *
+     * @param message описание ошибки.
+     */
+    public SpoolException(String message) {
+        super(message);
+    }
+
+    /**
+     * Конструктор исключения с сообщением об ошибке и причиной.
+     *
+     * @param message описание ошибки.
+     * @param cause   причина ошибки.
+     */
+    public SpoolException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,193 @@
+package com.royal.senderService.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.amqp.core.ReturnedMessage;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Метрики пути публикации сообщений в RabbitMQ.
+ * <ul>
+ *     <li>{@code rabbitmq.publish.latency} — время записи сообщения в канал (гистограмма);</li>
+ *     <li>{@code rabbitmq.publish.messages} — число опубликованных сообщений по ключу маршрутизации;</li>
+ *     <li>{@code rabbitmq.publish.confirm.latency} — время от создания корреляции до подтверждения брокером
+ *     (гистограмма, тег {@code result}: ack/nack);</li>
+ *     <li>{@code rabbitmq.publish.nacks} и {@code rabbitmq.publish.returns} — отклоненные и возвращенные сообщения;</li>
+ *     <li>{@code rabbitmq.publish.outstanding.confirms} — число сообщений, ожидающих подтверждения.</li>
+ * </ul>
+ */
+@Component
+public class PublishMetrics {
+
+    private static final Duration MIN_EXPECTED_LATENCY = Duration.ofNanos(10_000);
+    private static final Duration MAX_EXPECTED_LATENCY = Duration.ofSeconds(30);
+
+    private final MeterRegistry registry;
+    private final Map<String, RoutingKeyMeters> routingKeyMeters = new ConcurrentHashMap<>();
+
+    /**
+     * Конструктор метрик публикации.
+     *
+     * @param registry реестр метрик.
+     */
+    @Autowired
+    public PublishMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Учитывает запись сообщения в канал.
+     *
+     * @param routingKey ключ маршрутизации.
+     * @param startNanos момент начала публикации по {@link System#nanoTime()}.
+     */
+    public void recordPublish(String routingKey, long startNanos) {
+        RoutingKeyMeters meters = meters(routingKey);
+        meters.publishLatency.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        meters.published.increment();
+    }
+
+    /**
+     * Учитывает сообщение, записанное в канал без замера времени записи (например, реактивным отправителем).
+     *
+     * @param routingKey ключ маршрутизации.
+     */
+    public void recordPublished(String routingKey) {
+        meters(routingKey).published.increment();
+    }
+
+    /**
+     * Учитывает подтверждение брокера. Корреляции, созданные не через {@link TimedCorrelationData}, пропускаются.
+     *
+     * @param correlationData корреляция сообщения.
+     * @param ack             true, если брокер подтвердил сообщение.
+     */
+    public void recordConfirm(CorrelationData correlationData, boolean ack) {
+        if (correlationData instanceof TimedCorrelationData timed) {
+            recordConfirm(timed.getRoutingKey(), ack, timed.getCreatedNanos());
+        }
+    }
+
+    /**
+     * Учитывает подтверждение брокера.
+     *
+     * @param routingKey   ключ маршрутизации.
+     * @param ack          true, если брокер подтвердил сообщение.
+     * @param createdNanos момент создания корреляции по {@link System#nanoTime()}.
+     */
+    public void recordConfirm(String routingKey, boolean ack, long createdNanos) {
+        RoutingKeyMeters meters = meters(routingKey);
+        long elapsed = System.nanoTime() - createdNanos;
+        if (ack) {
+            meters.confirmAck.record(elapsed, TimeUnit.NANOSECONDS);
+        } else {
+            meters.confirmNack.record(elapsed, TimeUnit.NANOSECONDS);
+            meters.nacks.increment();
+        }
+    }
+
+    /**
+     * Учитывает сообщение, возвращенное брокером как немаршрутизируемое.
+     *
+     * @param returned возвращенное сообщение.
+     */
+    public void recordReturn(ReturnedMessage returned) {
+        recordReturn(returned.getRoutingKey());
+    }
+
+    /**
+     * Учитывает сообщение, возвращенное брокером как немаршрутизируемое.
+     *
+     * @param routingKey ключ маршрутизации.
+     */
+    public void recordReturn(String routingKey) {
+        meters(routingKey).returns.increment();
+    }
+
+    /**
+     * Регистрирует датчик числа сообщений, ожидающих подтверждения.
+     *
+     * @param source   источник ожиданий (async, shard-N и т.п.).
+     * @param supplier функция, возвращающая текущее значение.
+     */
+    public void gaugeOutstandingConfirms(String source, Supplier<Number> supplier) {
+        Gauge.builder("rabbitmq.publish.outstanding.confirms", supplier)
+                .description("Сообщения, ожидающие подтверждения брокером")
+                .tag("source", source)
+                .register(registry);
+    }
+
+    /**
+     * Регистрирует датчик длины очереди публикации.
+     *
+     * @param source   источник очереди (shard-N и т.п.).
+     * @param supplier функция, возвращающая текущее значение.
+     */
+    public void gaugePendingPublishes(String source, Supplier<Number> supplier) {
+        Gauge.builder("rabbitmq.publish.pending", supplier)
+                .description("Сообщения, ожидающие записи в канал")
+                .tag("source", source)
+                .register(registry);
+    }
+
+    private RoutingKeyMeters meters(String routingKey) {
+        return routingKeyMeters.computeIfAbsent(routingKey == null ? "" : routingKey, RoutingKeyMeters::new);
+    }
+
+    /**
+     * Метры одного ключа маршрутизации. Кешируются, чтобы не искать их в реестре на каждое сообщение.
+     */
+    private final class RoutingKeyMeters {
+        private final Timer publishLatency;
+        private final Counter published;
+        private final Timer confirmAck;
+        private final Timer confirmNack;
+        private final Counter nacks;
+        private final Counter returns;
+
+        private RoutingKeyMeters(String routingKey) {
+            publishLatency = Timer.builder("rabbitmq.publish.latency")
+                    .description("Время записи сообщения в канал")
+                    .tag("routing_key", routingKey)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(MIN_EXPECTED_LATENCY)
+                    .maximumExpectedValue(MAX_EXPECTED_LATENCY)
+                    .register(registry);
+            published = Counter.builder("rabbitmq.publish.messages")
+                    .description("Опубликованные сообщения")
+                    .tag("routing_key", routingKey)
+                    .register(registry);
+            confirmAck = confirmTimer(routingKey, "ack");
+            confirmNack = confirmTimer(routingKey, "nack");
+            nacks = Counter.builder("rabbitmq.publish.nacks")
+                    .description("Сообщения, отклоненные брокером")
+                    .tag("routing_key", routingKey)
+                    .register(registry);
+            returns = Counter.builder("rabbitmq.publish.returns")
+                    .description("Сообщения, возвращенные брокером как немаршрутизируемые")
+                    .tag("routing_key", routingKey)
+                    .register(registry);
+        }
+
+        private Timer confirmTimer(String routingKey, String result) {
+            return Timer.builder("rabbitmq.publish.confirm.latency")
+                    .description("Время от создания корреляции до подтверждения брокером")
+                    .tag("routing_key", routingKey)
+                    .tag("result", result)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(MIN_EXPECTED_LATENCY)
+                    .maximumExpectedValue(MAX_EXPECTED_LATENCY)
+                    .register(registry);
+        }
+    }
+}
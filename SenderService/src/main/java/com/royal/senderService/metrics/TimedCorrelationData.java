@@ -0,0 +1,34 @@
+package com.royal.senderService.metrics;
+
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+
+import java.util.UUID;
+
+/**
+ * Корреляция публикации, запоминающая момент создания и ключ маршрутизации.
+ * Используется для измерения времени от публикации до подтверждения брокером.
+ */
+public class TimedCorrelationData extends CorrelationData {
+
+    private final String routingKey;
+    private final long createdNanos;
+
+    /**
+     * Создает корреляцию со случайным идентификатором.
+     *
+     * @param routingKey ключ маршрутизации сообщения.
+     */
+    public TimedCorrelationData(String routingKey) {
+        super(UUID.randomUUID().toString());
+        this.routingKey = routingKey;
+        this.createdNanos = System.nanoTime();
+    }
+
+    public String getRoutingKey() {
+        return routingKey;
+    }
+
+    public long getCreatedNanos() {
+        return createdNanos;
+    }
+}
@@ -1,17 +1,31 @@
 package com.royal.senderService.service;
 
 import com.royal.senderService.dto.Message;
+import com.royal.senderService.dto.PublishResult;
+import com.royal.senderService.exception.PublisherOverloadedException;
 import com.royal.senderService.exception.RabbitMQException;
+import com.royal.senderService.metrics.PublishMetrics;
+import com.royal.senderService.metrics.TimedCorrelationData;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.amqp.rabbit.connection.CorrelationData;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.sql.Timestamp;
-import java.util.UUID;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Сервис для отправки сообщений в RabbitMQ.
@@ -25,40 +39,272 @@ public class RabbitMQProducer {
     @Value("${rabbitmq.routing.key.name}")
     private String routingJsonKey;
 
+    @Value("${rabbitmq.publish.confirm-timeout-ms}")
+    private long confirmTimeoutMs;
+
+    @Value("${rabbitmq.publish.max-outstanding-confirms}")
+    private int maxOutstandingConfirms;
+
     private static final Logger LOGGER = LoggerFactory.getLogger(RabbitMQProducer.class);
 
     private final RabbitTemplate rabbitTemplate;
 
+    private final ShardedRabbitPublisher shardedPublisher;
+
+    private final PublishMetrics publishMetrics;
+
+    private Semaphore outstandingConfirms;
+
     /**
      * Конструктор сервиса RabbitMQProducer.
      *
-     * @param rabbitTemplate объект для взаимодействия с RabbitMQ.
+     * @param rabbitTemplate   объект для взаимодействия с RabbitMQ.
+     * @param shardedPublisher шардированный публикатор, если включен режим шардирования.
+     * @param publishMetrics   метрики публикации.
      */
     @Autowired
-    public RabbitMQProducer(RabbitTemplate rabbitTemplate) {
+    public RabbitMQProducer(RabbitTemplate rabbitTemplate, ObjectProvider<ShardedRabbitPublisher> shardedPublisher,
+                            PublishMetrics publishMetrics) {
         this.rabbitTemplate = rabbitTemplate;
+        this.shardedPublisher = shardedPublisher.getIfAvailable();
+        this.publishMetrics = publishMetrics;
+    }
+
+    /**
+     * Инициализирует ограничитель числа сообщений, ожидающих подтверждения, и датчик его заполнения.
+     */
+    @PostConstruct
+    public void init() {
+        this.outstandingConfirms = new Semaphore(maxOutstandingConfirms);
+        publishMetrics.gaugeOutstandingConfirms("async",
+                () -> maxOutstandingConfirms - outstandingConfirms.availablePermits());
     }
 
     /**
      * Отправляет сообщение в RabbitMQ.
+     * В режиме шардирования сообщение публикуется потоком шарда, поэтому метод дожидается подтверждения брокера,
+     * чтобы ошибки публикации и отклонения дошли до вызывающего.
      *
      * @param message объект сообщения для отправки.
-     * @throws RabbitMQException если возникает ошибка при отправке.
+     * @throws PublisherOverloadedException если очередь шарда заполнена.
+     * @throws RabbitMQException            если возникает ошибка при отправке.
      */
     public void sendMessage(Message message) {
         try {
             message.setTimestamp(new Timestamp(System.currentTimeMillis()));
 
-            CorrelationData correlationData = new CorrelationData(UUID.randomUUID().toString());
+            CorrelationData correlationData = new TimedCorrelationData(routingJsonKey);
 
             LOGGER.info("Отправка сообщения: {}", message);
 
-            rabbitTemplate.convertAndSend(exchange, routingJsonKey, message, correlationData);
+            publish(message, correlationData);
+            if (shardedPublisher != null) {
+                awaitShardConfirm(message, correlationData);
+            }
 
             LOGGER.info("Сообщение успешно отправлено в RabbitMQ: {}", message);
+        } catch (PublisherOverloadedException e) {
+            LOGGER.warn("Отправка отклонена: {}", e.getMessage());
+            throw e;
         } catch (Exception e) {
             LOGGER.error("Ошибка при отправке сообщения в RabbitMQ: {}", e.getMessage(), e);
             throw new RabbitMQException("Ошибка при отправке сообщения в RabbitMQ", e);
         }
     }
+
+    /**
+     * Ожидает подтверждения сообщения, опубликованного шардом.
+     *
+     * @param message         отправленное сообщение.
+     * @param correlationData корреляция сообщения.
+     * @throws Exception если публикация завершилась ошибкой, подтверждение не получено или сообщение отклонено.
+     */
+    private void awaitShardConfirm(Message message, CorrelationData correlationData) throws Exception {
+        try {
+            correlationData.getFuture().get(confirmTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw new RabbitMQException("Шард не смог опубликовать сообщение", e.getCause());
+        }
+        PublishResult result = toPublishResult(message, correlationData);
+        if (!result.isAcked()) {
+            throw new RabbitMQException("Брокер отклонил сообщение: " + result.getReason());
+        }
+    }
+
+    /**
+     * Асинхронно отправляет сообщение в RabbitMQ и возвращает future, завершающийся после подтверждения брокера.
+     * Число неподтвержденных сообщений ограничено; при превышении лимита future сразу завершается ошибкой.
+     *
+     * @param message объект сообщения для отправки.
+     * @return future с результатом подтверждения (ack/nack). Завершается с {@link PublisherOverloadedException}
+     * при превышении лимита и с {@link RabbitMQException} при ошибке отправки или таймауте подтверждения.
+     */
+    public CompletableFuture<PublishResult> sendMessageAsync(Message message) {
+        if (!outstandingConfirms.tryAcquire()) {
+            LOGGER.warn("Превышен лимит неподтвержденных сообщений ({}), id: {}", maxOutstandingConfirms, message.getId());
+            return CompletableFuture.failedFuture(new PublisherOverloadedException(
+                    "Превышен лимит неподтвержденных сообщений: " + maxOutstandingConfirms));
+        }
+        try {
+            message.setTimestamp(new Timestamp(System.currentTimeMillis()));
+
+            CorrelationData correlationData = new TimedCorrelationData(routingJsonKey);
+
+            LOGGER.info("Асинхронная отправка сообщения: {}", message);
+
+            publish(message, correlationData);
+
+            // Таймаут ставится на копию: исходный future завершают колбэки подтверждения и метрики.
+            return correlationData.getFuture().copy()
+                    .orTimeout(confirmTimeoutMs, TimeUnit.MILLISECONDS)
+                    .handle((confirm, e) -> {
+                        outstandingConfirms.release();
+                        if (e != null) {
+                            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                            if (cause instanceof TimeoutException) {
+                                throw new RabbitMQException("Подтверждение от RabbitMQ не получено за " + confirmTimeoutMs + " мс", cause);
+                            }
+                            throw new RabbitMQException("Ошибка при ожидании подтверждения от RabbitMQ", cause);
+                        }
+                        return toPublishResult(message, correlationData);
+                    });
+        } catch (PublisherOverloadedException e) {
+            outstandingConfirms.release();
+            LOGGER.warn("Отправка отклонена: {}", e.getMessage());
+            return CompletableFuture.failedFuture(e);
+        } catch (Exception e) {
+            outstandingConfirms.release();
+            LOGGER.error("Ошибка при асинхронной отправке сообщения в RabbitMQ: {}", e.getMessage(), e);
+            return CompletableFuture.failedFuture(new RabbitMQException("Ошибка при отправке сообщения в RabbitMQ", e));
+        }
+    }
+
+    /**
+     * Публикует одно сообщение через шардированный публикатор, если он включен, иначе через общий шаблон.
+     * Время записи в канал шардированный публикатор учитывает сам, в своем потоке.
+     *
+     * @param message         объект сообщения для отправки.
+     * @param correlationData корреляция для отслеживания подтверждения.
+     */
+    private void publish(Message message, CorrelationData correlationData) {
+        if (shardedPublisher != null) {
+            shardedPublisher.publish(message, correlationData);
+        } else {
+            long start = System.nanoTime();
+            rabbitTemplate.convertAndSend(exchange, routingJsonKey, message, correlationData);
+            publishMetrics.recordPublish(routingJsonKey, start);
+        }
+    }
+
+    /**
+     * Публикует пакет сообщений на одном канале и один раз ожидает подтверждения брокера для всего пакета.
+     * Каждое сообщение занимает место в лимите неподтвержденных сообщений, как и при асинхронной отправке:
+     * сообщения сверх лимита не публикуются и возвращаются отклоненными. Если публикация прервалась ошибкой,
+     * уже отправленные сообщения получают результат подтверждения, а оставшиеся возвращаются отклоненными
+     * с причиной ошибки, поэтому клиент может повторить только их.
+     *
+     * @param messages сообщения пакета.
+     * @return результаты подтверждения (ack/nack) для каждого сообщения в порядке пакета.
+     * @throws RabbitMQException если ожидание подтверждений прервано.
+     */
+    public List<PublishResult> sendBatch(List<Message> messages) {
+        // correlations[i] == null — сообщение не опубликовано из-за лимита; список содержит только обработанные сообщения.
+        List<CorrelationData> correlations = new ArrayList<>(messages.size());
+        String failure = null;
+        try {
+            rabbitTemplate.invoke(operations -> {
+                Timestamp timestamp = new Timestamp(System.currentTimeMillis());
+                for (Message message : messages) {
+                    if (!outstandingConfirms.tryAcquire()) {
+                        correlations.add(null);
+                        continue;
+                    }
+                    try {
+                        message.setTimestamp(timestamp);
+                        CorrelationData correlationData = new TimedCorrelationData(routingJsonKey);
+                        long start = System.nanoTime();
+                        operations.convertAndSend(exchange, routingJsonKey, message, correlationData);
+                        publishMetrics.recordPublish(routingJsonKey, start);
+                        correlations.add(correlationData);
+                    } catch (RuntimeException e) {
+                        outstandingConfirms.release();
+                        throw e;
+                    }
+                }
+                return null;
+            });
+            LOGGER.info("Пакет из {} сообщений отправлен в RabbitMQ, ожидание подтверждений", correlations.size());
+        } catch (Exception e) {
+            failure = e.getMessage();
+            LOGGER.error("Ошибка при отправке пакета в RabbitMQ после {} сообщений: {}",
+                    correlations.size(), e.getMessage(), e);
+        }
+
+        try {
+            awaitConfirms(correlations);
+        } finally {
+            for (CorrelationData correlationData : correlations) {
+                if (correlationData != null) {
+                    outstandingConfirms.release();
+                }
+            }
+        }
+
+        List<PublishResult> results = new ArrayList<>(messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            Message message = messages.get(i);
+            if (i >= correlations.size()) {
+                results.add(new PublishResult(message.getId(), null, false, "Не отправлено: " + failure));
+            } else if (correlations.get(i) == null) {
+                results.add(new PublishResult(message.getId(), null, false,
+                        "Превышен лимит неподтвержденных сообщений: " + maxOutstandingConfirms));
+            } else {
+                results.add(toPublishResult(message, correlations.get(i)));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Ожидает подтверждения для всех переданных корреляций с общим таймаутом на пакет.
+     *
+     * @param correlations корреляции опубликованных сообщений.
+     */
+    private void awaitConfirms(List<CorrelationData> correlations) {
+        CompletableFuture<?>[] futures = correlations.stream()
+                .filter(Objects::nonNull)
+                .map(CorrelationData::getFuture)
+                .toArray(CompletableFuture[]::new);
+        try {
+            CompletableFuture.allOf(futures).get(confirmTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            LOGGER.warn("Не все подтверждения пакета получены за {} мс", confirmTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RabbitMQException("Ожидание подтверждений пакета прервано", e);
+        } catch (ExecutionException e) {
+            throw new RabbitMQException("Ошибка при ожидании подтверждений пакета", e);
+        }
+    }
+
+    /**
+     * Формирует результат публикации по состоянию подтверждения сообщения.
+     *
+     * @param message         отправленное сообщение.
+     * @param correlationData корреляция сообщения.
+     * @return результат публикации.
+     */
+    private PublishResult toPublishResult(Message message, CorrelationData correlationData) {
+        CompletableFuture<CorrelationData.Confirm> future = correlationData.getFuture();
+        if (!future.isDone()) {
+            return new PublishResult(message.getId(), correlationData.getId(), false, "Таймаут ожидания подтверждения");
+        }
+        CorrelationData.Confirm confirm = future.join();
+        if (confirm.isAck() && correlationData.getReturned() != null) {
+            // Брокер подтверждает и немаршрутизируемое сообщение; возврат приходит раньше подтверждения.
+            return new PublishResult(message.getId(), correlationData.getId(), false,
+                    "Сообщение не маршрутизировано: " + correlationData.getReturned().getReplyText());
+        }
+        return new PublishResult(message.getId(), correlationData.getId(), confirm.isAck(), confirm.getReason());
+    }
 }
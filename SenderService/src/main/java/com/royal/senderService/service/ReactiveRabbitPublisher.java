@@ -0,0 +1,219 @@
+package com.royal.senderService.service;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.BlockedListener;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+import com.royal.senderService.dto.IngestSummary;
+import com.royal.senderService.dto.Message;
+import com.royal.senderService.exception.RabbitMQException;
+import com.royal.senderService.metrics.PublishMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.RabbitConnectionFactoryBean;
+import org.springframework.amqp.rabbit.support.DefaultMessagePropertiesConverter;
+import org.springframework.amqp.rabbit.support.MessagePropertiesConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.RabbitConnectionFactoryBeanConfigurer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.rabbitmq.CorrelableOutboundMessage;
+import reactor.rabbitmq.RabbitFlux;
+import reactor.rabbitmq.SendOptions;
+import reactor.rabbitmq.Sender;
+import reactor.rabbitmq.SenderOptions;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Сервис неблокирующей публикации потока сообщений в RabbitMQ.
+ * Число неподтвержденных сообщений ограничено, а при получении connection.blocked от брокера
+ * выдача новых сообщений приостанавливается до connection.unblocked. Ограничение передается вверх по потоку,
+ * поэтому чтение HTTP-тела замедляется вместо буферизации сообщений в памяти.
+ */
+@Service
+@ConditionalOnProperty(name = "rabbitmq.reactive.enabled", havingValue = "true")
+public class ReactiveRabbitPublisher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReactiveRabbitPublisher.class);
+
+    private static final int PUBLISH_PREFETCH = 32;
+
+    @Value("${rabbitmq.exchange.name}")
+    private String exchange;
+
+    @Value("${rabbitmq.routing.key.name}")
+    private String routingJsonKey;
+
+    @Value("${rabbitmq.reactive.max-in-flight}")
+    private int maxInFlight;
+
+    private final RabbitConnectionFactoryBeanConfigurer connectionFactoryBeanConfigurer;
+    private final MessageConverter messageConverter;
+    private final PublishMetrics publishMetrics;
+    private final MessagePropertiesConverter propertiesConverter = new DefaultMessagePropertiesConverter();
+
+    private final AtomicReference<Sinks.Empty<Void>> blockedGate = new AtomicReference<>();
+
+    private Scheduler publishScheduler;
+    private Sender sender;
+
+    /**
+     * Конструктор сервиса реактивной публикации.
+     *
+     * @param connectionFactoryBeanConfigurer настройщик параметров подключения из spring.rabbitmq.*.
+     * @param messageConverter                конвертер сообщений.
+     * @param publishMetrics                  метрики публикации.
+     */
+    @Autowired
+    public ReactiveRabbitPublisher(RabbitConnectionFactoryBeanConfigurer connectionFactoryBeanConfigurer,
+                                   MessageConverter messageConverter, PublishMetrics publishMetrics) {
+        this.connectionFactoryBeanConfigurer = connectionFactoryBeanConfigurer;
+        this.messageConverter = messageConverter;
+        this.publishMetrics = publishMetrics;
+    }
+
+    /**
+     * Создает реактивный отправитель с отдельным соединением, отслеживающим блокировку брокером.
+     */
+    @PostConstruct
+    public void start() {
+        ConnectionFactory connectionFactory = createConnectionFactory();
+        Mono<Connection> connectionMono = Mono.fromCallable(() -> {
+            Connection connection = connectionFactory.newConnection("sender-reactive");
+            connection.addBlockedListener(new FlowControlListener());
+            return connection;
+        }).cache();
+        publishScheduler = Schedulers.newBoundedElastic(Schedulers.DEFAULT_BOUNDED_ELASTIC_SIZE,
+                Schedulers.DEFAULT_BOUNDED_ELASTIC_QUEUESIZE, "rabbit-reactive-publish");
+        sender = RabbitFlux.createSender(new SenderOptions().connectionMono(connectionMono));
+        LOGGER.info("Реактивная публикация запущена, лимит неподтвержденных сообщений {}", maxInFlight);
+    }
+
+    /**
+     * Закрывает отправитель и соединение.
+     */
+    @PreDestroy
+    public void stop() {
+        sender.close();
+        publishScheduler.dispose();
+    }
+
+    /**
+     * Публикует поток сообщений с подтверждениями брокера.
+     *
+     * @param messages поток сообщений.
+     * @return итог публикации после подтверждения всех сообщений потока. Ошибки разбора тела
+     * ({@link DecodingException}) и некорректные сообщения ({@link IllegalArgumentException}) передаются как есть,
+     * остальные ошибки оборачиваются в {@link RabbitMQException}.
+     */
+    public Mono<IngestSummary> publish(Flux<Message> messages) {
+        Flux<CorrelableOutboundMessage<Correlation>> outbound = messages
+                .delayUntil(message -> awaitUnblocked())
+                .publishOn(publishScheduler, PUBLISH_PREFETCH)
+                .map(this::toOutboundMessage);
+
+        SendOptions sendOptions = new SendOptions().maxInFlight(maxInFlight, publishScheduler).trackReturned(true);
+        return sender.sendWithTypedPublishConfirms(outbound, sendOptions)
+                .doOnNext(result -> {
+                    Correlation correlation = result.getOutboundMessage().getCorrelationMetadata();
+                    publishMetrics.recordConfirm(routingJsonKey, result.isAck(), correlation.createdNanos());
+                    if (result.isReturned()) {
+                        publishMetrics.recordReturn(routingJsonKey);
+                    }
+                    if (!result.isAck()) {
+                        LOGGER.error("Брокер отклонил сообщение id: {}", correlation.id());
+                    }
+                })
+                .reduceWith(IngestSummary::new, (summary, result) -> summary.add(result.isAck(), result.isReturned()))
+                .onErrorMap(e -> !(e instanceof RabbitMQException) && !(e instanceof IllegalArgumentException)
+                                && !(e instanceof DecodingException),
+                        e -> new RabbitMQException("Ошибка при реактивной отправке сообщений в RabbitMQ", e));
+    }
+
+    /**
+     * Возвращает Mono, завершающийся, когда брокер не блокирует публикацию.
+     *
+     * @return Mono ожидания снятия блокировки.
+     */
+    private Mono<Void> awaitUnblocked() {
+        Sinks.Empty<Void> gate = blockedGate.get();
+        return gate == null ? Mono.empty() : gate.asMono();
+    }
+
+    /**
+     * Преобразует сообщение в исходящее сообщение AMQP через настроенный конвертер.
+     *
+     * @param message сообщение.
+     * @return исходящее сообщение с идентификатором и моментом создания в качестве метаданных корреляции.
+     */
+    private CorrelableOutboundMessage<Correlation> toOutboundMessage(Message message) {
+        long start = System.nanoTime();
+        message.setTimestamp(new Timestamp(System.currentTimeMillis()));
+        org.springframework.amqp.core.Message amqpMessage = messageConverter.toMessage(message, new MessageProperties());
+        AMQP.BasicProperties properties = propertiesConverter.fromMessageProperties(
+                amqpMessage.getMessageProperties(), StandardCharsets.UTF_8.name());
+        publishMetrics.recordPublished(routingJsonKey);
+        return new CorrelableOutboundMessage<>(exchange, routingJsonKey, properties, amqpMessage.getBody(),
+                new Correlation(message.getId(), start));
+    }
+
+    /**
+     * Создает клиентскую фабрику соединений с параметрами из spring.rabbitmq.*.
+     *
+     * @return фабрика соединений клиента RabbitMQ.
+     */
+    private ConnectionFactory createConnectionFactory() {
+        try {
+            RabbitConnectionFactoryBean factoryBean = new RabbitConnectionFactoryBean();
+            connectionFactoryBeanConfigurer.configure(factoryBean);
+            factoryBean.afterPropertiesSet();
+            return factoryBean.getObject();
+        } catch (Exception e) {
+            throw new RabbitMQException("Не удалось создать фабрику соединений для реактивной публикации", e);
+        }
+    }
+
+    /**
+     * Метаданные корреляции исходящего сообщения.
+     *
+     * @param id           идентификатор сообщения.
+     * @param createdNanos момент подготовки сообщения по {@link System#nanoTime()}.
+     */
+    private record Correlation(Long id, long createdNanos) {
+    }
+
+    /**
+     * Слушатель connection.blocked/unblocked, управляющий шлюзом публикации.
+     */
+    private final class FlowControlListener implements BlockedListener {
+        @Override
+        public void handleBlocked(String reason) throws IOException {
+            LOGGER.warn("Брокер заблокировал публикацию: {}", reason);
+            blockedGate.compareAndSet(null, Sinks.empty());
+        }
+
+        @Override
+        public void handleUnblocked() throws IOException {
+            LOGGER.info("Брокер снял блокировку публикации");
+            Sinks.Empty<Void> gate = blockedGate.getAndSet(null);
+            if (gate != null) {
+                gate.tryEmitEmpty();
+            }
+        }
+    }
+}
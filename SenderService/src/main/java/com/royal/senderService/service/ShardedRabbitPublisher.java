@@ -0,0 +1,322 @@
+package com.royal.senderService.service;
+
+import com.royal.senderService.dto.Message;
+import com.royal.senderService.dto.ShardStats;
+import com.royal.senderService.exception.PublisherOverloadedException;
+import com.royal.senderService.exception.RabbitMQException;
+import com.royal.senderService.metrics.PublishMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.connection.RabbitConnectionFactoryBean;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.CachingConnectionFactoryConfigurer;
+import org.springframework.boot.autoconfigure.amqp.RabbitConnectionFactoryBeanConfigurer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Сервис шардированной публикации сообщений в RabbitMQ.
+ * Распределяет сообщения по нескольким соединениям и каналам. Шард выбирается по хешу идентификатора сообщения,
+ * а каждый шард публикует строго последовательно в свой выделенный канал, поэтому порядок сообщений
+ * с одинаковым id сохраняется. Очередь каждого шарда ограничена {@code rabbitmq.publisher.sharding.queue-capacity}
+ * сообщениями: при медленном брокере новые сообщения отклоняются, а не накапливаются в памяти.
+ */
+@Service
+@ConditionalOnProperty(name = "rabbitmq.publisher.sharding.enabled", havingValue = "true")
+public class ShardedRabbitPublisher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShardedRabbitPublisher.class);
+
+    private static final long POLL_TIMEOUT_MS = 100;
+    private static final long RECONNECT_DELAY_MS = 1000;
+    private static final long RATE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    @Value("${rabbitmq.exchange.name}")
+    private String exchange;
+
+    @Value("${rabbitmq.routing.key.name}")
+    private String routingJsonKey;
+
+    @Value("${rabbitmq.publisher.sharding.connections}")
+    private int connections;
+
+    @Value("${rabbitmq.publisher.sharding.channels-per-connection}")
+    private int channelsPerConnection;
+
+    @Value("${rabbitmq.publisher.sharding.queue-capacity}")
+    private int queueCapacity;
+
+    @Value("${spring.threads.virtual.enabled}")
+    private boolean virtualThreads;
+
+    private final RabbitConnectionFactoryBeanConfigurer connectionFactoryBeanConfigurer;
+    private final CachingConnectionFactoryConfigurer cachingConnectionFactoryConfigurer;
+    private final MessageConverter messageConverter;
+    private final PublishMetrics publishMetrics;
+
+    private final List<CachingConnectionFactory> connectionFactories = new ArrayList<>();
+    private final List<Shard> shards = new ArrayList<>();
+
+    /**
+     * Конструктор сервиса шардированной публикации.
+     *
+     * @param connectionFactoryBeanConfigurer    настройщик параметров подключения из spring.rabbitmq.*.
+     * @param cachingConnectionFactoryConfigurer настройщик кеширующей фабрики соединений (в т.ч. тип подтверждений).
+     * @param messageConverter                   конвертер сообщений.
+     * @param publishMetrics                     метрики публикации.
+     */
+    @Autowired
+    public ShardedRabbitPublisher(RabbitConnectionFactoryBeanConfigurer connectionFactoryBeanConfigurer,
+                                  CachingConnectionFactoryConfigurer cachingConnectionFactoryConfigurer,
+                                  MessageConverter messageConverter, PublishMetrics publishMetrics) {
+        this.connectionFactoryBeanConfigurer = connectionFactoryBeanConfigurer;
+        this.cachingConnectionFactoryConfigurer = cachingConnectionFactoryConfigurer;
+        this.messageConverter = messageConverter;
+        this.publishMetrics = publishMetrics;
+    }
+
+    /**
+     * Создает соединения и запускает по одному потоку публикации на каждый шард.
+     * В режиме виртуальных потоков шарды работают на виртуальных потоках.
+     */
+    @PostConstruct
+    public void start() {
+        for (int connection = 0; connection < connections; connection++) {
+            CachingConnectionFactory connectionFactory = createConnectionFactory(connection);
+            connectionFactories.add(connectionFactory);
+            for (int channel = 0; channel < channelsPerConnection; channel++) {
+                Shard shard = new Shard(shards.size(), connection, createTemplate(connectionFactory), queueCapacity);
+                shards.add(shard);
+                publishMetrics.gaugePendingPublishes("shard-" + shard.index, shard.queue::size);
+                publishMetrics.gaugeOutstandingConfirms("shard-" + shard.index,
+                        () -> shard.published.sum() - shard.acked.sum() - shard.nacked.sum());
+                Thread.Builder threadBuilder = virtualThreads ? Thread.ofVirtual() : Thread.ofPlatform().daemon(true);
+                shard.thread = threadBuilder.name("rabbit-shard-" + shard.index).start(shard::run);
+            }
+        }
+        LOGGER.info("Шардированная публикация запущена: {} соединений, {} каналов на соединение",
+                connections, channelsPerConnection);
+    }
+
+    /**
+     * Останавливает потоки публикации и закрывает соединения.
+     * Сообщения, не успевшие попасть в канал, завершаются ошибкой.
+     */
+    @PreDestroy
+    public void stop() {
+        shards.forEach(shard -> {
+            shard.running = false;
+            shard.thread.interrupt();
+        });
+        for (Shard shard : shards) {
+            try {
+                shard.thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            shard.failPending(new RabbitMQException("Публикация остановлена"));
+        }
+        connectionFactories.forEach(CachingConnectionFactory::destroy);
+    }
+
+    /**
+     * Ставит сообщение в очередь шарда, выбранного по идентификатору сообщения.
+     * Результат публикации и подтверждения передается через future корреляции: ошибка записи в канал
+     * завершает его исключением, подтверждение брокера — результатом ack/nack.
+     *
+     * @param message         сообщение для отправки.
+     * @param correlationData корреляция для отслеживания подтверждения.
+     * @throws PublisherOverloadedException если очередь шарда заполнена.
+     * @throws RabbitMQException            если публикация остановлена.
+     */
+    public void publish(Message message, CorrelationData correlationData) {
+        Shard shard = shards.get(shardFor(message.getId()));
+        if (!shard.running) {
+            throw new RabbitMQException("Публикация остановлена");
+        }
+        if (!shard.queue.offer(new PendingPublish(message, correlationData))) {
+            throw new PublisherOverloadedException("Очередь шарда " + shard.index + " заполнена: " + queueCapacity);
+        }
+    }
+
+    /**
+     * Возвращает статистику по всем шардам.
+     *
+     * @return список статистики шардов.
+     */
+    public List<ShardStats> getStats() {
+        return shards.stream()
+                .map(shard -> new ShardStats(shard.index, shard.connection, shard.published.sum(), shard.acked.sum(),
+                        shard.nacked.sum(), shard.queue.size(), shard.messagesPerSecond))
+                .toList();
+    }
+
+    /**
+     * Вычисляет номер шарда для идентификатора сообщения.
+     *
+     * @param id идентификатор сообщения.
+     * @return номер шарда.
+     */
+    private int shardFor(Long id) {
+        return id == null ? 0 : Math.floorMod(Long.hashCode(id), shards.size());
+    }
+
+    /**
+     * Создает отдельное соединение с брокером с теми же параметрами, что и основная фабрика соединений.
+     *
+     * @param connection номер соединения.
+     * @return фабрика соединений.
+     */
+    private CachingConnectionFactory createConnectionFactory(int connection) {
+        try {
+            RabbitConnectionFactoryBean factoryBean = new RabbitConnectionFactoryBean();
+            connectionFactoryBeanConfigurer.configure(factoryBean);
+            factoryBean.afterPropertiesSet();
+            CachingConnectionFactory connectionFactory = new CachingConnectionFactory(factoryBean.getObject());
+            cachingConnectionFactoryConfigurer.configure(connectionFactory);
+            connectionFactory.setChannelCacheSize(channelsPerConnection);
+            connectionFactory.setConnectionNameStrategy(cf -> "sender-shard-connection-" + connection);
+            return connectionFactory;
+        } catch (Exception e) {
+            throw new RabbitMQException("Не удалось создать соединение для шарда " + connection, e);
+        }
+    }
+
+    /**
+     * Создает шаблон шарда на заданной фабрике соединений. Немаршрутизируемые сообщения возвращаются брокером
+     * и учитываются в метриках.
+     *
+     * @param connectionFactory фабрика соединений шарда.
+     * @return шаблон RabbitTemplate.
+     */
+    private RabbitTemplate createTemplate(CachingConnectionFactory connectionFactory) {
+        RabbitTemplate template = new RabbitTemplate(connectionFactory);
+        template.setMessageConverter(messageConverter);
+        template.setMandatory(true);
+        template.setReturnsCallback(publishMetrics::recordReturn);
+        return template;
+    }
+
+    /**
+     * Сообщение, ожидающее публикации в шарде.
+     */
+    private record PendingPublish(Message message, CorrelationData correlationData) {
+    }
+
+    /**
+     * Шард публикации: очередь сообщений и поток, удерживающий выделенный канал через {@link RabbitTemplate#invoke}.
+     */
+    private final class Shard {
+        private final int index;
+        private final int connection;
+        private final RabbitTemplate template;
+        private final BlockingQueue<PendingPublish> queue;
+        private final LongAdder published = new LongAdder();
+        private final LongAdder acked = new LongAdder();
+        private final LongAdder nacked = new LongAdder();
+        private volatile boolean running = true;
+        private volatile double messagesPerSecond;
+        private Thread thread;
+        private long windowStart = System.nanoTime();
+        private long windowPublished;
+
+        private Shard(int index, int connection, RabbitTemplate template, int queueCapacity) {
+            this.index = index;
+            this.connection = connection;
+            this.template = template;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            template.setConfirmCallback((correlationData, ack, cause) -> {
+                publishMetrics.recordConfirm(correlationData, ack);
+                if (ack) {
+                    acked.increment();
+                } else {
+                    nacked.increment();
+                    LOGGER.error("Шард {}: брокер отклонил сообщение {}: {}", index, correlationData, cause);
+                }
+            });
+        }
+
+        /**
+         * Основной цикл шарда. Пока поток находится внутри {@code invoke}, все публикации идут в один канал;
+         * при обрыве соединения канал пересоздается.
+         */
+        private void run() {
+            while (running) {
+                try {
+                    template.invoke(operations -> {
+                        drain(operations);
+                        return null;
+                    });
+                } catch (Exception e) {
+                    if (!running) {
+                        break;
+                    }
+                    LOGGER.error("Шард {}: ошибка канала, повторное подключение через {} мс: {}",
+                            index, RECONNECT_DELAY_MS, e.getMessage());
+                    try {
+                        Thread.sleep(RECONNECT_DELAY_MS);
+                    } catch (InterruptedException interrupted) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }
+
+        private void drain(RabbitOperations operations) {
+            while (running) {
+                PendingPublish pending;
+                try {
+                    pending = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (pending != null) {
+                    try {
+                        long start = System.nanoTime();
+                        operations.convertAndSend(exchange, routingJsonKey, pending.message(), pending.correlationData());
+                        publishMetrics.recordPublish(routingJsonKey, start);
+                        published.increment();
+                    } catch (RuntimeException e) {
+                        pending.correlationData().getFuture().completeExceptionally(e);
+                        throw e;
+                    }
+                }
+                updateRate();
+            }
+        }
+
+        private void updateRate() {
+            long now = System.nanoTime();
+            long elapsed = now - windowStart;
+            if (elapsed >= RATE_WINDOW_NANOS) {
+                long total = published.sum();
+                messagesPerSecond = (total - windowPublished) * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+                windowPublished = total;
+                windowStart = now;
+            }
+        }
+
+        private void failPending(RuntimeException cause) {
+            PendingPublish pending;
+            while ((pending = queue.poll()) != null) {
+                pending.correlationData().getFuture().completeExceptionally(cause);
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.royal.senderService.service;
+
+import com.royal.senderService.dto.PinningSite;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Сервис обнаружения закрепления виртуальных потоков (pinning).
+ * Подписывается на событие JFR {@code jdk.VirtualThreadPinned} и агрегирует случаи по месту в коде,
+ * чтобы находить блокирующие вызовы внутри {@code synchronized} на горячем пути.
+ */
+@Service
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadPinningMonitor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final String APPLICATION_PACKAGE = "com.royal.";
+
+    @Value("${diagnostics.pinning.threshold-ms}")
+    private long thresholdMs;
+
+    private final Map<String, Site> sites = new ConcurrentHashMap<>();
+
+    private RecordingStream recordingStream;
+
+    /**
+     * Запускает потоковую запись событий закрепления виртуальных потоков.
+     */
+    @PostConstruct
+    public void start() {
+        recordingStream = new RecordingStream();
+        recordingStream.enable(PINNED_EVENT)
+                .withThreshold(Duration.ofMillis(thresholdMs))
+                .withStackTrace();
+        recordingStream.onEvent(PINNED_EVENT, this::onPinned);
+        recordingStream.startAsync();
+        LOGGER.info("Мониторинг закрепления виртуальных потоков запущен, порог {} мс", thresholdMs);
+    }
+
+    /**
+     * Останавливает запись событий.
+     */
+    @PreDestroy
+    public void stop() {
+        recordingStream.close();
+    }
+
+    /**
+     * Возвращает отчет о местах закрепления, отсортированный по суммарной длительности.
+     *
+     * @return список мест закрепления.
+     */
+    public List<PinningSite> getReport() {
+        return sites.values().stream()
+                .map(site -> new PinningSite(site.topFrame, site.applicationFrame, site.count.sum(),
+                        site.totalMillis.sum(), site.maxMillis.get()))
+                .sorted(Comparator.comparingLong(PinningSite::getTotalMillis).reversed())
+                .toList();
+    }
+
+    private void onPinned(RecordedEvent event) {
+        List<RecordedFrame> frames = event.getStackTrace() == null ? List.of() : event.getStackTrace().getFrames();
+        String topFrame = frames.isEmpty() ? "unknown" : format(frames.get(0));
+        String applicationFrame = frames.stream()
+                .filter(frame -> frame.getMethod().getType().getName().startsWith(APPLICATION_PACKAGE))
+                .findFirst()
+                .map(VirtualThreadPinningMonitor::format)
+                .orElse("-");
+        long millis = event.getDuration().toMillis();
+
+        Site site = sites.computeIfAbsent(topFrame + " <- " + applicationFrame, key -> {
+            LOGGER.warn("Обнаружено закрепление виртуального потока на {} мс: {} (код приложения: {})",
+                    millis, topFrame, applicationFrame);
+            return new Site(topFrame, applicationFrame);
+        });
+        site.count.increment();
+        site.totalMillis.add(millis);
+        site.maxMillis.accumulateAndGet(millis, Math::max);
+    }
+
+    private static String format(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+    }
+
+    /**
+     * Накопленная статистика по одному месту закрепления.
+     */
+    private static final class Site {
+        private final String topFrame;
+        private final String applicationFrame;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalMillis = new LongAdder();
+        private final AtomicLong maxMillis = new AtomicLong();
+
+        private Site(String topFrame, String applicationFrame) {
+            this.topFrame = topFrame;
+            this.applicationFrame = applicationFrame;
+        }
+    }
+}
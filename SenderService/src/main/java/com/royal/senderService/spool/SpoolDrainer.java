@@ -0,0 +1,358 @@
+package com.royal.senderService.spool;
+
+import com.royal.senderService.converter.BinaryMessageConverter;
+import com.royal.senderService.dto.Message;
+import com.royal.senderService.metrics.PublishMetrics;
+import com.royal.senderService.metrics.TimedCorrelationData;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.MappedByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Фоновый поток доставки сообщений из локального журнала в RabbitMQ.
+ * Читает зафиксированные записи после чекпоинта пакетами, публикует их с подтверждениями и сдвигает чекпоинт
+ * только после подтверждения всего пакета. При ошибке пакет повторяется, поэтому доставка — как минимум один раз.
+ * Если брокер подтвердил пакет, но отклонил (nack) или вернул отдельные сообщения, пакет повторяется не больше
+ * rabbitmq.spool.max-publish-attempts раз, после чего отклоненные записи откладываются в карантин, как поврежденные,
+ * и чекпоинт сдвигается за пакет. Пакеты, не подтвержденные из-за недоступности брокера, повторяются без ограничения.
+ * Исключение внутри цикла доставки не останавливает поток: оно учитывается в метрике
+ * {@code rabbitmq.spool.drainer.errors}, и итерация повторяется после паузы. Гейдж
+ * {@code rabbitmq.spool.drainer.alive} равен 1, пока поток доставки работает.
+ */
+@Component
+@ConditionalOnProperty(name = "rabbitmq.spool.enabled", havingValue = "true")
+public class SpoolDrainer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SpoolDrainer.class);
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    @Value("${rabbitmq.exchange.name}")
+    private String exchange;
+
+    @Value("${rabbitmq.routing.key.name}")
+    private String routingJsonKey;
+
+    @Value("${rabbitmq.spool.drain-batch-size}")
+    private int batchSize;
+
+    @Value("${rabbitmq.spool.retry-delay-ms}")
+    private long retryDelayMs;
+
+    @Value("${rabbitmq.spool.max-publish-attempts}")
+    private int maxPublishAttempts;
+
+    @Value("${rabbitmq.publish.confirm-timeout-ms}")
+    private long confirmTimeoutMs;
+
+    private final SpoolJournal journal;
+    private final RabbitTemplate rabbitTemplate;
+    private final PublishMetrics publishMetrics;
+    private final Counter errors;
+
+    private volatile boolean running = true;
+    private volatile Thread drainer;
+    private long mappedSegment = -1;
+    private MappedByteBuffer mappedBuffer;
+    private int rejectedAttempts;
+
+    /**
+     * Конструктор потока доставки журнала.
+     *
+     * @param journal        журнал сообщений.
+     * @param rabbitTemplate объект для взаимодействия с RabbitMQ.
+     * @param publishMetrics метрики публикации.
+     * @param meterRegistry  реестр метрик.
+     */
+    @Autowired
+    public SpoolDrainer(SpoolJournal journal, RabbitTemplate rabbitTemplate, PublishMetrics publishMetrics,
+                        MeterRegistry meterRegistry) {
+        this.journal = journal;
+        this.rabbitTemplate = rabbitTemplate;
+        this.publishMetrics = publishMetrics;
+        this.errors = Counter.builder("rabbitmq.spool.drainer.errors")
+                .description("Ошибки в цикле доставки журнала")
+                .register(meterRegistry);
+        Gauge.builder("rabbitmq.spool.drainer.alive", this,
+                        spoolDrainer -> spoolDrainer.drainer != null && spoolDrainer.drainer.isAlive() ? 1 : 0)
+                .description("Работает ли поток доставки журнала")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Запускает поток доставки.
+     */
+    @PostConstruct
+    public void start() {
+        drainer = Thread.ofPlatform().name("spool-drainer").daemon(true).start(this::drainLoop);
+    }
+
+    /**
+     * Останавливает поток доставки. Недоставленные записи остаются в журнале до следующего запуска.
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        drainer.interrupt();
+        try {
+            drainer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!drainer.isAlive()) {
+            SpoolJournal.unmap(mappedBuffer);
+        }
+    }
+
+    private void drainLoop() {
+        while (running) {
+            try {
+                drainOnce();
+            } catch (RuntimeException e) {
+                errors.increment();
+                LOGGER.error("Ошибка доставки журнала, повтор через {} мс: {}", retryDelayMs, e.getMessage(), e);
+                // Отображение могло остаться в неизвестном состоянии: следующая итерация откроет сегмент заново.
+                SpoolJournal.unmap(mappedBuffer);
+                mappedBuffer = null;
+                mappedSegment = -1;
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(retryDelayMs));
+            }
+        }
+    }
+
+    /**
+     * Выполняет одну итерацию доставки: читает пакет после чекпоинта, публикует его и сдвигает чекпоинт.
+     */
+    private void drainOnce() {
+        SpoolPosition from = journal.checkpoint();
+        if (from.compareTo(journal.durablePosition()) >= 0) {
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+            return;
+        }
+        ReadBatch batch = read(from, journal.durablePosition());
+        if (batch.messages().isEmpty() && batch.end().equals(from)) {
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        } else if (batch.messages().isEmpty()) {
+            journal.commit(batch.end());
+        } else {
+            PublishOutcome outcome = publish(batch.messages());
+            if (outcome.delivered()) {
+                commit(batch.end());
+            } else if (outcome.confirmed() && ++rejectedAttempts >= maxPublishAttempts) {
+                for (int index : outcome.rejected()) {
+                    quarantineRejected(batch.records().get(index));
+                }
+                commit(batch.end());
+            } else {
+                if (outcome.confirmed()) {
+                    LOGGER.warn("Брокер отклонил {} из {} сообщений пакета журнала (попытка {} из {}), повтор через {} мс",
+                            outcome.rejected().size(), batch.messages().size(), rejectedAttempts, maxPublishAttempts,
+                            retryDelayMs);
+                } else {
+                    LOGGER.warn("Пакет журнала из {} сообщений не подтвержден, повтор через {} мс",
+                            batch.messages().size(), retryDelayMs);
+                }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(retryDelayMs));
+            }
+        }
+    }
+
+    private void commit(SpoolPosition position) {
+        journal.commit(position);
+        rejectedAttempts = 0;
+    }
+
+    /**
+     * Откладывает в карантин запись, которую брокер отклонил во всех попытках доставки пакета.
+     */
+    private void quarantineRejected(SpoolRecord record) {
+        LOGGER.error("Запись в сегменте {} на смещении {} отклонена брокером {} раз подряд и отложена в карантин",
+                record.segment(), record.offset(), maxPublishAttempts);
+        MappedByteBuffer buffer = journal.openForRead(record.segment());
+        try {
+            journal.quarantine(record.segment(), record.offset(), bytes(buffer, record.offset(), record.size()));
+        } finally {
+            SpoolJournal.unmap(buffer);
+        }
+    }
+
+    /**
+     * Читает пакет зафиксированных записей начиная с позиции {@code from}, но не дальше {@code durable}.
+     * Запись с неверной контрольной суммой или не поддающаяся декодированию откладывается в карантин
+     * и пропускается по длине из заголовка. Если поврежден сам заголовок, границу следующей записи определить
+     * нельзя, и в карантин откладывается остаток зафиксированных данных сегмента. Поэтому чтение всегда
+     * продвигается и одна поврежденная запись не останавливает доставку.
+     *
+     * @param from    позиция начала чтения.
+     * @param durable позиция конца зафиксированных данных.
+     * @return прочитанные сообщения, их записи и позиция после последней прочитанной записи.
+     */
+    private ReadBatch read(SpoolPosition from, SpoolPosition durable) {
+        List<Message> messages = new ArrayList<>(batchSize);
+        List<SpoolRecord> records = new ArrayList<>(batchSize);
+        long segment = from.segment();
+        int offset = from.offset();
+        MappedByteBuffer buffer = segmentBuffer(segment);
+
+        while (messages.size() < batchSize) {
+            if (segment == durable.segment() && offset >= durable.offset()) {
+                break;
+            }
+            int limit = segment == durable.segment() ? durable.offset() : journal.segmentSize();
+            int length = offset + SpoolJournal.HEADER_SIZE <= limit ? buffer.getInt(offset) : 0;
+            if (length == 0 && segment < durable.segment()) {
+                segment++;
+                offset = 0;
+                buffer = segmentBuffer(segment);
+                continue;
+            }
+            if (length <= 0 || offset + SpoolJournal.HEADER_SIZE + length > limit) {
+                LOGGER.error("Поврежден заголовок записи в сегменте {} на смещении {}, остаток сегмента ({} байт) "
+                        + "отложен в карантин", segment, offset, limit - offset);
+                journal.quarantine(segment, offset, bytes(buffer, offset, limit - offset));
+                if (segment < durable.segment()) {
+                    segment++;
+                    offset = 0;
+                    buffer = segmentBuffer(segment);
+                } else {
+                    offset = limit;
+                }
+                continue;
+            }
+            byte[] payload = bytes(buffer, offset + SpoolJournal.HEADER_SIZE, length);
+            Message message = SpoolJournal.checksumMatches(buffer, offset, payload) ? decode(payload) : null;
+            if (message == null) {
+                LOGGER.error("Поврежденная запись в сегменте {} на смещении {} отложена в карантин", segment, offset);
+                journal.quarantine(segment, offset, bytes(buffer, offset, SpoolJournal.HEADER_SIZE + length));
+            } else {
+                messages.add(message);
+                records.add(new SpoolRecord(segment, offset, SpoolJournal.HEADER_SIZE + length));
+            }
+            offset += SpoolJournal.HEADER_SIZE + length;
+        }
+        return new ReadBatch(messages, records, new SpoolPosition(segment, offset));
+    }
+
+    private static byte[] bytes(MappedByteBuffer buffer, int offset, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return bytes;
+    }
+
+    private static Message decode(byte[] payload) {
+        try {
+            return BinaryMessageConverter.decode(payload, 0, payload.length);
+        } catch (MessageConversionException e) {
+            LOGGER.error("Не удалось декодировать запись журнала: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Публикует пакет на одном канале и ожидает подтверждения всех сообщений.
+     *
+     * @param messages сообщения пакета.
+     * @return результат публикации: получены ли подтверждения и какие сообщения брокер отклонил или вернул
+     * как немаршрутизируемые.
+     */
+    private PublishOutcome publish(List<Message> messages) {
+        try {
+            List<CorrelationData> correlations = new ArrayList<>(messages.size());
+            rabbitTemplate.invoke(operations -> {
+                for (Message message : messages) {
+                    CorrelationData correlationData = new TimedCorrelationData(routingJsonKey);
+                    long start = System.nanoTime();
+                    operations.convertAndSend(exchange, routingJsonKey, message, correlationData);
+                    publishMetrics.recordPublish(routingJsonKey, start);
+                    correlations.add(correlationData);
+                }
+                return null;
+            });
+            CompletableFuture.allOf(correlations.stream()
+                            .map(CorrelationData::getFuture)
+                            .toArray(CompletableFuture[]::new))
+                    .get(confirmTimeoutMs, TimeUnit.MILLISECONDS);
+            List<Integer> rejected = new ArrayList<>();
+            for (int i = 0; i < correlations.size(); i++) {
+                CorrelationData correlation = correlations.get(i);
+                // Немаршрутизируемое сообщение брокер тоже подтверждает: без проверки возврата оно было бы потеряно.
+                if (!correlation.getFuture().join().isAck() || correlation.getReturned() != null) {
+                    if (correlation.getReturned() != null) {
+                        LOGGER.error("Сообщение журнала не маршрутизировано: {}", correlation.getReturned().getReplyText());
+                    }
+                    rejected.add(i);
+                }
+            }
+            return new PublishOutcome(true, rejected);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return PublishOutcome.UNCONFIRMED;
+        } catch (Exception e) {
+            LOGGER.error("Ошибка доставки пакета журнала в RabbitMQ: {}", e.getMessage());
+            return PublishOutcome.UNCONFIRMED;
+        }
+    }
+
+    private MappedByteBuffer segmentBuffer(long segment) {
+        if (segment != mappedSegment) {
+            // Пройденный сегмент больше не читается; без явного освобождения отображения копились бы до сборки мусора.
+            SpoolJournal.unmap(mappedBuffer);
+            mappedBuffer = journal.openForRead(segment);
+            mappedSegment = segment;
+        }
+        return mappedBuffer;
+    }
+
+    /**
+     * Прочитанный пакет записей журнала.
+     *
+     * @param messages сообщения.
+     * @param records  расположение записей сообщений в журнале, в том же порядке.
+     * @param end      позиция после последней прочитанной записи.
+     */
+    private record ReadBatch(List<Message> messages, List<SpoolRecord> records, SpoolPosition end) {
+    }
+
+    /**
+     * Расположение записи в журнале.
+     *
+     * @param segment номер сегмента.
+     * @param offset  смещение записи.
+     * @param size    размер записи вместе с заголовком.
+     */
+    private record SpoolRecord(long segment, int offset, int size) {
+    }
+
+    /**
+     * Результат публикации пакета.
+     *
+     * @param confirmed true, если брокер ответил на все сообщения пакета за отведенное время.
+     * @param rejected  индексы сообщений, отклоненных или возвращенных брокером.
+     */
+    private record PublishOutcome(boolean confirmed, List<Integer> rejected) {
+
+        private static final PublishOutcome UNCONFIRMED = new PublishOutcome(false, List.of());
+
+        private boolean delivered() {
+            return confirmed && rejected.isEmpty();
+        }
+    }
+}
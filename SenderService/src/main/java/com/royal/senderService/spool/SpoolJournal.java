@@ -0,0 +1,446 @@
+package com.royal.senderService.spool;
+
+import com.royal.senderService.converter.BinaryMessageConverter;
+import com.royal.senderService.dto.Message;
+import com.royal.senderService.exception.SpoolException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Локальный журнал упреждающей записи (write-ahead spool) для входящих сообщений.
+ * Сообщения дописываются в отображенные в память сегменты фиксированного размера. Отдельный поток
+ * группирует сброс на диск: все записи, накопившиеся за интервал, фиксируются одним вызовом force(),
+ * после чего завершаются их future. Формат записи: длина (4 байта), CRC32C (4 байта), сообщение
+ * в бинарном формате {@link BinaryMessageConverter}. Нулевая длина означает конец данных сегмента.
+ * Если сброс на диск не удался, журнал откатывается к последней зафиксированной позиции: записи, о которых
+ * клиенту сообщена ошибка, не будут доставлены. Поврежденные записи откладываются в каталог quarantine.
+ */
+@Component
+@ConditionalOnProperty(name = "rabbitmq.spool.enabled", havingValue = "true")
+public class SpoolJournal {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SpoolJournal.class);
+
+    static final int HEADER_SIZE = Integer.BYTES * 2;
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final String QUARANTINE_DIRECTORY = "quarantine";
+    private static final MethodHandle INVOKE_CLEANER = findCleaner();
+
+    @Value("${rabbitmq.spool.directory}")
+    private Path directory;
+
+    @Value("${rabbitmq.spool.segment-size-bytes}")
+    private int segmentSize;
+
+    @Value("${rabbitmq.spool.flush-interval-ms}")
+    private long flushIntervalMs;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+
+    private List<CompletableFuture<Void>> waiters = new ArrayList<>();
+    private final List<MappedByteBuffer> unflushed = new ArrayList<>();
+    private MappedByteBuffer activeBuffer;
+    private long activeSegment;
+    private int writeOffset;
+
+    private volatile SpoolPosition durablePosition;
+    private volatile SpoolPosition checkpoint;
+    private volatile boolean running = true;
+    private Thread flusher;
+
+    /**
+     * Восстанавливает состояние журнала с диска и запускает поток группового сброса.
+     */
+    @PostConstruct
+    public void start() {
+        try {
+            Files.createDirectories(directory);
+            List<Long> segments = listSegments();
+            activeSegment = segments.isEmpty() ? 1 : segments.get(segments.size() - 1);
+            activeBuffer = map(activeSegment, FileChannel.MapMode.READ_WRITE);
+            writeOffset = scanEnd(activeBuffer);
+            if (writeOffset + Integer.BYTES <= segmentSize && activeBuffer.getInt(writeOffset) != 0) {
+                // За поврежденной записью остались данные: продолжаем запись в новом сегменте.
+                rollSegment();
+            }
+            durablePosition = new SpoolPosition(activeSegment, writeOffset);
+            checkpoint = readCheckpoint(segments.isEmpty() ? activeSegment : segments.get(0));
+        } catch (IOException e) {
+            throw new SpoolException("Не удалось открыть журнал в каталоге " + directory, e);
+        }
+        flusher = Thread.ofPlatform().name("spool-flusher").daemon(true).start(this::flushLoop);
+        LOGGER.info("Журнал сообщений открыт: каталог {}, активный сегмент {}, позиция записи {}, чекпоинт {}",
+                directory, activeSegment, writeOffset, checkpoint);
+    }
+
+    /**
+     * Останавливает поток сброса, предварительно зафиксировав все записи на диске.
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        flusher.interrupt();
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    /**
+     * Дописывает сообщение в журнал.
+     *
+     * @param message сообщение.
+     * @return future, завершающийся после фиксации записи на диске.
+     */
+    public CompletableFuture<Void> append(Message message) {
+        byte[] payload = BinaryMessageConverter.encode(message);
+        int recordSize = HEADER_SIZE + payload.length;
+        if (recordSize + Integer.BYTES > segmentSize) {
+            return CompletableFuture.failedFuture(new SpoolException("Сообщение больше размера сегмента: " + recordSize));
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        lock.lock();
+        try {
+            if (!running) {
+                return CompletableFuture.failedFuture(new SpoolException("Журнал остановлен"));
+            }
+            if (writeOffset + recordSize + Integer.BYTES > segmentSize) {
+                rollSegment();
+            }
+            activeBuffer.putInt(writeOffset + Integer.BYTES, (int) crc.getValue());
+            activeBuffer.put(writeOffset + HEADER_SIZE, payload);
+            activeBuffer.putInt(writeOffset, payload.length);
+            writeOffset += recordSize;
+            waiters.add(future);
+            appended.signal();
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(new SpoolException("Ошибка записи в журнал", e));
+        } finally {
+            lock.unlock();
+        }
+        return future;
+    }
+
+    /**
+     * Возвращает позицию, до которой записи гарантированно сброшены на диск.
+     *
+     * @return позиция конца зафиксированных данных.
+     */
+    public SpoolPosition durablePosition() {
+        return durablePosition;
+    }
+
+    /**
+     * Возвращает позицию, до которой записи доставлены в брокер.
+     *
+     * @return позиция чекпоинта.
+     */
+    public SpoolPosition checkpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * Сохраняет чекпоинт доставки и удаляет сегменты, полностью доставленные в брокер.
+     *
+     * @param position новая позиция чекпоинта.
+     */
+    public void commit(SpoolPosition position) {
+        try {
+            Path temp = directory.resolve(CHECKPOINT_FILE + ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES + Integer.BYTES);
+                buffer.putLong(position.segment()).putInt(position.offset()).flip();
+                channel.write(buffer);
+                channel.force(true);
+            }
+            Files.move(temp, directory.resolve(CHECKPOINT_FILE), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+            checkpoint = position;
+            for (long segment : listSegments()) {
+                if (segment < position.segment()) {
+                    Files.deleteIfExists(segmentPath(segment));
+                    LOGGER.info("Сегмент журнала {} доставлен и удален", segment);
+                }
+            }
+        } catch (IOException e) {
+            throw new SpoolException("Не удалось сохранить чекпоинт журнала " + position, e);
+        }
+    }
+
+    /**
+     * Возвращает размер сегмента в байтах.
+     *
+     * @return размер сегмента.
+     */
+    int segmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * Отображает сегмент только для чтения.
+     *
+     * @param segment номер сегмента.
+     * @return буфер сегмента.
+     */
+    MappedByteBuffer openForRead(long segment) {
+        try {
+            return map(segment, FileChannel.MapMode.READ_ONLY);
+        } catch (IOException e) {
+            throw new SpoolException("Не удалось открыть сегмент журнала " + segment, e);
+        }
+    }
+
+    /**
+     * Проверяет контрольную сумму записи.
+     *
+     * @param buffer  буфер сегмента.
+     * @param offset  смещение записи.
+     * @param payload данные записи.
+     * @return true, если контрольная сумма совпадает.
+     */
+    static boolean checksumMatches(ByteBuffer buffer, int offset, byte[] payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        return buffer.getInt(offset + Integer.BYTES) == (int) crc.getValue();
+    }
+
+    /**
+     * Откладывает поврежденную запись в каталог quarantine, чтобы доставка могла продолжиться за ней.
+     *
+     * @param segment номер сегмента.
+     * @param offset  смещение записи.
+     * @param bytes   байты записи вместе с заголовком.
+     */
+    void quarantine(long segment, int offset, byte[] bytes) {
+        Path quarantine = directory.resolve(QUARANTINE_DIRECTORY);
+        try {
+            Files.createDirectories(quarantine);
+            Files.write(quarantine.resolve(String.format("%020d-%010d.rec", segment, offset)), bytes);
+        } catch (IOException e) {
+            LOGGER.error("Не удалось сохранить поврежденную запись сегмента {} на смещении {}: {}",
+                    segment, offset, e.getMessage());
+        }
+    }
+
+    /**
+     * Освобождает отображение сегмента, не дожидаясь сборки мусора. Буфер после вызова использовать нельзя.
+     *
+     * @param buffer отображенный буфер или null.
+     */
+    static void unmap(MappedByteBuffer buffer) {
+        if (buffer == null || INVOKE_CLEANER == null) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invokeExact((ByteBuffer) buffer);
+        } catch (Throwable e) {
+            LOGGER.warn("Не удалось освободить отображение сегмента: {}", e.getMessage());
+        }
+    }
+
+    private static MethodHandle findCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(field.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.warn("Освобождение отображенных сегментов недоступно, они будут освобождены сборщиком мусора: {}",
+                    e.getMessage());
+            return null;
+        }
+    }
+
+    private void flushLoop() {
+        while (running) {
+            lock.lock();
+            try {
+                while (running && waiters.isEmpty()) {
+                    appended.await();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                // Небольшая пауза позволяет накопить записи и сбросить их одним force().
+                Thread.sleep(flushIntervalMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            flush();
+        }
+    }
+
+    private void flush() {
+        List<CompletableFuture<Void>> batch;
+        List<MappedByteBuffer> buffers;
+        SpoolPosition position;
+        lock.lock();
+        try {
+            batch = waiters;
+            waiters = new ArrayList<>();
+            buffers = new ArrayList<>(unflushed);
+            unflushed.clear();
+            buffers.add(activeBuffer);
+            position = new SpoolPosition(activeSegment, writeOffset);
+        } finally {
+            lock.unlock();
+        }
+        try {
+            buffers.forEach(this::force);
+            durablePosition = position;
+            batch.forEach(future -> future.complete(null));
+        } catch (RuntimeException e) {
+            LOGGER.error("Ошибка сброса журнала на диск, откат к позиции {}: {}", durablePosition, e.getMessage(), e);
+            batch.addAll(rollback());
+            batch.forEach(future -> future.completeExceptionally(new SpoolException("Ошибка сброса журнала на диск", e)));
+        }
+        // Сегменты, закрытые до этого сброса, больше не пишутся: их отображение освобождается.
+        buffers.subList(0, buffers.size() - 1).forEach(SpoolJournal::unmap);
+    }
+
+    /**
+     * Сбрасывает отображенный сегмент на диск.
+     *
+     * @param buffer буфер сегмента.
+     */
+    void force(MappedByteBuffer buffer) {
+        buffer.force();
+    }
+
+    /**
+     * Откатывает запись к последней зафиксированной позиции, чтобы записи, о которых клиенту сообщена ошибка,
+     * не были доставлены позже. Записи, добавленные во время неудачного сброса, тоже отбрасываются.
+     *
+     * @return future отброшенных записей, которые нужно завершить ошибкой.
+     */
+    private List<CompletableFuture<Void>> rollback() {
+        SpoolPosition target = durablePosition;
+        lock.lock();
+        try {
+            List<CompletableFuture<Void>> discarded = waiters;
+            waiters = new ArrayList<>();
+            try {
+                if (activeSegment != target.segment()) {
+                    unflushed.forEach(SpoolJournal::unmap);
+                    unflushed.clear();
+                    unmap(activeBuffer);
+                    for (long segment = target.segment() + 1; segment <= activeSegment; segment++) {
+                        Files.deleteIfExists(segmentPath(segment));
+                    }
+                    activeSegment = target.segment();
+                    activeBuffer = map(activeSegment, FileChannel.MapMode.READ_WRITE);
+                }
+                writeOffset = target.offset();
+                if (writeOffset + Integer.BYTES <= segmentSize) {
+                    activeBuffer.putInt(writeOffset, 0);
+                }
+            } catch (IOException e) {
+                LOGGER.error("Не удалось откатить журнал, прием сообщений остановлен: {}", e.getMessage(), e);
+                running = false;
+            }
+            return discarded;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void rollSegment() throws IOException {
+        unflushed.add(activeBuffer);
+        activeSegment++;
+        activeBuffer = map(activeSegment, FileChannel.MapMode.READ_WRITE);
+        writeOffset = 0;
+        LOGGER.info("Открыт новый сегмент журнала {}", activeSegment);
+    }
+
+    private MappedByteBuffer map(long segment, FileChannel.MapMode mode) throws IOException {
+        StandardOpenOption[] options = mode == FileChannel.MapMode.READ_ONLY
+                ? new StandardOpenOption[]{StandardOpenOption.READ}
+                : new StandardOpenOption[]{StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE};
+        try (FileChannel channel = FileChannel.open(segmentPath(segment), options)) {
+            return channel.map(mode, 0, segmentSize);
+        }
+    }
+
+    private int scanEnd(ByteBuffer buffer) {
+        int offset = 0;
+        while (offset + HEADER_SIZE <= segmentSize) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || offset + HEADER_SIZE + length > segmentSize) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(offset + HEADER_SIZE, payload);
+            if (!checksumMatches(buffer, offset, payload)) {
+                LOGGER.warn("Поврежденная запись в хвосте сегмента {} на смещении {}", activeSegment, offset);
+                break;
+            }
+            offset += HEADER_SIZE + length;
+        }
+        return offset;
+    }
+
+    private SpoolPosition readCheckpoint(long firstSegment) throws IOException {
+        Path path = directory.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(path)) {
+            return new SpoolPosition(firstSegment, 0);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        return new SpoolPosition(buffer.getLong(), buffer.getInt());
+    }
+
+    private List<Long> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path segmentPath(long segment) {
+        return directory.resolve(String.format("%020d%s", segment, SEGMENT_SUFFIX));
+    }
+}
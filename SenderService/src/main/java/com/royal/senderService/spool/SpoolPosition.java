@@ -0,0 +1,16 @@
+package com.royal.senderService.spool;
+
+/**
+ * Позиция в журнале: номер сегмента и смещение внутри сегмента.
+ *
+ * @param segment номер сегмента.
+ * @param offset  смещение в байтах от начала сегмента.
+ */
+public record SpoolPosition(long segment, int offset) implements Comparable<SpoolPosition> {
+
+    @Override
+    public int compareTo(SpoolPosition other) {
+        int bySegment = Long.compare(segment, other.segment);
+        return bySegment != 0 ? bySegment : Integer.compare(offset, other.offset);
+    }
+}
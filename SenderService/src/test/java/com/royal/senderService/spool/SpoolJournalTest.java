@@ -0,0 +1,209 @@
+package com.royal.senderService.spool;
+
+import com.royal.senderService.converter.BinaryMessageConverter;
+import com.royal.senderService.dto.Message;
+import com.royal.senderService.exception.SpoolException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpoolJournalTest {
+
+	private static final int RECORD_SIZE = SpoolJournal.HEADER_SIZE + BinaryMessageConverter.encode(message(1)).length;
+	private static final int LARGE_SEGMENT = 4096;
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void recoversDurablePositionAndCheckpointAfterRestart() {
+		SpoolJournal journal = open(new SpoolJournal(), LARGE_SEGMENT, 1);
+		appendAll(journal, 1, 3);
+		assertEquals(new SpoolPosition(1, 3 * RECORD_SIZE), journal.durablePosition());
+		journal.commit(new SpoolPosition(1, RECORD_SIZE));
+		journal.stop();
+
+		SpoolJournal reopened = open(new SpoolJournal(), LARGE_SEGMENT, 1);
+		assertEquals(new SpoolPosition(1, 3 * RECORD_SIZE), reopened.durablePosition());
+		assertEquals(new SpoolPosition(1, RECORD_SIZE), reopened.checkpoint());
+		assertEquals(List.of(2L, 3L), ids(reopened, 1, RECORD_SIZE, 3 * RECORD_SIZE));
+
+		appendAll(reopened, 4, 4);
+		assertEquals(new SpoolPosition(1, 4 * RECORD_SIZE), reopened.durablePosition());
+		assertEquals(List.of(1L, 2L, 3L, 4L), ids(reopened, 1, 0, 4 * RECORD_SIZE));
+		reopened.stop();
+	}
+
+	@Test
+	void stopsRecoveryAtChecksumMismatch() throws IOException {
+		SpoolJournal journal = open(new SpoolJournal(), LARGE_SEGMENT, 1);
+		appendAll(journal, 1, 3);
+		journal.stop();
+		try (FileChannel channel = FileChannel.open(segmentPath(1), StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(new byte[]{0x7f}), RECORD_SIZE + SpoolJournal.HEADER_SIZE + 3);
+		}
+
+		SpoolJournal reopened = open(new SpoolJournal(), LARGE_SEGMENT, 1);
+		MappedByteBuffer buffer = reopened.openForRead(1);
+		byte[] payload = new byte[RECORD_SIZE - SpoolJournal.HEADER_SIZE];
+		buffer.get(RECORD_SIZE + SpoolJournal.HEADER_SIZE, payload);
+		assertFalse(SpoolJournal.checksumMatches(buffer, RECORD_SIZE, payload));
+		SpoolJournal.unmap(buffer);
+
+		// За поврежденной записью остались данные, поэтому запись продолжается в новом сегменте.
+		assertEquals(new SpoolPosition(2, 0), reopened.durablePosition());
+		appendAll(reopened, 4, 4);
+		assertEquals(new SpoolPosition(2, RECORD_SIZE), reopened.durablePosition());
+		assertEquals(List.of(1L), ids(reopened, 1, 0, RECORD_SIZE));
+		assertEquals(List.of(4L), ids(reopened, 2, 0, RECORD_SIZE));
+		reopened.stop();
+	}
+
+	@Test
+	void quarantinesRecordBytes() throws IOException {
+		SpoolJournal journal = open(new SpoolJournal(), LARGE_SEGMENT, 1);
+		byte[] record = {1, 2, 3, 4, 5};
+		journal.quarantine(7, RECORD_SIZE, record);
+		journal.stop();
+
+		Path quarantined = directory.resolve("quarantine").resolve(String.format("%020d-%010d.rec", 7, RECORD_SIZE));
+		assertArrayEquals(record, Files.readAllBytes(quarantined));
+	}
+
+	@Test
+	void rollsBackToDurablePositionWhenFlushFails() {
+		FailingJournal journal = open(new FailingJournal(), 2 * RECORD_SIZE + Integer.BYTES, 200);
+		appendAll(journal, 1, 1);
+
+		journal.failing = true;
+		List<CompletableFuture<Void>> failed = new ArrayList<>();
+		for (long id = 2; id <= 4; id++) {
+			failed.add(journal.append(message(id)));
+		}
+		for (CompletableFuture<Void> future : failed) {
+			ExecutionException e = assertThrows(ExecutionException.class, future::get);
+			assertInstanceOf(SpoolException.class, e.getCause());
+		}
+		assertEquals(new SpoolPosition(1, RECORD_SIZE), journal.durablePosition());
+		assertFalse(Files.exists(segmentPath(2)), "Сегмент, открытый во время неудачного сброса, должен быть удален");
+
+		journal.failing = false;
+		appendAll(journal, 5, 5);
+		assertEquals(new SpoolPosition(1, 2 * RECORD_SIZE), journal.durablePosition());
+		journal.stop();
+
+		SpoolJournal reopened = open(new SpoolJournal(), 2 * RECORD_SIZE + Integer.BYTES, 1);
+		assertEquals(new SpoolPosition(1, 2 * RECORD_SIZE), reopened.durablePosition());
+		assertEquals(List.of(1L, 5L), ids(reopened, 1, 0, 2 * RECORD_SIZE));
+		reopened.stop();
+	}
+
+	@Test
+	void rollsOverSegmentsAndDeletesDeliveredOnes() {
+		int segmentSize = 2 * RECORD_SIZE + Integer.BYTES;
+		SpoolJournal journal = open(new SpoolJournal(), segmentSize, 1);
+		appendAll(journal, 1, 5);
+		assertEquals(new SpoolPosition(3, RECORD_SIZE), journal.durablePosition());
+		assertEquals(List.of(1L, 2L), ids(journal, 1, 0, 2 * RECORD_SIZE));
+		assertEquals(List.of(3L, 4L), ids(journal, 2, 0, 2 * RECORD_SIZE));
+		assertEquals(List.of(5L), ids(journal, 3, 0, RECORD_SIZE));
+
+		journal.commit(new SpoolPosition(3, 0));
+		assertFalse(Files.exists(segmentPath(1)));
+		assertFalse(Files.exists(segmentPath(2)));
+		assertTrue(Files.exists(segmentPath(3)));
+		journal.stop();
+
+		SpoolJournal reopened = open(new SpoolJournal(), segmentSize, 1);
+		assertEquals(new SpoolPosition(3, RECORD_SIZE), reopened.durablePosition());
+		assertEquals(new SpoolPosition(3, 0), reopened.checkpoint());
+		reopened.stop();
+	}
+
+	private <T extends SpoolJournal> T open(T journal, int segmentSize, long flushIntervalMs) {
+		ReflectionTestUtils.setField(journal, "directory", directory);
+		ReflectionTestUtils.setField(journal, "segmentSize", segmentSize);
+		ReflectionTestUtils.setField(journal, "flushIntervalMs", flushIntervalMs);
+		journal.start();
+		return journal;
+	}
+
+	private static void appendAll(SpoolJournal journal, long fromId, long toId) {
+		List<CompletableFuture<Void>> futures = new ArrayList<>();
+		for (long id = fromId; id <= toId; id++) {
+			futures.add(journal.append(message(id)));
+		}
+		CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+	}
+
+	/**
+	 * Читает id сообщений из записей сегмента в диапазоне [from, to), проверяя контрольные суммы.
+	 */
+	private static List<Long> ids(SpoolJournal journal, long segment, int from, int to) {
+		MappedByteBuffer buffer = journal.openForRead(segment);
+		try {
+			List<Long> ids = new ArrayList<>();
+			for (int offset = from; offset < to; ) {
+				int length = buffer.getInt(offset);
+				byte[] payload = new byte[length];
+				buffer.get(offset + SpoolJournal.HEADER_SIZE, payload);
+				assertTrue(SpoolJournal.checksumMatches(buffer, offset, payload));
+				ids.add(BinaryMessageConverter.decode(payload, 0, length).getId());
+				offset += SpoolJournal.HEADER_SIZE + length;
+			}
+			return ids;
+		} finally {
+			SpoolJournal.unmap(buffer);
+		}
+	}
+
+	private Path segmentPath(long segment) {
+		return directory.resolve(String.format("%020d.seg", segment));
+	}
+
+	private static Message message(long id) {
+		Message message = new Message();
+		message.setId(id);
+		message.setName("message");
+		message.setPrice(10.5);
+		message.setTimestamp(new Timestamp(1_700_000_000_000L));
+		return message;
+	}
+
+	/**
+	 * Журнал, в котором сброс на диск можно заставить завершиться ошибкой.
+	 */
+	private static final class FailingJournal extends SpoolJournal {
+
+		private volatile boolean failing;
+
+		@Override
+		void force(MappedByteBuffer buffer) {
+			if (failing) {
+				throw new UncheckedIOException(new IOException("Сбой записи на диск"));
+			}
+			super.force(buffer);
+		}
+	}
+}